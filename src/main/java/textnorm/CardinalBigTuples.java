@@ -1,6 +1,272 @@
 package textnorm;
 
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Table driven expansion of big numbers: cardinals, ordinals and decimals from millions up to hundreds of billions
+ * (see NumberHelper.CARDINAL_BIG_PTRN, ORDINAL_MILLION_PTRN, ORDINAL_BIG_PTRN and DECIMAL_BIG_PTRN).
+ *
+ * Other than the tuple classes for smaller numbers, this class does not match the number against regexes. The number
+ * is split into groups of three digits (ones, thousands, millions, billions), each group is read with the word
+ * tables from TupleRules in the gender of its scale word:
+ *      - billions: masculine (milljarður), e.g. "tveir milljarðar", "tuttugu og einn milljarður"
+ *      - millions: feminine (milljón), e.g. "tvær milljónir", "tuttugu og ein milljón"
+ *      - thousands and hundreds: neuter, e.g. "tvö þúsund", "tvö hundruð"
+ *      - the lowest group: according to the POS-tag of the next token, as for small numbers
+ *
+ * "og" is inserted before the last element of a group ("hundrað og tuttugu", "hundrað tuttugu og einn"), and between
+ * the last two groups if the last group consists of one element only ("tvær milljónir og tveir").
+ * Ordinals replace the last element (and the one preceding "og") with its ordinal form, e.g. "tvímilljónasti".
+ */
 public class CardinalBigTuples {
-    //TODO see regina original
 
+    private static final String OG = "og";
+    private static final String ZERO = "núll";
+    private static final String COMMA = "komma";
+    private static final String HUNDRED = "hundrað";
+    private static final String HUNDREDS = "hundruð";
+
+    // scale words per group index, singular and plural
+    private static final String[] SCALE_SINGULAR = {"", "þúsund", "milljón", "milljarður"};
+    private static final String[] SCALE_PLURAL = {"", "þúsund", "milljónir", "milljarðar"};
+    // stems of the ordinal scale words: "þúsundasti", "milljónasti", "milljarðasti"
+    private static final String[] SCALE_ORDINAL = {"", "þúsund", "milljón", "milljarð"};
+
+    private static final int THOUSANDS = 1;
+    private static final int MAX_GROUPS = NumberToken.MAX_GROUPS;
+
+    // number words 0-9 per gender of the scale word, index = group index
+    private static final String[][] GROUP_ONES = new String[MAX_GROUPS][];
+    static {
+        GROUP_ONES[THOUSANDS] = onesTable("eitt", TupleRules.HUNDRENDS_THOUSANDS_ZIP);
+        GROUP_ONES[2] = onesTable("ein", TupleRules.MILLIONS_ZIP);
+        GROUP_ONES[3] = onesTable("einn", TupleRules.BILLIONS_ZIP);
+    }
+    private static final String[] NEUTER_ONES = GROUP_ONES[THOUSANDS];
+    private static final String[] TEENS = digitTable(TupleRules.TENS_ZIP, 20);
+    private static final String[] DOZENS = digitTable(TupleRules.DOZENS_ZIP, 10);
+    private static final String[] ORDINAL_STEMS = digitTable(TupleRules.ORDINALS_ONES_ZIP, 20);
+    private static final String[] DOZENS_ORDINAL_STEMS = digitTable(TupleRules.DOZENS_ORDINAL_ZIP, 10);
+    private static final String[] SCALE_ORDINAL_PREFIXES = digitTable(TupleRules.MB_ORDINAL_ZIP, 10);
+
+    private CardinalBigTuples() {}
+
+    /**
+     * Expands a cardinal like "12.345.678", the lowest group is inflected according to 'nextTag'.
+     */
+    public static String expandCardinal(String token, String nextTag) {
+        return expandCardinal(NumberClassifier.classify(token), nextTag);
+    }
+
+    public static String expandCardinal(NumberToken number, String nextTag) {
+        return join(elements(number.getGroups(), nextTag, false), false, nextTag);
+    }
+
+    /**
+     * Expands an ordinal like "12.345." or "2.000.000.", the ordinal ending is chosen according to 'nextTag'.
+     */
+    public static String expandOrdinal(String token, String nextTag) {
+        return expandOrdinal(NumberClassifier.classify(token), nextTag);
+    }
+
+    public static String expandOrdinal(NumberToken number, String nextTag) {
+        return join(elements(number.getGroups(), nextTag, false), true, nextTag);
+    }
+
+    /**
+     * Expands a decimal like "12.345.678,25": the integer part as a cardinal, the decimal places digit by digit.
+     */
+    public static String expandDecimal(String token, String nextTag) {
+        return expandDecimal(NumberClassifier.classify(token), nextTag);
+    }
+
+    public static String expandDecimal(NumberToken number, String nextTag) {
+        StringBuilder sb = new StringBuilder(join(elements(number.getGroups(), nextTag, true), false, nextTag));
+        sb.append(' ').append(COMMA);
+        String decimals = number.getDecimals();
+        for (int i = 0; i < decimals.length(); i++) {
+            int digit = decimals.charAt(i) - '0';
+            sb.append(' ').append(digit == 0 ? ZERO : onesByTag(digit, nextTag, false));
+        }
+        return sb.toString();
+    }
+
+    // the elements of the number, one list per non-zero group, highest group first
+    private static List<List<Element>> elements(int[] groups, String nextTag, boolean decimal) {
+        List<List<Element>> elements = new ArrayList<>();
+        for (int g = MAX_GROUPS - 1; g >= 0; g--) {
+            if (groups[g] == 0)
+                continue;
+            List<Element> groupElements = groupElements(groups[g], g, elements.isEmpty(), nextTag, decimal);
+            if (g > 0) {
+                // the scale word is part of the last element of the group: "tuttugu og [eitt þúsund]"
+                Element last = groupElements.get(groupElements.size() - 1);
+                groupElements.set(groupElements.size() - 1, Element.scale(last, g, groups[g]));
+            }
+            elements.add(groupElements);
+        }
+        return elements;
+    }
+
+    private static List<Element> groupElements(int value, int group, boolean leading, String nextTag, boolean decimal) {
+        List<Element> elements = new ArrayList<>();
+        int hundreds = value / 100;
+        int rest = value % 100;
+        if (hundreds > 0) {
+            // "hundrað milljónir" at the beginning of a number, "eitt hundrað" elsewhere
+            String count = hundreds == 1 ? (leading ? "" : NEUTER_ONES[1]) : NEUTER_ONES[hundreds];
+            elements.add(Element.hundred(count, hundreds == 1 ? HUNDRED : HUNDREDS));
+        }
+        if (rest >= 20) {
+            elements.add(Element.dozen(rest / 10));
+            rest = rest % 10;
+        }
+        if (rest >= 10)
+            elements.add(Element.teen(rest));
+        else if (rest > 0)
+            elements.add(Element.ones(rest, group == 0 ? onesByTag(rest, nextTag, decimal) : GROUP_ONES[group][rest]));
+        return elements;
+    }
+
+    private static String join(List<List<Element>> groups, boolean ordinal, String nextTag) {
+        List<Element> lastGroup = groups.get(groups.size() - 1);
+        Element last = lastGroup.get(lastGroup.size() - 1);
+        // the element preceding the last "og" of the number, if any
+        Element beforeOg = null;
+        if (lastGroup.size() > 1)
+            beforeOg = lastGroup.get(lastGroup.size() - 2);
+        else if (groups.size() > 1)
+            beforeOg = lastElement(groups.get(groups.size() - 2));
+
+        List<String> words = new ArrayList<>();
+        for (List<Element> elements : groups) {
+            for (int i = 0; i < elements.size(); i++) {
+                Element element = elements.get(i);
+                if (i > 0 && i == elements.size() - 1)
+                    words.add(OG);
+                else if (element == last && beforeOg != null)
+                    words.add(OG);
+                // ordinals: the last element, and the element preceding "og" unless the last one is a scale element
+                boolean asOrdinal = ordinal && (element == last || (element == beforeOg && !last.isScale()));
+                words.add(asOrdinal ? element.ordinal(nextTag) : element.cardinal);
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    private static Element lastElement(List<Element> group) {
+        return group.get(group.size() - 1);
+    }
+    /*
+     * The number word for 'digit' (1-9) according to the next POS-tag, the last matching tuple wins, as in
+     * TTSNormalizer.fillDict(). Decimals are masculine if no noun follows.
+     */
+    private static String onesByTag(int digit, String nextTag, boolean decimal) {
+        String word = selectByTag(TupleRules.ONES_ZIP, Integer.toString(digit), nextTag);
+        if (decimal) {
+            String male = selectByTag(TupleRules.DEC_ONES_MALE, Integer.toString(digit), nextTag);
+            if (male != null)
+                word = male;
+        }
+        return word == null ? NEUTER_ONES[digit] : word.trim();
+    }
+
+    private static String ordinalEnding(List<Tuple> letters, String nextTag) {
+        String ending = selectByTag(letters, "", nextTag);
+        // the last entry is the one for a number not followed by a noun
+        return ending == null ? letters.get(letters.size() - 1).getNumberWord() : ending;
+    }
+
+    private static String selectByTag(List<Tuple> tuples, String digit, String nextTag) {
+        String selected = null;
+        for (Tuple tuple : tuples) {
+            if (tuple.getDigit().equals(digit) && TTSNormalizer.pattern(".*" + tuple.getNumberPattern()).matcher(nextTag).matches())
+                selected = tuple.getNumberWord();
+        }
+        return selected;
+    }
+
+    private static String[] onesTable(String one, List<Tuple> tuples) {
+        String[] table = digitTable(tuples, 10);
+        table[1] = one;
+        return table;
+    }
+
+    private static String[] digitTable(List<Tuple> tuples, int size) {
+        String[] table = new String[size];
+        for (Tuple tuple : tuples)
+            table[Integer.parseInt(tuple.getDigit())] = tuple.getNumberWord().trim();
+        return table;
+    }
+
+    /*
+     * One spoken element of a number: a hundreds count ("tvö hundruð"), a dozen ("tuttugu"), a number 10-19,
+     * a number 1-9, or one of these followed by a scale word ("fjögur þúsund").
+     */
+    private static class Element {
+        private enum Kind {HUNDRED, DOZEN, TEEN, ONES, SCALE}
+
+        private final Kind kind;
+        private final String cardinal;
+        private final int digit;
+        private final String count;
+        private final int scale;
+
+        private Element(Kind kind, String cardinal, int digit, String count, int scale) {
+            this.kind = kind;
+            this.cardinal = cardinal;
+            this.digit = digit;
+            this.count = count;
+            this.scale = scale;
+        }
+
+        static Element hundred(String count, String word) {
+            return new Element(Kind.HUNDRED, (count + " " + word).trim(), 0, count, 0);
+        }
+
+        static Element dozen(int digit) {
+            return new Element(Kind.DOZEN, DOZENS[digit], digit, "", 0);
+        }
+
+        static Element teen(int number) {
+            return new Element(Kind.TEEN, TEENS[number], number, "", 0);
+        }
+
+        static Element ones(int digit, String word) {
+            return new Element(Kind.ONES, word, digit, "", 0);
+        }
+
+        // 'counted' followed by the scale word of 'group', 'value' is the value of the whole group
+        static Element scale(Element counted, int group, int value) {
+            boolean singular = value % 10 == 1 && value % 100 != 11;
+            String word = singular ? SCALE_SINGULAR[group] : SCALE_PLURAL[group];
+            return new Element(Kind.SCALE, counted.cardinal + " " + word, value, counted.cardinal, group);
+        }
+
+        boolean isScale() {
+            return kind == Kind.SCALE;
+        }
+
+        String ordinal(String nextTag) {
+            switch (kind) {
+                case HUNDRED:
+                    return (count + " " + HUNDRED + ordinalEnding(TupleRules.DOZENS_ORDINAL_LETTERS, nextTag)).trim();
+                case DOZEN:
+                    return DOZENS_ORDINAL_STEMS[digit] + ordinalEnding(TupleRules.DOZENS_ORDINAL_LETTERS, nextTag);
+                case TEEN:
+                    return ORDINAL_STEMS[digit] + ordinalEnding(TupleRules.ORDINAL_LETTERS, nextTag);
+                case ONES:
+                    if (digit == 2)
+                        return ordinalEnding(TupleRules.TWO_ORDINAL_ZIP, nextTag).trim();
+                    return ORDINAL_STEMS[digit] + ordinalEnding(TupleRules.ORDINAL_LETTERS, nextTag);
+                default:
+                    String ordinal = SCALE_ORDINAL[scale] + ordinalEnding(TupleRules.DOZENS_ORDINAL_LETTERS, nextTag);
+                    // "tvímilljónasti", "milljarðasti", but "tvö þúsundasti"
+                    if (scale > THOUSANDS && digit < 10)
+                        return digit == 1 ? ordinal : SCALE_ORDINAL_PREFIXES[digit] + ordinal;
+                    return count + " " + ordinal;
+            }
+        }
+    }
 }
@@ -7,7 +7,7 @@ public class CardinalMillionTuples {
 
     public static final List<OrdinalTuple> TUPLES = new ArrayList<>();
 
-    public static List<OrdinalTuple> getTuples() {
+    public static synchronized List<OrdinalTuple> getTuples() {
         if (!TUPLES.isEmpty())
             return TUPLES;
 
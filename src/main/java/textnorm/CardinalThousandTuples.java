@@ -10,7 +10,7 @@ public class CardinalThousandTuples {
     private static final String MATCH_ALL = ".*";
     public static final List<OrdinalTuple> TUPLES = new ArrayList<>();
     //TODO: create constants from regexes and words like "hundrað" etc.
-    public static List<OrdinalTuple> getTuples() {
+    public static synchronized List<OrdinalTuple> getTuples() {
         if (!TUPLES.isEmpty())
             return TUPLES;
 
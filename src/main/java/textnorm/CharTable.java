@@ -0,0 +1,68 @@
+package textnorm;
+
+import java.util.Map;
+
+/**
+ * A spell-out table for single characters, indexed by char: replaces each character of a text that has an entry in
+ * the table, in one pass. Built from the maps of NumberHelper (DIGIT_NUMBERS, WLINK_NUMBERS, DIGITS_ORD), whose keys
+ * are single characters written as regexes ("5", ":", "\\.").
+ *
+ * Applying the map with one replaceAll() per key gives the same result, as long as no replacement contains a key
+ * character, which holds for all maps of NumberHelper. The table is a snapshot of the map at construction.
+ */
+public final class CharTable {
+
+    private static final int SIZE = 128;
+
+    private final String[] mReplacements = new String[SIZE];
+
+    /**
+     * @param map single character regexes (literal or escaped with '\') and their replacements
+     * @throws IllegalArgumentException if a key is not a single ASCII character
+     */
+    public CharTable(Map<String, String> map) {
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            String key = entry.getKey();
+            // an escaped character, but not a character class like "\\d"
+            if (key.length() == 2 && key.charAt(0) == '\\' && !Character.isLetterOrDigit(key.charAt(1)))
+                key = key.substring(1);
+            if (key.length() != 1 || key.charAt(0) >= SIZE)
+                throw new IllegalArgumentException("not a single ASCII character: '" + entry.getKey() + "'");
+            mReplacements[key.charAt(0)] = entry.getValue();
+        }
+    }
+
+    /**
+     * Returns the replacement of 'c', or null if 'c' is not in the table.
+     */
+    public String get(char c) {
+        return c < SIZE ? mReplacements[c] : null;
+    }
+
+    /**
+     * Returns 'text' with all characters in the table replaced.
+     */
+    public String translate(String text) {
+        int i = 0;
+        while (i < text.length() && get(text.charAt(i)) == null)
+            i++;
+        if (i == text.length())
+            return text;
+        return appendTo(new StringBuilder(text.length() + 16).append(text, 0, i), text, i, text.length()).toString();
+    }
+
+    /**
+     * Appends 'text' from index 'start' to 'end' (exclusive) to 'sb', with all characters in the table replaced.
+     */
+    public StringBuilder appendTo(StringBuilder sb, String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            String replacement = get(c);
+            if (replacement == null)
+                sb.append(c);
+            else
+                sb.append(replacement);
+        }
+        return sb;
+    }
+}
@@ -0,0 +1,428 @@
+package textnorm;
+
+import opennlp.tools.dictionary.Dictionary;
+import opennlp.tools.ml.maxent.GISModel;
+import opennlp.tools.ml.model.Context;
+import opennlp.tools.ml.model.IndexHashTable;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.postag.POSDictionary;
+import opennlp.tools.postag.POSModel;
+import opennlp.tools.postag.TagDictionary;
+import opennlp.tools.util.StringList;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact version of the OpenNLP maxent POS model (is-pos-maxent.bin). The OpenNLP model keeps its features in
+ * string-keyed hash tables of boxed parameter objects, which needs a lot of heap and time to load. Here, features are
+ * identified by a 64 bit hash of the feature string, looked up in an open addressing table, and the weights of all
+ * features are stored as floats in one primitive array (with the outcome ids and offsets per feature in int arrays).
+ *
+ * convert() writes a compact model file from a POSModel, load() reads it onto the heap, map() memory-maps it, so
+ * the arrays stay off-heap and are shared by all processes mapping the same file. The model evaluates features like
+ * the OpenNLP GISModel, CompactPOSTagger uses it with the OpenNLP beam search. The tag dictionary and ngram
+ * dictionary of the POSModel, if any, are stored as well.
+ *
+ * Two different features with the same hash would share their weights: the conversion fails if this happens for
+ * features of the model, for unknown features of the input the probability is negligible.
+ */
+public class CompactPOSModel implements MaxentModel {
+
+    private static final int MAGIC = 0x544e504d;
+    private static final int VERSION = 1;
+    private static final long EMPTY = 0L;
+    private static final int NONE = -1;
+
+    private final String[] mOutcomes;
+    private final double mCorrectionConstant;
+    private final double mCorrectionParam;
+    private final double mLogPrior;
+    private final TagDictionary mTagDictionary;
+    private final Dictionary mNgramDictionary;
+    // open addressing table: feature hash -> feature index
+    private final LongBuffer mKeys;
+    private final IntBuffer mSlots;
+    private final int mMask;
+    // the outcomes and weights of feature i are at offsets[i] .. offsets[i + 1] - 1
+    private final IntBuffer mOffsets;
+    private final IntBuffer mOutcomeIds;
+    private final FloatBuffer mWeights;
+
+    private CompactPOSModel(ByteBuffer buffer, boolean copy) throws IOException {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            throw new IOException("not a compact POS model (version " + VERSION + ")");
+        mOutcomes = new String[buffer.getInt()];
+        for (int i = 0; i < mOutcomes.length; i++)
+            mOutcomes[i] = readString(buffer);
+        mCorrectionConstant = buffer.getDouble();
+        mCorrectionParam = buffer.getDouble();
+        mLogPrior = Math.log(1.0 / mOutcomes.length);
+        mTagDictionary = readTagDictionary(buffer);
+        mNgramDictionary = readNgramDictionary(buffer);
+
+        int capacity = buffer.getInt();
+        mMask = capacity - 1;
+        mKeys = longs(buffer, capacity, copy);
+        mSlots = ints(buffer, capacity, copy);
+        mOffsets = ints(buffer, buffer.getInt(), copy);
+        int size = buffer.getInt();
+        mOutcomeIds = ints(buffer, size, copy);
+        mWeights = floats(buffer, size, copy);
+    }
+
+    /**
+     * Converts the maxent model of 'posModel' to a compact model file at 'target'.
+     */
+    public static void convert(POSModel posModel, Path target) throws IOException {
+        Object maxent = posModel.getArtifact(POSModel.POS_MODEL_ENTRY_NAME);
+        if (!(maxent instanceof GISModel))
+            throw new IllegalArgumentException("only maxent (GIS) POS models can be converted");
+        Object[] data = ((GISModel) maxent).getDataStructures();
+        Context[] params = (Context[]) data[0];
+        @SuppressWarnings("unchecked")
+        IndexHashTable<String> pmap = (IndexHashTable<String>) data[1];
+        String[] outcomes = (String[]) data[2];
+        String[] features = pmap.toArray(new String[pmap.size()]);
+
+        int capacity = Integer.highestOneBit(Math.max(1, features.length) * 2) * 2;
+        long[] keys = new long[capacity];
+        int[] slots = new int[capacity];
+        for (int i = 0; i < features.length; i++) {
+            long hash = hash(features[i]);
+            int slot = slot(hash, capacity - 1);
+            while (keys[slot] != EMPTY) {
+                if (keys[slot] == hash)
+                    throw new IllegalStateException("hash collision of features '" + features[i] + "' and '"
+                            + features[slots[slot]] + "'");
+                slot = (slot + 1) & (capacity - 1);
+            }
+            keys[slot] = hash;
+            slots[slot] = i;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(target)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(outcomes.length);
+            for (String outcome : outcomes)
+                writeString(out, outcome);
+            out.writeDouble(((Integer) data[3]).doubleValue());
+            out.writeDouble((Double) data[4]);
+            writeTagDictionary(out, posModel.getFactory().getTagDictionary());
+            writeNgramDictionary(out, posModel.getFactory().getDictionary());
+
+            out.writeInt(capacity);
+            for (long key : keys)
+                out.writeLong(key);
+            for (int slot : slots)
+                out.writeInt(slot);
+            // the feature indices of the IndexHashTable are the indices of the parameters
+            int size = 0;
+            out.writeInt(features.length + 1);
+            for (int i = 0; i < features.length; i++) {
+                out.writeInt(size);
+                size += params[pmap.get(features[i])].getOutcomes().length;
+            }
+            out.writeInt(size);
+            out.writeInt(size);
+            for (String feature : features) {
+                for (int outcome : params[pmap.get(feature)].getOutcomes())
+                    out.writeInt(outcome);
+            }
+            for (String feature : features) {
+                for (double weight : params[pmap.get(feature)].getParameters())
+                    out.writeFloat((float) weight);
+            }
+        }
+    }
+
+    /**
+     * Reads a compact model file onto the heap.
+     */
+    public static CompactPOSModel load(Path path) throws IOException {
+        return new CompactPOSModel(ByteBuffer.wrap(Files.readAllBytes(path)), true);
+    }
+
+    public static CompactPOSModel load(InputStream is) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] chunk = new byte[1 << 16];
+        int read;
+        while ((read = is.read(chunk)) > 0)
+            bytes.write(chunk, 0, read);
+        return new CompactPOSModel(ByteBuffer.wrap(bytes.toByteArray()), true);
+    }
+
+    /**
+     * Memory-maps a compact model file, the feature tables are not copied to the heap.
+     */
+    public static CompactPOSModel map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new CompactPOSModel(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), false);
+        }
+    }
+
+    public TagDictionary getTagDictionary() {
+        return mTagDictionary;
+    }
+
+    public Dictionary getNgramDictionary() {
+        return mNgramDictionary;
+    }
+
+    @Override
+    public double[] eval(String[] context) {
+        return eval(context, null, new double[mOutcomes.length]);
+    }
+
+    @Override
+    public double[] eval(String[] context, double[] probs) {
+        return eval(context, null, probs);
+    }
+
+    @Override
+    public double[] eval(String[] context, float[] values) {
+        return eval(context, values, new double[mOutcomes.length]);
+    }
+
+    // as GISModel.eval() with a uniform prior
+    private double[] eval(String[] context, float[] values, double[] probs) {
+        int[] numFeatures = new int[mOutcomes.length];
+        Arrays.fill(probs, 0, mOutcomes.length, mLogPrior);
+        for (int i = 0; i < context.length; i++) {
+            int feature = feature(context[i]);
+            if (feature == NONE)
+                continue;
+            double value = values == null ? 1 : values[i];
+            for (int k = mOffsets.get(feature); k < mOffsets.get(feature + 1); k++) {
+                int outcome = mOutcomeIds.get(k);
+                numFeatures[outcome]++;
+                probs[outcome] += mWeights.get(k) * value;
+            }
+        }
+        double constantInverse = 1.0 / mCorrectionConstant;
+        double normal = 0;
+        for (int outcome = 0; outcome < mOutcomes.length; outcome++) {
+            if (mCorrectionParam != 0)
+                probs[outcome] = Math.exp(probs[outcome] * constantInverse
+                        + (1.0 - numFeatures[outcome] / mCorrectionConstant) * mCorrectionParam);
+            else
+                probs[outcome] = Math.exp(probs[outcome] * constantInverse);
+            normal += probs[outcome];
+        }
+        for (int outcome = 0; outcome < mOutcomes.length; outcome++)
+            probs[outcome] /= normal;
+        return probs;
+    }
+
+    @Override
+    public String getBestOutcome(double[] probs) {
+        int best = 0;
+        for (int i = 1; i < probs.length; i++) {
+            if (probs[i] > probs[best])
+                best = i;
+        }
+        return mOutcomes[best];
+    }
+
+    @Override
+    public String getAllOutcomes(double[] probs) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < probs.length && i < mOutcomes.length; i++)
+            sb.append(mOutcomes[i]).append('[').append(String.format("%.4f", probs[i])).append("] ");
+        return sb.toString().trim();
+    }
+
+    @Override
+    public String getOutcome(int i) {
+        return mOutcomes[i];
+    }
+
+    @Override
+    public int getIndex(String outcome) {
+        for (int i = 0; i < mOutcomes.length; i++) {
+            if (mOutcomes[i].equals(outcome))
+                return i;
+        }
+        return NONE;
+    }
+
+    @Override
+    public int getNumOutcomes() {
+        return mOutcomes.length;
+    }
+
+    public String[] getOutcomes() {
+        return mOutcomes.clone();
+    }
+
+    private int feature(String feature) {
+        long hash = hash(feature);
+        for (int slot = slot(hash, mMask); ; slot = (slot + 1) & mMask) {
+            long key = mKeys.get(slot);
+            if (key == hash)
+                return mSlots.get(slot);
+            if (key == EMPTY)
+                return NONE;
+        }
+    }
+
+    // FNV-1a over the UTF-16 code units, never EMPTY
+    private static long hash(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash == EMPTY ? 1 : hash;
+    }
+
+    private static int slot(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static void writeTagDictionary(DataOutputStream out, TagDictionary dictionary) throws IOException {
+        if (!(dictionary instanceof POSDictionary)) {
+            out.writeInt(NONE);
+            return;
+        }
+        POSDictionary posDictionary = (POSDictionary) dictionary;
+        List<String> words = new ArrayList<>();
+        posDictionary.iterator().forEachRemaining(words::add);
+        out.writeInt(words.size());
+        out.writeBoolean(posDictionary.isCaseSensitive());
+        for (String word : words) {
+            String[] tags = posDictionary.getTags(word);
+            writeString(out, word);
+            out.writeInt(tags.length);
+            for (String tag : tags)
+                writeString(out, tag);
+        }
+    }
+
+    private static TagDictionary readTagDictionary(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size == NONE)
+            return null;
+        POSDictionary dictionary = new POSDictionary(buffer.get() != 0);
+        for (int i = 0; i < size; i++) {
+            String word = readString(buffer);
+            String[] tags = new String[buffer.getInt()];
+            for (int t = 0; t < tags.length; t++)
+                tags[t] = readString(buffer);
+            dictionary.put(word, tags);
+        }
+        return dictionary;
+    }
+
+    private static void writeNgramDictionary(DataOutputStream out, Dictionary dictionary) throws IOException {
+        if (dictionary == null) {
+            out.writeInt(NONE);
+            return;
+        }
+        out.writeInt(dictionary.size());
+        out.writeBoolean(isCaseSensitive(dictionary));
+        for (StringList entry : dictionary) {
+            out.writeInt(entry.size());
+            for (String token : entry)
+                writeString(out, token);
+        }
+    }
+
+    private static Dictionary readNgramDictionary(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size == NONE)
+            return null;
+        Dictionary dictionary = new Dictionary(buffer.get() != 0);
+        for (int i = 0; i < size; i++) {
+            String[] tokens = new String[buffer.getInt()];
+            for (int t = 0; t < tokens.length; t++)
+                tokens[t] = readString(buffer);
+            dictionary.put(new StringList(tokens));
+        }
+        return dictionary;
+    }
+
+    // Dictionary does not expose its case sensitivity, look it up with a case variant of an entry
+    private static boolean isCaseSensitive(Dictionary dictionary) {
+        for (StringList entry : dictionary) {
+            String[] variant = new String[entry.size()];
+            for (int i = 0; i < variant.length; i++)
+                variant[i] = entry.getToken(i).toUpperCase();
+            StringList upperCase = new StringList(variant);
+            if (!upperCase.equals(entry))
+                return !dictionary.contains(upperCase);
+        }
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LongBuffer longs(ByteBuffer buffer, int size, boolean copy) {
+        LongBuffer view = buffer.slice().asLongBuffer();
+        view.limit(size);
+        buffer.position(buffer.position() + size * Long.BYTES);
+        if (!copy)
+            return view;
+        long[] array = new long[size];
+        view.get(array);
+        return LongBuffer.wrap(array);
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, int size, boolean copy) {
+        IntBuffer view = buffer.slice().asIntBuffer();
+        view.limit(size);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        if (!copy)
+            return view;
+        int[] array = new int[size];
+        view.get(array);
+        return IntBuffer.wrap(array);
+    }
+
+    private static FloatBuffer floats(ByteBuffer buffer, int size, boolean copy) {
+        FloatBuffer view = buffer.slice().asFloatBuffer();
+        view.limit(size);
+        buffer.position(buffer.position() + size * Float.BYTES);
+        if (!copy)
+            return view;
+        float[] array = new float[size];
+        view.get(array);
+        return FloatBuffer.wrap(array);
+    }
+
+    /**
+     * Converts a POS model: CompactPOSModel is-pos-maxent.bin is-pos-compact.bin
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: CompactPOSModel <OpenNLP POS model> <compact model>");
+            return;
+        }
+        try (InputStream is = Files.newInputStream(Paths.get(args[0]))) {
+            convert(new POSModel(is), Paths.get(args[1]));
+        }
+    }
+}
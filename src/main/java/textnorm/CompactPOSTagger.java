@@ -0,0 +1,40 @@
+package textnorm;
+
+import opennlp.tools.ml.BeamSearch;
+import opennlp.tools.postag.DefaultPOSContextGenerator;
+import opennlp.tools.postag.DefaultPOSSequenceValidator;
+import opennlp.tools.postag.POSContextGenerator;
+import opennlp.tools.postag.POSTaggerME;
+import opennlp.tools.util.SequenceValidator;
+
+import java.util.List;
+
+/**
+ * A POS-tagger on a CompactPOSModel. Features and the beam search are the same as in the OpenNLP POSTaggerME, only
+ * the evaluation of the maxent model differs, so the tags are the same as those of the POSTaggerME on the original
+ * model (up to the rounding of the weights to floats).
+ *
+ * Like the POSTaggerME, an instance is not thread safe: the context generator caches the features of the last
+ * sentence. The model can be shared.
+ */
+public class CompactPOSTagger {
+
+    private final BeamSearch<String> mBeamSearch;
+    private final POSContextGenerator mContextGenerator;
+    private final SequenceValidator<String> mValidator;
+
+    public CompactPOSTagger(CompactPOSModel model) {
+        this(model, POSTaggerME.DEFAULT_BEAM_SIZE);
+    }
+
+    public CompactPOSTagger(CompactPOSModel model, int beamSize) {
+        mBeamSearch = new BeamSearch<>(beamSize, model, 0);
+        mContextGenerator = new DefaultPOSContextGenerator(beamSize, model.getNgramDictionary());
+        mValidator = new DefaultPOSSequenceValidator(model.getTagDictionary());
+    }
+
+    public String[] tag(String[] tokens) {
+        List<String> tags = mBeamSearch.bestSequence(tokens, null, mContextGenerator, mValidator).getOutcomes();
+        return tags.toArray(new String[0]);
+    }
+}
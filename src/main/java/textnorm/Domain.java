@@ -0,0 +1,101 @@
+package textnorm;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The domain of a text, determines which rules are evaluated in TTSNormalizer. Each domain skips the dictionaries
+ * of units that do not occur in its texts, so less rules are evaluated per sentence, and reads some patterns in its
+ * own way: in SPORT texts a hyphen between numbers is silent ("2 - 1"), and "2/1" is read as a result, not as a
+ * fraction (see SportTuples). Finance texts contain all kinds of units (prices per litre, square metres, megawatts),
+ * FINANCE skips no dictionary.
+ *
+ * The domain is passed with a request, or detected by detect(), a keyword classifier counting the words of a text
+ * that are keywords of a domain. A keyword is a whole word form ("tap" matches "tap", not "tapaði"), or a stem
+ * ending with '*' that matches the words starting with it ("hlutabréf*" matches "hlutabréfa"). Stems are only used
+ * where no common word of another meaning starts with them.
+ */
+public enum Domain {
+    GENERAL(new String[]{},
+            new String[]{}),
+    SPORT(new String[]{"areaDict", "volumeDict"},
+            new String[]{"leikurinn", "leikinn", "leiknum", "leiksins", "leikmað*", "leikmann*", "leikmenn*",
+                    "mark", "markið", "mörkin", "markvörð*", "markvarð*", "markaskor*", "skoraði", "skoruðu",
+                    "skorað", "úrvalsdeild*", "meistaradeild*", "bikarkeppn*", "bikarmeist*", "landslið*",
+                    "þjálfar*", "knattspyrn*", "handbolt*", "körfubolt*", "fótbolt*", "jafntefli*", "hálfleik*",
+                    "vítaspyrn*", "mótherj*"}),
+    WEATHER(new String[]{"areaDict", "volumeDict", "currencyDict", "electronicDict"},
+            new String[]{"veður", "veðrið", "veðri", "veðurs", "veðurspá*", "veðurstof*", "vindur", "vindinn",
+                    "vindi", "vindhrað*", "vindátt*", "rigning*", "slydd*", "snjókom*", "skýjað*", "léttskýjað*",
+                    "hiti", "hitinn", "hitastig*", "frost*", "norðan", "sunnan", "austan", "vestan", "norðaustan*",
+                    "suðaustan*", "norðvestan*", "suðvestan*", "úrkom*", "stormur", "storm", "gola", "golu", "kaldi",
+                    "él", "éljum", "skúrir", "skúrum", "hægviðri*"}),
+    FINANCE(new String[]{},
+            new String[]{"hlutabréf*", "vísitala", "vísitalan", "vísitölu*", "verðbólg*", "hagnað*", "tap", "tapið", "tapsins",
+                    "rekstrartap*", "milljarð*", "markaðsvirð*", "hlutabréfamarkað*", "kauphöll*", "kauphall*",
+                    "vextir", "vöxtum", "stýrivext*", "stýrivaxt*", "stýrivöxt*", "arðgreiðsl*", "fjárfest*",
+                    "veltan", "tekjur", "tekna", "tekjurnar", "skuldir", "skulda", "skuldabréf*", "króna", "krónu",
+                    "krónur", "krónum", "krónan", "krónunnar", "evra", "evru", "evrur", "evrum", "evran",
+                    "evrunnar", "dollar*", "gengi", "gengis", "gengisins"});
+
+    // a text needs at least this many keywords to be assigned to a domain
+    private static final int MIN_KEYWORDS = 2;
+    private static final String STEM = "*";
+    private static final Domain[] DOMAINS = values();
+
+    private final Set<String> mSkippedDictionaries;
+    private final String[] mKeywords;
+
+    Domain(String[] skippedDictionaries, String[] keywords) {
+        this.mSkippedDictionaries = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(skippedDictionaries)));
+        this.mKeywords = keywords;
+    }
+
+    /**
+     * Returns false if the dictionary 'dictName' (e.g. "areaDict") is not evaluated for texts of this domain.
+     */
+    public boolean usesDictionary(String dictName) {
+        return !mSkippedDictionaries.contains(dictName);
+    }
+
+    /**
+     * Returns the domain with the most keywords in 'text', GENERAL if no domain has at least MIN_KEYWORDS.
+     * One pass over the text, the words are compared with the keywords of all domains.
+     */
+    public static Domain detect(String text) {
+        int[] counts = new int[DOMAINS.length];
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean letter = i < text.length() && Character.isLetter(text.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            }
+            else if (!letter && start >= 0) {
+                for (Domain domain : DOMAINS) {
+                    if (domain.isKeyword(text, start, i))
+                        counts[domain.ordinal()]++;
+                }
+                start = -1;
+            }
+        }
+        Domain best = GENERAL;
+        for (Domain domain : DOMAINS) {
+            if (counts[domain.ordinal()] >= MIN_KEYWORDS && counts[domain.ordinal()] > counts[best.ordinal()])
+                best = domain;
+        }
+        return best;
+    }
+
+    private boolean isKeyword(String text, int start, int end) {
+        for (String keyword : mKeywords) {
+            boolean stem = keyword.endsWith(STEM);
+            int length = stem ? keyword.length() - 1 : keyword.length();
+            if ((stem ? end - start >= length : end - start == length)
+                    && text.regionMatches(true, start, keyword, 0, length))
+                return true;
+        }
+        return false;
+    }
+}
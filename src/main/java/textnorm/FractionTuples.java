@@ -1,7 +1,213 @@
 package textnorm;
 
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Expansion of fractions like "2/3", "1/16", "¾" or "3½": "2/3 bolla" is read "tvo þriðju bolla". Fractions
+ * written with a slash and not followed by a noun or an adjective are ambiguous with sports results ("2/1") and
+ * are left to SportTuples.
+ *
+ * All forms for numerators 1-99, denominators 2-99 and the four cases are precomputed from the numerator and
+ * denominator tables in TupleRules, so expanding a fraction classified by NumberClassifier is a table lookup.
+ * The case is determined from the POS-tag of the next token with the FRACTION* patterns of NumberPatterns (note that
+ * FRACTIONDAT matches accusative and FRACTIONACC dative tags), halves are inflected with the HALF* patterns
+ * (see TupleRules.HALF_ZIP).
+ */
 public class FractionTuples {
 
-    //TODO: fraction_tuples.py in regina
-}
+    private static final int NOM = 0;
+    private static final int ACC = 1;
+    private static final int DAT = 2;
+    private static final int GEN = 3;
+    private static final int MAX = 100;
+
+    private static final String OG = " og";
+    // the ordinal 1 in the plural, only used in compound denominators ("tuttugustu og fyrstu"), not in the tables
+    private static final String FIRST = "fyrstu";
+    // unicode fractions, their values are read by NumberClassifier
+    private static final String VULGAR_FRACTIONS = "½⅓⅔¼¾";
+
+    // the cases of the numbers 1-4 when reading fractions (the fraction agrees with 'hluti', masculine)
+    private static final String[][] ONES_CASES = {
+            {"einn", "einn", "einum", "eins"},
+            {"tveir", "tvo", "tveimur", "tveggja"},
+            {"þrír", "þrjá", "þremur", "þriggja"},
+            {"fjórir", "fjóra", "fjórum", "fjögurra"}};
+
+    // [numerator][denominator][case]
+    private static volatile String[][][] FORMS;
+    // [number][case]
+    private static volatile String[][] NUMERATORS;
+    // POS-tag -> case, the set of tags is small
+    private static final Map<String, Integer> CASES = new ConcurrentHashMap<>();
+
+    private FractionTuples() {}
+
+    public static String[][][] getForms() {
+        if (FORMS != null)
+            return FORMS;
+
+        String[][] numerators = getNumerators();
+        String[][] singularDenominators = denominators(true);
+        String[][] pluralDenominators = denominators(false);
+        String[][][] forms = new String[MAX][MAX][];
+        for (int num = 1; num < MAX; num++) {
+            for (int den = 2; den < MAX; den++) {
+                String[][] denominators = num == 1 ? singularDenominators : pluralDenominators;
+                if (denominators[den] == null)
+                    continue;
+                forms[num][den] = new String[GEN + 1];
+                for (int c = NOM; c <= GEN; c++)
+                    forms[num][den][c] = numerators[num][c] + " " + denominators[den][c];
+            }
+        }
+        FORMS = forms;
+        return FORMS;
+    }
+
+    /**
+     * Expands 'token' as a fraction, if it is a unicode fraction or followed by a noun or an adjective (see 'nextTag').
+     *
+     * @param token a token matching NumberHelper.FRACTION_PTRN
+     * @param nextTag the POS-tag of the next token
+     * @return the expanded fraction, or null if 'token' should not be read as a fraction or is out of range
+     */
+    public static String expand(String token, String nextTag) {
+        return expand(NumberClassifier.classify(token), nextTag);
+    }
+
+    public static String expand(NumberToken number, String nextTag) {
+        boolean nounFollows = !nextTag.isEmpty() && (nextTag.charAt(0) == 'n' || nextTag.charAt(0) == 'l');
+        String token = number.getToken();
+        boolean vulgar = VULGAR_FRACTIONS.indexOf(token.charAt(token.length() - 1)) >= 0;
+        if (!vulgar && !nounFollows)
+            return null;
+        // optional whole number: "3½", "3 1/2"
+        int whole = number.getWhole();
+        int numerator = number.getNumerator();
+        int denominator = number.getDenominator();
+        if (number.getType() != NumberToken.Type.FRACTION || whole >= MAX || numerator >= MAX || denominator >= MAX)
+            return null;
 
+        String fraction;
+        if (numerator == 1 && denominator == 2)
+            fraction = half(nextTag);
+        else
+            fraction = getForms()[numerator][denominator] == null ? null : getForms()[numerator][denominator][caseOf(nextTag)];
+        if (fraction == null)
+            return null;
+        if (whole > 0)
+            return getNumerators()[whole][caseOf(nextTag)] + OG + " " + fraction;
+        return fraction;
+    }
+
+    private static int caseOf(String tag) {
+        return CASES.computeIfAbsent(tag, t -> {
+            if (matches(t, NumberPatterns.FRACTIONDAT))
+                return ACC;
+            if (matches(t, NumberPatterns.FRACTIONACC))
+                return DAT;
+            if (matches(t, NumberPatterns.FRACTIONGEN))
+                return GEN;
+            return NOM;
+        });
+    }
+
+    // halves agree in gender, number and case with the next token, the more specific patterns come first in HALF_ZIP
+    private static String half(String tag) {
+        for (Tuple tuple : TupleRules.HALF_ZIP) {
+            if (tuple.getDigit().equals(TupleRules.HALF_PATTERN) && matches(tag, tuple.getNumberPattern()))
+                return tuple.getNumberWord().trim();
+        }
+        // no matching grammatical form, use the form for numbers not followed by a noun
+        for (Tuple tuple : TupleRules.HALF_ZIP) {
+            if (tuple.getDigit().equals(TupleRules.HALF_PATTERN) && tuple.getNumberPattern().equals(NumberPatterns.NO_NOUN))
+                return tuple.getNumberWord().trim();
+        }
+        return null;
+    }
+
+    private static boolean matches(String tag, String pattern) {
+        return TTSNormalizer.pattern(".*" + pattern).matcher(tag).matches();
+    }
+
+    // numerators (and whole numbers) 1-99 in all cases
+    private static String[][] getNumerators() {
+        if (NUMERATORS != null)
+            return NUMERATORS;
+        String[] ones = wordTable(TupleRules.ONES_NUMERATOR);
+        String[] teens = wordTable(TupleRules.TENS_ZIP);
+        String[] dozens = wordTable(TupleRules.DOZENS_NUMERATOR);
+        String[][] numerators = new String[MAX][GEN + 1];
+        for (int n = 1; n < MAX; n++) {
+            for (int c = NOM; c <= GEN; c++) {
+                if (n < 10)
+                    numerators[n][c] = onesCase(ones, n, c);
+                else if (n < 20)
+                    numerators[n][c] = teens[n];
+                else if (n % 10 == 0)
+                    numerators[n][c] = dozens[n / 10];
+                else
+                    numerators[n][c] = dozens[n / 10] + OG + " " + onesCase(ones, n % 10, c);
+            }
+        }
+        NUMERATORS = numerators;
+        return NUMERATORS;
+    }
+
+    private static String onesCase(String[] ones, int digit, int c) {
+        return digit <= ONES_CASES.length ? ONES_CASES[digit - 1][c] : ones[digit];
+    }
+
+    /*
+     * The denominators 2-99 in all cases. The tables hold the plural forms ("þriðju", "tuttugustu"), the singular
+     * forms are derived from them: "þriðji" (nominative) and "þriðja", "tuttugasti" and "tuttugasta".
+     * ONES_DENOMINATOR starts at 2, denominators ending in 1 (21, 31, ...) are compounded with FIRST.
+     */
+    private static String[][] denominators(boolean singular) {
+        String[] ones = wordTable(TupleRules.ONES_DENOMINATOR);
+        String[] teens = wordTable(TupleRules.TENS_DENOMINATOR);
+        String[] dozens = wordTable(TupleRules.DOZENS_DENOMINATOR);
+        String[][] denominators = new String[MAX][];
+        for (int d = 2; d < MAX; d++) {
+            String word;
+            if (d < 10)
+                word = ones[d];
+            else if (d < 20)
+                word = teens[d];
+            else if (d % 10 == 0)
+                word = dozens[d / 10];
+            else
+                word = dozens[d / 10] + OG + " " + (d % 10 == 1 ? FIRST : ones[d % 10]);
+            denominators[d] = new String[GEN + 1];
+            for (int c = NOM; c <= GEN; c++)
+                denominators[d][c] = singular ? singular(word, c == NOM ? "i" : "a") : word;
+        }
+        return denominators;
+    }
+
+    // "þriðju" -> "þriðji", "tuttugustu og þriðju" -> "tuttugasti og þriðji"
+    private static String singular(String plural, String ending) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : plural.split(" ")) {
+            if (sb.length() > 0)
+                sb.append(' ');
+            if (word.endsWith("ustu"))
+                sb.append(word, 0, word.length() - 4).append("ast").append(ending);
+            else if (word.endsWith("u"))
+                sb.append(word, 0, word.length() - 1).append(ending);
+            else
+                sb.append(word);
+        }
+        return sb.toString();
+    }
+
+    private static String[] wordTable(List<Tuple> tuples) {
+        String[] table = new String[MAX];
+        for (Tuple tuple : tuples)
+            table[Integer.parseInt(tuple.getDigit())] = tuple.getNumberWord().trim();
+        return table;
+    }
+}
@@ -0,0 +1,56 @@
+package textnorm;
+
+/**
+ * A CharSequence wrapper that stops regex matching when a deadline has passed. The regex engine reads the input
+ * through charAt(), a pattern that backtracks catastrophically does so by calling charAt() over and over again.
+ * Every CHECK_INTERVAL calls we compare the current time to the deadline and throw a MatchTimeoutException
+ * if it has passed.
+ */
+public class InterruptibleCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence mInner;
+    private final long mDeadline;
+    private int mCounter = 0;
+
+    /**
+     * @param inner the text to match
+     * @param deadline the deadline as a System.nanoTime() value
+     */
+    public InterruptibleCharSequence(CharSequence inner, long deadline) {
+        this.mInner = inner;
+        this.mDeadline = deadline;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++mCounter == CHECK_INTERVAL) {
+            mCounter = 0;
+            if (MatchBudget.isExpired(mDeadline))
+                throw new MatchTimeoutException("time budget exceeded while matching '" + abbreviate(mInner) + "'");
+        }
+        return mInner.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return mInner.length();
+    }
+
+    // the matcher only needs subsequences for groups and replacement, no need to check the deadline there
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return mInner.subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return mInner.toString();
+    }
+
+    private static String abbreviate(CharSequence text) {
+        if (text.length() <= 50)
+            return text.toString();
+        return text.subSequence(0, 50) + "...";
+    }
+}
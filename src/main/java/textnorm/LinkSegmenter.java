@@ -0,0 +1,237 @@
+package textnorm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Segments the parts of URLs, e-mail addresses and hashtags into known words, so that "visir" is read "vísir" and
+ * "ruv" "rúv", instead of spelling them letter by letter. Parts that are not covered by known words are still
+ * spelled, as by TTSNormalizer.insertSpaces().
+ *
+ * The known words are the words of the pronunciation dictionary (ice_pron_dict_standard_clear_2102.csv), also in
+ * their ASCII form, since domains are mostly written without Icelandic letters, and the abbreviations of the
+ * Tokenizer, which are units but spelled. They are stored in a trie, the segmentation is a dynamic-programming
+ * word break: for each position reachable by a segmentation, the trie is walked from that position, at most
+ * to the length of the longest word, so the segmentation runs in linear time in the length of the token. Known
+ * words cost less than spelled characters, the cheapest segmentation wins.
+ *
+ * Results are memoized, repeated domains (mbl.is, visir.is) are only segmented once.
+ */
+public class LinkSegmenter {
+    private final static Logger LOGGER = Logger.getLogger(LinkSegmenter.class.getName());
+    private static final String PRON_DICT = "ice_pron_dict_standard_clear_2102.csv";
+    // short words match inside abbreviations and names too often: they have to be delimited by non-letters ("ruv",
+    // "jon@"), a word within a run of letters needs MIN_EMBEDDED_LENGTH characters ("handle" is not "h and l e")
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final int MIN_EMBEDDED_LENGTH = 4;
+    private static final int MIN_ABBREVIATION_LENGTH = 2;
+    private static final int WORD_COST = 2;
+    private static final int CHAR_COST = 3;
+    private static final int MAX_CACHED_SEGMENTS = 100000;
+    private static final String[][] ASCII_FORMS = {{"á", "a"}, {"é", "e"}, {"í", "i"}, {"ó", "o"}, {"ú", "u"},
+            {"ý", "y"}, {"ð", "d"}, {"þ", "th"}, {"æ", "ae"}, {"ö", "o"}};
+    // an abbreviation: spelled as a unit
+    private static final String SPELLED = "";
+
+    // the trie: node 0 is the root, children are linked lists of siblings
+    private char[] mLabels = new char[1 << 16];
+    private int[] mFirstChild = new int[1 << 16];
+    private int[] mNextSibling = new int[1 << 16];
+    // index into mWords of the word ending at a node, -1 if none
+    private int[] mWordIds = new int[1 << 16];
+    private int mNodes = 1;
+    private String[] mWords = new String[1 << 12];
+    private int mWordCount = 0;
+    private int mMaxLength = 0;
+
+    private final Map<String, String> mSegmented = new ConcurrentHashMap<>();
+
+    /**
+     * Builds the segmenter from 'words' (as they should be read) and 'abbreviations' (spelled).
+     */
+    public LinkSegmenter(Collection<String> words, Collection<String> abbreviations) {
+        Arrays.fill(mFirstChild, -1);
+        Arrays.fill(mNextSibling, -1);
+        Arrays.fill(mWordIds, -1);
+        for (String word : words) {
+            if (word.length() >= MIN_WORD_LENGTH)
+                insert(word.toLowerCase(), word);
+        }
+        // ASCII forms do not replace words written that way
+        for (String word : words) {
+            String ascii = asciiForm(word.toLowerCase());
+            if (word.length() >= MIN_WORD_LENGTH && !ascii.equals(word.toLowerCase()))
+                insert(ascii, word);
+        }
+        for (String abbreviation : abbreviations) {
+            String letters = abbreviation.replace(".", "").toLowerCase();
+            if (letters.length() >= MIN_ABBREVIATION_LENGTH)
+                insert(letters, SPELLED);
+        }
+    }
+
+    /**
+     * Loads the segmenter from the pronunciation dictionary in the resources and the abbreviations of 'resources'.
+     */
+    static LinkSegmenter load(ResourceRegistry resources) {
+        List<String> words = new ArrayList<>();
+        try (InputStream is = LinkSegmenter.class.getClassLoader().getResourceAsStream(PRON_DICT)) {
+            if (is != null) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0)
+                        words.add(line.substring(0, tab));
+                }
+            }
+            else {
+                LOGGER.warning(PRON_DICT + " not found, links are spelled");
+            }
+        } catch (IOException e) {
+            LOGGER.warning("could not read " + PRON_DICT + ": " + e.getMessage());
+        }
+        List<String> abbreviations = new ArrayList<>(resources.getAbbreviations());
+        abbreviations.addAll(resources.getNonEndingAbbreviations());
+        return new LinkSegmenter(words, abbreviations);
+    }
+
+    /**
+     * Returns 'token' as a space separated sequence of known words and spelled characters, e.g. "visir" ->
+     * "vísir", "mblfrettir" -> "m b l fréttir", "ehf2" -> "e h f 2".
+     */
+    public String segment(String token) {
+        String segmented = mSegmented.get(token);
+        if (segmented == null) {
+            segmented = wordBreak(token);
+            if (mSegmented.size() < MAX_CACHED_SEGMENTS)
+                mSegmented.put(token, segmented);
+        }
+        return segmented;
+    }
+
+    private String wordBreak(String token) {
+        int n = token.length();
+        int[] cost = new int[n + 1];
+        // the segment ending at a position: its start, and the word id or -1 for a spelled character
+        int[] start = new int[n + 1];
+        int[] word = new int[n + 1];
+        Arrays.fill(cost, Integer.MAX_VALUE);
+        cost[0] = 0;
+        for (int i = 0; i < n; i++) {
+            if (cost[i] == Integer.MAX_VALUE)
+                continue;
+            int next = Character.charCount(token.codePointAt(i));
+            relax(cost, start, word, i, i + next, -1, cost[i] + CHAR_COST);
+            int node = 0;
+            for (int j = i; j < n && j - i < mMaxLength; j++) {
+                node = child(node, Character.toLowerCase(token.charAt(j)));
+                if (node < 0)
+                    break;
+                if (mWordIds[node] >= 0 && (j + 1 - i >= MIN_EMBEDDED_LENGTH || isDelimited(token, i, j + 1)))
+                    relax(cost, start, word, i, j + 1, mWordIds[node], cost[i] + WORD_COST);
+            }
+        }
+        String[] segments = new String[n];
+        int count = 0;
+        for (int end = n; end > 0; end = start[end]) {
+            String segment = token.substring(start[end], end);
+            if (word[end] >= 0 && mWords[word[end]] != SPELLED)
+                segment = mWords[word[end]];
+            else if (word[end] >= 0)
+                segment = spelled(segment);
+            segments[count++] = segment;
+        }
+        StringBuilder sb = new StringBuilder(n * 2);
+        for (int i = count - 1; i >= 0; i--) {
+            sb.append(segments[i]);
+            if (i > 0)
+                sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    // on equal cost, a known word wins over spelled characters
+    private static void relax(int[] cost, int[] start, int[] word, int from, int to, int wordId, int newCost) {
+        if (newCost < cost[to] || (newCost == cost[to] && wordId >= 0 && word[to] < 0)) {
+            cost[to] = newCost;
+            start[to] = from;
+            word[to] = wordId;
+        }
+    }
+
+    private static boolean isDelimited(String token, int start, int end) {
+        return (start == 0 || !Character.isLetter(token.charAt(start - 1)))
+                && (end == token.length() || !Character.isLetter(token.charAt(end)));
+    }
+
+    private static String spelled(String letters) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < letters.length(); i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(letters.charAt(i));
+        }
+        return sb.toString();
+    }
+
+    private static String asciiForm(String word) {
+        String ascii = word;
+        for (String[] form : ASCII_FORMS)
+            ascii = ascii.replace(form[0], form[1]);
+        return ascii;
+    }
+
+    private int child(int node, char label) {
+        for (int c = mFirstChild[node]; c >= 0; c = mNextSibling[c]) {
+            if (mLabels[c] == label)
+                return c;
+        }
+        return -1;
+    }
+
+    private void insert(String key, String word) {
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            int next = child(node, key.charAt(i));
+            if (next < 0) {
+                next = newNode(key.charAt(i));
+                mNextSibling[next] = mFirstChild[node];
+                mFirstChild[node] = next;
+            }
+            node = next;
+        }
+        if (mWordIds[node] >= 0)
+            return;
+        if (mWordCount == mWords.length)
+            mWords = Arrays.copyOf(mWords, mWords.length * 2);
+        mWords[mWordCount] = word;
+        mWordIds[node] = mWordCount++;
+        mMaxLength = Math.max(mMaxLength, key.length());
+    }
+
+    private int newNode(char label) {
+        if (mNodes == mLabels.length) {
+            int size = mLabels.length * 2;
+            mLabels = Arrays.copyOf(mLabels, size);
+            mFirstChild = Arrays.copyOf(mFirstChild, size);
+            mNextSibling = Arrays.copyOf(mNextSibling, size);
+            mWordIds = Arrays.copyOf(mWordIds, size);
+            Arrays.fill(mFirstChild, mNodes, size, -1);
+            Arrays.fill(mNextSibling, mNodes, size, -1);
+            Arrays.fill(mWordIds, mNodes, size, -1);
+        }
+        mLabels[mNodes] = label;
+        return mNodes++;
+    }
+}
@@ -0,0 +1,65 @@
+package textnorm;
+
+import java.time.Duration;
+
+/**
+ * Time budgets for regex matching: for the evaluation of a single rule (one regex on one sentence or token) and
+ * for all rules evaluated on one sentence in one normalization step (preNormalize, postNormalize).
+ * Deadlines are System.nanoTime() values, NO_DEADLINE means unlimited.
+ *
+ * Matching is unlimited by default (UNLIMITED), a rule that runs out of budget is not applied, which changes the
+ * output. Callers that need bounded latency opt in, e.g. with GENEROUS, see TTSNormalizer.setMatchBudget().
+ */
+public class MatchBudget {
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    public static final MatchBudget UNLIMITED = new MatchBudget(null, null);
+    // generous limits, a normal sentence takes a few milliseconds for all rules
+    public static final MatchBudget GENEROUS = new MatchBudget(Duration.ofMillis(100), Duration.ofMillis(1000));
+
+    private final long mRuleNanos;
+    private final long mSentenceNanos;
+
+    /**
+     * @param perRule maximum time to evaluate one rule, null for unlimited
+     * @param perSentence maximum time to evaluate all rules for one sentence, null for unlimited
+     */
+    public MatchBudget(Duration perRule, Duration perSentence) {
+        this.mRuleNanos = perRule == null ? -1 : perRule.toNanos();
+        this.mSentenceNanos = perSentence == null ? -1 : perSentence.toNanos();
+    }
+
+    public boolean isUnlimited() {
+        return mRuleNanos < 0 && mSentenceNanos < 0;
+    }
+
+    // the deadline for a sentence starting now
+    public long sentenceDeadline() {
+        if (mSentenceNanos < 0)
+            return NO_DEADLINE;
+        return System.nanoTime() + mSentenceNanos;
+    }
+
+    // the deadline for a rule starting now, never later than 'sentenceDeadline'
+    public long ruleDeadline(long sentenceDeadline) {
+        if (mRuleNanos < 0)
+            return sentenceDeadline;
+        long deadline = System.nanoTime() + mRuleNanos;
+        if (sentenceDeadline != NO_DEADLINE && sentenceDeadline - deadline < 0)
+            return sentenceDeadline;
+        return deadline;
+    }
+
+    // the earlier of two deadlines
+    public static long earlier(long deadline, long other) {
+        if (deadline == NO_DEADLINE)
+            return other;
+        if (other == NO_DEADLINE || deadline - other < 0)
+            return deadline;
+        return other;
+    }
+
+    public static boolean isExpired(long deadline) {
+        return deadline != NO_DEADLINE && System.nanoTime() - deadline > 0;
+    }
+}
@@ -0,0 +1,12 @@
+package textnorm;
+
+/**
+ * Thrown when matching a regular expression takes longer than the time budget allowed for it, see MatchBudget.
+ */
+public class MatchTimeoutException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public MatchTimeoutException(String message) {
+        super(message);
+    }
+}
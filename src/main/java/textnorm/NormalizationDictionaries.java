@@ -367,7 +367,7 @@ public class NormalizationDictionaries {
     }
 
     public static OrderedMap<String, String> distanceDict = new ListOrderedMap<>();
-    public static Map<String, String> getDistanceDict() {
+    public static synchronized Map<String, String> getDistanceDict() {
         if (!distanceDict.isEmpty())
             return distanceDict;
 
@@ -436,7 +436,7 @@ public class NormalizationDictionaries {
 
     public static Map<String, String> areaDict = new HashMap<>();
 
-    public static Map<String, String> getAreaDict() {
+    public static synchronized Map<String, String> getAreaDict() {
         if (!areaDict.isEmpty())
             return areaDict;
 
@@ -490,7 +490,7 @@ public class NormalizationDictionaries {
 
     private static Map<String, String> volumeDict = new HashMap<>();
 
-    public static Map<String, String> getVolumeDict() {
+    public static synchronized Map<String, String> getVolumeDict() {
         if (!volumeDict.isEmpty())
             return volumeDict;
 
@@ -518,7 +518,7 @@ public class NormalizationDictionaries {
 
     private static Map<String, String> timeDict = new HashMap<>();
 
-    public static Map<String, String> getTimeDict() {
+    public static synchronized Map<String, String> getTimeDict() {
         if  (!timeDict.isEmpty())
             return timeDict;
 
@@ -555,7 +555,7 @@ public class NormalizationDictionaries {
 
     public static Map<String, String> currencyDict = new HashMap<>();
 
-    public static Map<String, String> getCurrencyDict() {
+    public static synchronized Map<String, String> getCurrencyDict() {
         if (!currencyDict.isEmpty())
             return currencyDict;
         // krónur:
@@ -584,7 +584,7 @@ public class NormalizationDictionaries {
 
     public static Map<String, String> electronicDict = new HashMap<>();
 
-    public static Map<String, String> getElectronicDict() {
+    public static synchronized Map<String, String> getElectronicDict() {
         if (!electronicDict.isEmpty())
             return electronicDict;
 
@@ -1,12 +1,11 @@
 package textnorm;
 
-import opennlp.tools.postag.POSModel;
-import opennlp.tools.postag.POSTaggerME;
-
 import java.io.IOException;
-import java.io.InputStream;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 /**
@@ -19,15 +18,83 @@ import java.util.logging.Logger;
 
 public class NormalizationManager {
     private final static Logger LOGGER = Logger.getLogger(NormalizationManager.class.getName());
-    private final static String POS_MODEL = "is-pos-maxent.bin";
     TTSUnicodeNormalizer mUnicodeNormalizer;
     Tokenizer mTokenizer;
     TTSNormalizer mTTSNormalizer;
+    PlainSentenceFilter mPlainSentenceFilter;
+    TagLexicon mTagLexicon;
+    SentenceCache mSentenceCache;
+    PersistentSentenceCache mPersistentCache;
+    RequestCoalescer mRequestCoalescer;
+    // moving average of the time to normalize a sentence in full, to decide when a request budget runs out
+    private long mSentenceNanos = 5_000_000;
 
     public NormalizationManager() {
         mUnicodeNormalizer = new TTSUnicodeNormalizer();
         mTokenizer = new Tokenizer();
         mTTSNormalizer = new TTSNormalizer();
+        // shared by all managers, see ResourceRegistry
+        mPlainSentenceFilter = ResourceRegistry.get().getPlainSentenceFilter();
+    }
+
+    /**
+     * Sets a rule profile for the pre-normalization dictionaries, see RuleProfile. Use a calibration profile
+     * to collect rule hit statistics on representative input, save it, and load it in later processes.
+     * @param profile a calibration or a loaded rule profile, null to evaluate all rules in dictionary order
+     */
+    public void setRuleProfile(RuleProfile profile) {
+        mTTSNormalizer.setRuleProfile(profile);
+    }
+
+    /**
+     * Sets the time budget for regex matching per rule and per sentence, see MatchBudget.
+     * Matching is unlimited by default.
+     */
+    public void setMatchBudget(MatchBudget budget) {
+        mTTSNormalizer.setMatchBudget(budget);
+    }
+
+    /**
+     * Sets a lexicon to tag the words following numbers without the POS-tagger, see TagLexicon. The tagger is only
+     * run for sentences where one of these words is not in the lexicon. An observing lexicon records the tagger
+     * output instead, to build a lexicon from.
+     * @param lexicon a loaded or an observing lexicon, null to always use the POS-tagger
+     */
+    public void setTagLexicon(TagLexicon lexicon) {
+        mTagLexicon = lexicon;
+    }
+
+    /**
+     * Sets a cache for the normalized sentences, see SentenceCache. A cache can be shared by several managers.
+     * Results affected by a rule or sentence timeout are not cached.
+     * @param cache an off-heap sentence cache, null to normalize every sentence
+     */
+    public void setSentenceCache(SentenceCache cache) {
+        mSentenceCache = cache;
+    }
+
+    /**
+     * Sets a cache file for the normalized sentences, that keeps them across restarts, see PersistentSentenceCache.
+     * It is consulted after the sentence cache, a sentence found in the file is added to the sentence cache.
+     * @param cache an opened cache file, null to not use a cache file
+     */
+    public void setPersistentCache(PersistentSentenceCache cache) {
+        mPersistentCache = cache;
+    }
+
+    /**
+     * Sets a coalescer, shared with the managers of other threads, so identical texts processed at the same time
+     * are only normalized once, see RequestCoalescer. Only process(text), process(text, profile) and
+     * process(text, profile, domain) are coalesced. A coalesced request gets the result of the manager that
+     * normalized the text, the managers sharing a coalescer should have the same settings.
+     * @param coalescer the shared coalescer, null to normalize every request
+     */
+    public void setRequestCoalescer(RequestCoalescer coalescer) {
+        mRequestCoalescer = coalescer;
+    }
+
+    public NormalizationMetrics getMetrics() {
+        return mTTSNormalizer.getMetrics();
     }
 
     /**
@@ -36,33 +103,292 @@ public class NormalizationManager {
      * @return
      */
     public String process(String text) {
+        return process(text, NormalizationProfile.ACCURATE);
+    }
+
+    /**
+     * Processes the input text like process(text), with the parts of the pipeline 'profile' turns on.
+     * @param text the input text
+     * @param profile e.g. NormalizationProfile.FAST for normalization without POS-tagging
+     * @return the normalized text
+     */
+    public String process(String text, NormalizationProfile profile) {
+        return process(text, profile, Domain.GENERAL);
+    }
 
+    /**
+     * Processes the input text like process(text, profile), with the rules of 'domain' (see Domain).
+     * @param text the input text
+     * @param profile e.g. NormalizationProfile.FAST for normalization without POS-tagging
+     * @param domain the domain of the text, null to detect it from the text
+     * @return the normalized text
+     */
+    public String process(String text, NormalizationProfile profile, Domain domain) {
+        RuleSet rules = ResourceRegistry.get().getRuleSet();
+        RequestCoalescer coalescer = mRequestCoalescer;
+        if (coalescer == null)
+            return normalizeText(text, rules, profile, domain);
+        boolean[] executed = {false};
+        String normalized = coalescer.process(text, rules, profile, domain, () -> {
+            executed[0] = true;
+            return normalizeText(text, rules, profile, domain);
+        });
+        if (!executed[0])
+            mTTSNormalizer.getMetrics().countCoalescedRequest();
+        return normalized;
+    }
+
+    private String normalizeText(String text, RuleSet rules, NormalizationProfile profile, Domain domain) {
         String cleaned = mUnicodeNormalizer.normalizeEncoding(text);
-        List<String> tokenized = mTokenizer.detectSentences(cleaned);
-        List<String> normalizedSentences = normalize(tokenized);
+        if (domain == null)
+            domain = Domain.detect(cleaned);
+        List<String> tokenized = tokenizer(rules).detectSentences(cleaned);
+        List<String> normalizedSentences = normalize(tokenized, rules, profile, domain, MatchBudget.NO_DEADLINE, null);
 
         return list2string(normalizedSentences);
     }
 
-    // pre-normalization, tagging and final normalization of the sentences in 'tokenized'
-    private List<String> normalize(List<String> tokenized) {
-        String preNormalized;
+    /**
+     * Processes the input text like process(text), within the time 'budget'. When the remaining time is not enough
+     * to normalize the next sentence in full (measured by the average time per sentence so far), the remaining
+     * sentences are normalized in a cheap fallback mode: no dictionaries and no tagging, digits are read one by one
+     * (see TTSNormalizer.fallbackNormalize()). The result flags these sentences as degraded.
+     * A sentence started in full mode is limited by the MatchBudget and by the budget of the request: when the
+     * request deadline passes within the sentence, its remaining rules are skipped and its remaining tokens are
+     * normalized in the fallback mode, and the sentence is flagged as degraded as well. Only a single step that can
+     * not be interrupted, i.e. a tagger run, can take the request beyond its budget.
+     * @param text the input text
+     * @param budget the time for the whole request
+     * @return the normalized text and the degraded sentences
+     */
+    public NormalizationResult process(String text, Duration budget) {
+        return process(text, NormalizationProfile.ACCURATE, Domain.GENERAL, budget);
+    }
+
+    /**
+     * As process(text, budget), with the parts of the pipeline 'profile' turns on and the rules of 'domain'.
+     * @param text the input text
+     * @param profile e.g. NormalizationProfile.FAST for normalization without POS-tagging
+     * @param domain the domain of the text, null to detect it from the text
+     * @param budget the time for the whole request
+     * @return the normalized text and the degraded sentences
+     */
+    public NormalizationResult process(String text, NormalizationProfile profile, Domain domain, Duration budget) {
+        long deadline = System.nanoTime() + budget.toNanos();
+        RuleSet rules = ResourceRegistry.get().getRuleSet();
+        String cleaned = mUnicodeNormalizer.normalizeEncoding(text);
+        if (domain == null)
+            domain = Domain.detect(cleaned);
+        List<String> tokenized = tokenizer(rules).detectSentences(cleaned);
+        boolean[] degraded = new boolean[tokenized.size()];
+        List<String> normalizedSentences = normalize(tokenized, rules, profile, domain, deadline, degraded);
+        return new NormalizationResult(normalizedSentences, degraded);
+    }
+
+    /**
+     * Processes the input text like process(text), but hands each normalized sentence to 'sentenceConsumer' as
+     * soon as it is ready, so synthesis can start before the whole text is normalized.
+     * @param text the input text
+     * @param sentenceConsumer receives the normalized sentences in text order
+     */
+    public void process(String text, Consumer<String> sentenceConsumer) {
+        process(text, 0, sentenceConsumer);
+    }
+
+    /**
+     * As process(text, sentenceConsumer), but sentences longer than 'maxChunkLength' characters are split into
+     * chunks, preferably at commas or conjunctions, see SentenceChunker.
+     * @param text the input text
+     * @param maxChunkLength maximum length of the chunks handed to 'sentenceConsumer', 0 for no splitting
+     * @param sentenceConsumer receives the normalized sentences (or chunks) in text order
+     */
+    public void process(String text, int maxChunkLength, Consumer<String> sentenceConsumer) {
+        process(text, NormalizationProfile.ACCURATE, maxChunkLength, sentenceConsumer);
+    }
+
+    /**
+     * As process(text, maxChunkLength, sentenceConsumer), with the steps 'profile' turns on.
+     */
+    public void process(String text, NormalizationProfile profile, int maxChunkLength,
+                        Consumer<String> sentenceConsumer) {
+        SentenceChunker chunker = maxChunkLength > 0 ? new SentenceChunker(maxChunkLength) : null;
+        RuleSet rules = ResourceRegistry.get().getRuleSet();
+        String cleaned = mUnicodeNormalizer.normalizeEncoding(text);
+        int[] counter = {0};
+        tokenizer(rules).detectSentences(cleaned, sentence -> {
+            String normalized = normalizeSentence(sentence, counter[0]++, rules, profile, Domain.GENERAL,
+                    MatchBudget.NO_DEADLINE);
+            if (chunker == null)
+                sentenceConsumer.accept(normalized);
+            else
+                chunker.split(normalized).forEach(sentenceConsumer);
+        });
+    }
+
+    /*
+     * The rule set is taken once per text, a rule set published while the text is processed is used from the next
+     * text on. The tokenizer is only replaced if the rule set has changed.
+     */
+    private Tokenizer tokenizer(RuleSet rules) {
+        if (mTokenizer.getRuleSet() != rules)
+            mTokenizer = new Tokenizer(rules);
+        return mTokenizer;
+    }
+
+    /*
+     * Pre-normalization, tagging and final normalization of the sentences in 'tokenized'. Sentences that can not be
+     * normalized in full before 'deadline' are normalized in the fallback mode and flagged in 'degraded'.
+     */
+    private List<String> normalize(List<String> tokenized, RuleSet rules, NormalizationProfile profile, Domain domain,
+                                   long deadline, boolean[] degraded) {
         List<String> normalized = new ArrayList<>();
         int counter = 0;
         for (String sentence : tokenized) {
-            if (counter % 100 == 0) {
-                LOGGER.info("processing sentence no. " + counter + " ...");
+            if (deadline == MatchBudget.NO_DEADLINE) {
+                normalized.add(normalizeSentence(sentence, counter, rules, profile, domain, deadline));
+            }
+            else {
+                long start = System.nanoTime();
+                if (deadline - start < mSentenceNanos) {
+                    normalized.add(mTTSNormalizer.fallbackNormalize(sentence));
+                    mTTSNormalizer.getMetrics().countDegradedSentence();
+                    degraded[counter] = true;
+                }
+                else {
+                    NormalizationMetrics metrics = mTTSNormalizer.getMetrics();
+                    long timeouts = metrics.getRuleTimeouts() + metrics.getSentenceTimeouts();
+                    normalized.add(normalizeSentence(sentence, counter, rules, profile, domain, deadline));
+                    long nanos = System.nanoTime() - start;
+                    mSentenceNanos += (nanos - mSentenceNanos) / 8;
+                    // the fallback mode took over within the sentence
+                    if (metrics.getRuleTimeouts() + metrics.getSentenceTimeouts() != timeouts) {
+                        metrics.countDegradedSentence();
+                        degraded[counter] = true;
+                    }
+                }
             }
-            preNormalized = mTTSNormalizer.preNormalize(sentence);
-            String[] tags = tagText(preNormalized);
-            // preNormalized is tokenized as string, so we know splitting on whitespace will give
-            // us the correct tokens according to the tokenizer
-            normalized.add(mTTSNormalizer.postNormalize(preNormalized.split(" "), tags));
             counter++;
         }
         return normalized;
     }
 
+    /*
+     * Normalizes 'sentence', from the caches if they have it. The match budget of the sentence ends at 'deadline' at
+     * the latest.
+     */
+    private String normalizeSentence(String sentence, int counter, RuleSet rules, NormalizationProfile profile,
+                                     Domain domain, long deadline) {
+        if (counter % 100 == 0) {
+            LOGGER.info("processing sentence no. " + counter + " ...");
+        }
+        SentenceCache cache = mSentenceCache;
+        PersistentSentenceCache persistentCache = mPersistentCache;
+        if (cache == null && persistentCache == null)
+            return normalizeSentence(sentence, rules, profile, domain, deadline);
+        String normalized = cache == null ? null : cache.get(sentence, rules, profile, domain);
+        if (normalized != null)
+            return normalized;
+        normalized = persistentCache == null ? null : persistentCache.get(sentence, rules, profile, domain);
+        if (normalized == null) {
+            NormalizationMetrics metrics = mTTSNormalizer.getMetrics();
+            long timeouts = metrics.getRuleTimeouts() + metrics.getSentenceTimeouts();
+            normalized = normalizeSentence(sentence, rules, profile, domain, deadline);
+            if (metrics.getRuleTimeouts() + metrics.getSentenceTimeouts() != timeouts)
+                return normalized;
+            if (persistentCache != null)
+                putPersistent(persistentCache, sentence, rules, profile, domain, normalized);
+        }
+        if (cache != null)
+            cache.put(sentence, rules, profile, domain, normalized);
+        return normalized;
+    }
+
+    // a cache file that can not be written does not stop the normalization
+    private static void putPersistent(PersistentSentenceCache cache, String sentence, RuleSet rules,
+                                      NormalizationProfile profile, Domain domain, String normalized) {
+        try {
+            cache.put(sentence, rules, profile, domain, normalized);
+        } catch (IOException e) {
+            LOGGER.warning("could not write to the cache file: " + e.getMessage());
+        }
+    }
+
+    private String normalizeSentence(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain,
+                                     long deadline) {
+        String[] tokens = preNormalize(sentence, rules, profile, domain, deadline);
+        if (tokens == null)
+            return sentence;
+        String[] tags = tag(tokens, profile);
+        return mTTSNormalizer.postNormalize(tokens, tags, rules, profile, domain, deadline);
+    }
+
+    /*
+     * The steps of normalizeSentence(), run by separate threads in a NormalizationPipeline.
+     * Returns the pre-normalized tokens of 'sentence', or null if the sentence needs no normalization.
+     */
+    String[] preNormalize(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain) {
+        return preNormalize(sentence, rules, profile, domain, MatchBudget.NO_DEADLINE);
+    }
+
+    private String[] preNormalize(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain,
+                                  long deadline) {
+        // clean prose: nothing to normalize - the filter only knows the built-in rules, not those of a rule file
+        if (rules.getRegexRules().isEmpty() && mPlainSentenceFilter.isPlain(sentence)) {
+            mTTSNormalizer.getMetrics().countPlainSentence();
+            return null;
+        }
+        String preNormalized = mTTSNormalizer.preNormalize(sentence, rules, profile, domain, deadline);
+        // preNormalized is tokenized as string, so we know splitting on whitespace will give
+        // us the correct tokens according to the tokenizer
+        return preNormalized.split(" ");
+    }
+
+    String postNormalize(String[] tokens, String[] tags, RuleSet rules, NormalizationProfile profile, Domain domain) {
+        return mTTSNormalizer.postNormalize(tokens, tags, rules, profile, domain);
+    }
+
+    /*
+     * Most sentences contain no numbers, the tagger is the most expensive step and not needed for them. If there are
+     * numbers, only the tags of the following words are needed, try to find them in the lexicon first. If 'profile'
+     * turns off tagging, words not in the lexicon get the DEFAULT_TAG of NormalizationProfile.
+     */
+    String[] tag(String[] tokens, NormalizationProfile profile) {
+        NormalizationMetrics metrics = mTTSNormalizer.getMetrics();
+        boolean[] positions = mTTSNormalizer.tagPositions(tokens);
+        String[] tags = new String[tokens.length];
+        Arrays.fill(tags, "");
+        boolean needsTags = false;
+        boolean lexicon = mTagLexicon != null && !mTagLexicon.isObserving();
+        boolean inLexicon = lexicon;
+        for (int i = 0; i < tokens.length; i++) {
+            if (!positions[i])
+                continue;
+            needsTags = true;
+            String tag = inLexicon || (lexicon && !profile.isTagging()) ? mTagLexicon.lookup(tokens[i]) : null;
+            if (tag == null) {
+                inLexicon = false;
+                // replaced by the tagger output, if tagging is on
+                tag = NormalizationProfile.DEFAULT_TAG;
+            }
+            tags[i] = tag;
+        }
+        if (!needsTags) {
+            metrics.countUntaggedSentence();
+            return tags;
+        }
+        if (inLexicon) {
+            metrics.countLexiconTaggedSentence();
+            return tags;
+        }
+        if (!profile.isTagging())
+            return tags;
+        tags = tagText(tokens);
+        metrics.countTaggedSentence();
+        if (mTagLexicon != null && mTagLexicon.isObserving())
+            mTagLexicon.observe(tokens, tags);
+        return tags;
+    }
+
     private String list2string(List<String> normalizedSentences) {
         StringBuilder sb = new StringBuilder();
         for (String sentence : normalizedSentences) {
@@ -72,14 +398,10 @@ public class NormalizationManager {
         return sb.toString().trim();
     }
 
-    private String[] tagText(String text) {
+    private String[] tagText(String[] tokens) {
         String[] tags = {};
         try {
-            InputStream is = getClass().getClassLoader().getResourceAsStream(POS_MODEL);
-            POSModel posModel = new POSModel(is);
-            POSTaggerME posTagger = new POSTaggerME(posModel);
-            String[] tokens = text.split(" ");
-            tags = posTagger.tag(tokens);
+            tags = ResourceRegistry.get().tag(tokens);
             // Getting the probabilities of the tags given to the tokens to inspect
             //double probs[] = posTagger.probs();
             //System.out.println("Token\t:\tTag\t:\tProbability\n---------------------------------------------");
@@ -0,0 +1,108 @@
+package textnorm;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters for events during normalization that are interesting to monitor, e.g. rules that had to be aborted
+ * because they exceeded their time budget. Safe to share between threads.
+ */
+public class NormalizationMetrics {
+    // a rule exceeded its time budget and was not applied
+    private final LongAdder mRuleTimeouts = new LongAdder();
+    // a sentence exceeded its time budget, the remaining rules were not applied
+    private final LongAdder mSentenceTimeouts = new LongAdder();
+    // a sentence was normalized without POS-tagging, because no token depended on the tags
+    private final LongAdder mUntaggedSentences = new LongAdder();
+    // a sentence needed no normalization and was passed to the output as it is
+    private final LongAdder mPlainSentences = new LongAdder();
+    // the words after the numbers of a sentence were all tagged from the TagLexicon
+    private final LongAdder mLexiconTaggedSentences = new LongAdder();
+    // a sentence was tagged by the POS-tagger
+    private final LongAdder mTaggedSentences = new LongAdder();
+    // a sentence was normalized in the fallback mode, because the time budget of the request was running out
+    private final LongAdder mDegradedSentences = new LongAdder();
+    // a request received the result of an identical request in flight, see RequestCoalescer
+    private final LongAdder mCoalescedRequests = new LongAdder();
+
+    public void countRuleTimeout() {
+        mRuleTimeouts.increment();
+    }
+
+    public void countSentenceTimeout() {
+        mSentenceTimeouts.increment();
+    }
+
+    public void countUntaggedSentence() {
+        mUntaggedSentences.increment();
+    }
+
+    public void countPlainSentence() {
+        mPlainSentences.increment();
+    }
+
+    public void countLexiconTaggedSentence() {
+        mLexiconTaggedSentences.increment();
+    }
+
+    public void countTaggedSentence() {
+        mTaggedSentences.increment();
+    }
+
+    public void countDegradedSentence() {
+        mDegradedSentences.increment();
+    }
+
+    public void countCoalescedRequest() {
+        mCoalescedRequests.increment();
+    }
+
+    public long getRuleTimeouts() {
+        return mRuleTimeouts.sum();
+    }
+
+    public long getSentenceTimeouts() {
+        return mSentenceTimeouts.sum();
+    }
+
+    public long getUntaggedSentences() {
+        return mUntaggedSentences.sum();
+    }
+
+    public long getPlainSentences() {
+        return mPlainSentences.sum();
+    }
+
+    public long getLexiconTaggedSentences() {
+        return mLexiconTaggedSentences.sum();
+    }
+
+    public long getTaggedSentences() {
+        return mTaggedSentences.sum();
+    }
+
+    public long getDegradedSentences() {
+        return mDegradedSentences.sum();
+    }
+
+    public long getCoalescedRequests() {
+        return mCoalescedRequests.sum();
+    }
+
+    /**
+     * Share of the sentences needing tags that had to be tagged by the POS-tagger, because the lexicon did not
+     * know all words following numbers.
+     */
+    public double getTaggerFallbackRate() {
+        long tagged = getTaggedSentences();
+        long total = tagged + getLexiconTaggedSentences();
+        return total == 0 ? 0 : (double) tagged / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ruleTimeouts=" + getRuleTimeouts() + ", sentenceTimeouts=" + getSentenceTimeouts()
+                + ", untaggedSentences=" + getUntaggedSentences() + ", plainSentences=" + getPlainSentences()
+                + ", lexiconTaggedSentences=" + getLexiconTaggedSentences() + ", taggedSentences=" + getTaggedSentences()
+                + ", degradedSentences=" + getDegradedSentences() + ", coalescedRequests=" + getCoalescedRequests();
+    }
+}
@@ -0,0 +1,339 @@
+package textnorm;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Runs the steps of NormalizationManager.process() as stages in their own threads, connected by bounded queues,
+ * for continuous streams of input texts. The stages differ a lot in cost: the unicode cleaning is cheap, the
+ * tagging expensive. Each stage has its own number of worker threads, so the expensive stages can be scaled
+ * separately, e.g. four tagging threads and one thread for each other stage.
+ *
+ * Texts are submitted with submit(), the stages UNICODE and TOKENIZE work on texts, the following stages on the
+ * sentences of the texts. The normalized sentences are collected per text, the result of a text is the same as
+ * the result of NormalizationManager.process() with the manager the pipeline was created with.
+ *
+ * Backpressure: a stage blocks while the queue of the next stage is full, and submit() blocks while 'maxTexts'
+ * texts are in the pipeline, i.e. while their results are not yet complete. The queue depth, the maximum queue
+ * depth, the number of items processed and the time spent blocked on a full queue are counted per stage.
+ */
+public class NormalizationPipeline implements Closeable {
+    private final static Logger LOGGER = Logger.getLogger(NormalizationPipeline.class.getName());
+
+    public enum Stage {
+        UNICODE, TOKENIZE, PRE_NORMALIZE, TAG, POST_NORMALIZE
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    // handed through the stages on close(), after all submitted texts
+    private static final Item END = new Item(null, -1);
+
+    private final NormalizationManager mManager;
+    private final Semaphore mTexts;
+    private final Map<Stage, BlockingQueue<Item>> mQueues = new EnumMap<>(Stage.class);
+    private final Map<Stage, Integer> mWorkers = new EnumMap<>(Stage.class);
+    private final Map<Stage, AtomicInteger> mRunningWorkers = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAccumulator> mMaxQueueDepth = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> mProcessed = new EnumMap<>(Stage.class);
+    private final Map<Stage, LongAdder> mBlockedNanos = new EnumMap<>(Stage.class);
+    private final List<Thread> mThreads = new ArrayList<>();
+    // guarded by this: closed, and the submit() calls that passed the closed check but have not put their text yet
+    private volatile boolean mClosed = false;
+    private int mSubmitting = 0;
+
+    // a text, or a sentence of a text on its way through the stages
+    private static class Item {
+        final Text text;
+        final int index;
+        String sentence;
+        String[] tokens;
+        String[] tags;
+
+        Item(Text text, int index) {
+            this.text = text;
+            this.index = index;
+        }
+    }
+
+    private static class Text {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        final RuleSet rules = ResourceRegistry.get().getRuleSet();
+        final NormalizationProfile profile;
+        Domain domain;
+        String content;
+        String[] sentences;
+        AtomicInteger pending;
+
+        Text(String content, NormalizationProfile profile, Domain domain) {
+            this.content = content;
+            this.profile = profile;
+            this.domain = domain;
+        }
+    }
+
+    /**
+     * Creates the pipeline and starts its threads.
+     *
+     * @param manager the manager whose settings (rule profile, match budget, tag lexicon) and metrics are used
+     * @param queueCapacity capacity of the queue in front of each stage
+     * @param maxTexts maximum number of texts in the pipeline
+     * @param workers number of worker threads per stage, 1 for stages not in the map
+     */
+    public NormalizationPipeline(NormalizationManager manager, int queueCapacity, int maxTexts, Map<Stage, Integer> workers) {
+        if (queueCapacity < 1 || maxTexts < 1)
+            throw new IllegalArgumentException("queue capacity and maximum number of texts must be positive");
+        this.mManager = manager;
+        this.mTexts = new Semaphore(maxTexts);
+        for (Stage stage : STAGES) {
+            int count = workers.getOrDefault(stage, 1);
+            if (count < 1)
+                throw new IllegalArgumentException("no workers for stage " + stage);
+            mQueues.put(stage, new ArrayBlockingQueue<>(queueCapacity));
+            mWorkers.put(stage, count);
+            mRunningWorkers.put(stage, new AtomicInteger(count));
+            mMaxQueueDepth.put(stage, new LongAccumulator(Math::max, 0));
+            mProcessed.put(stage, new LongAdder());
+            mBlockedNanos.put(stage, new LongAdder());
+            for (int i = 0; i < count; i++) {
+                Thread thread = new Thread(() -> work(stage), "normalize-" + stage.name().toLowerCase() + "-" + i);
+                thread.setDaemon(true);
+                mThreads.add(thread);
+            }
+        }
+        mThreads.forEach(Thread::start);
+    }
+
+    /**
+     * Creates a pipeline with one thread per stage, and 'taggers' threads for the tagging.
+     */
+    public NormalizationPipeline(NormalizationManager manager, int taggers) {
+        this(manager, 256, 64, singleStage(Stage.TAG, taggers));
+    }
+
+    private static Map<Stage, Integer> singleStage(Stage stage, int workers) {
+        Map<Stage, Integer> map = new EnumMap<>(Stage.class);
+        map.put(stage, workers);
+        return map;
+    }
+
+    /**
+     * Submits 'text' for normalization, blocks while the pipeline is full.
+     *
+     * @return the normalized text, when all its sentences have passed the pipeline
+     * @throws IllegalStateException if the pipeline has been closed
+     */
+    public CompletableFuture<String> submit(String text) throws InterruptedException {
+        return submit(text, NormalizationProfile.ACCURATE);
+    }
+
+    /**
+     * As submit(text), normalizing with the parts of the pipeline 'profile' turns on. Without tagging, sentences
+     * pass the TAG stage without being tagged.
+     */
+    public CompletableFuture<String> submit(String text, NormalizationProfile profile) throws InterruptedException {
+        return submit(text, profile, Domain.GENERAL);
+    }
+
+    /**
+     * As submit(text, profile), with the rules of 'domain'. If 'domain' is null, the domain is detected from the
+     * text in the UNICODE stage.
+     */
+    public CompletableFuture<String> submit(String text, NormalizationProfile profile, Domain domain)
+            throws InterruptedException {
+        Text job = new Text(text, profile, domain);
+        synchronized (this) {
+            if (mClosed)
+                throw new IllegalStateException("pipeline closed");
+            mSubmitting++;
+        }
+        // block on the semaphore and the queue outside the lock, close() waits for us to put the text
+        try {
+            mTexts.acquire();
+            synchronized (this) {
+                if (mClosed) {
+                    mTexts.release();
+                    throw new IllegalStateException("pipeline closed");
+                }
+            }
+            job.result.whenComplete((result, e) -> mTexts.release());
+            try {
+                put(Stage.UNICODE, new Item(job, -1));
+            } catch (InterruptedException e) {
+                job.result.completeExceptionally(e);
+                throw e;
+            }
+        } finally {
+            synchronized (this) {
+                mSubmitting--;
+                notifyAll();
+            }
+        }
+        return job.result;
+    }
+
+    /**
+     * Returns true once close() has been called, submit() does not accept texts any more.
+     */
+    public boolean isClosed() {
+        return mClosed;
+    }
+
+    /**
+     * Returns the number of items waiting in the queue of 'stage'.
+     */
+    public int getQueueDepth(Stage stage) {
+        return mQueues.get(stage).size();
+    }
+
+    public long getMaxQueueDepth(Stage stage) {
+        return mMaxQueueDepth.get(stage).get();
+    }
+
+    /**
+     * Returns the number of items (texts or sentences) 'stage' has processed.
+     */
+    public long getProcessed(Stage stage) {
+        return mProcessed.get(stage).sum();
+    }
+
+    /**
+     * Returns the time the previous stage (or submit()) was blocked, because the queue of 'stage' was full.
+     */
+    public long getBlockedMillis(Stage stage) {
+        return TimeUnit.NANOSECONDS.toMillis(mBlockedNanos.get(stage).sum());
+    }
+
+    /**
+     * Stops accepting texts, waits for the submitted texts to be normalized, and stops the threads.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (mClosed)
+                return;
+            mClosed = true;
+        }
+        try {
+            // the END items have to follow the texts of submit() calls in progress
+            synchronized (this) {
+                while (mSubmitting > 0)
+                    wait();
+            }
+            for (int i = 0; i < mWorkers.get(Stage.UNICODE); i++)
+                put(Stage.UNICODE, END);
+            for (Thread thread : mThreads)
+                thread.join();
+        } catch (InterruptedException e) {
+            mThreads.forEach(Thread::interrupt);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Stage stage : STAGES) {
+            sb.append(stage).append(": queue=").append(getQueueDepth(stage)).append(", maxQueue=")
+                    .append(getMaxQueueDepth(stage)).append(", processed=").append(getProcessed(stage))
+                    .append(", blockedMillis=").append(getBlockedMillis(stage)).append("; ");
+        }
+        return sb.toString().trim();
+    }
+
+    private void put(Stage stage, Item item) throws InterruptedException {
+        BlockingQueue<Item> queue = mQueues.get(stage);
+        if (!queue.offer(item)) {
+            long start = System.nanoTime();
+            queue.put(item);
+            mBlockedNanos.get(stage).add(System.nanoTime() - start);
+        }
+        mMaxQueueDepth.get(stage).accumulate(queue.size());
+    }
+
+    private void work(Stage stage) {
+        BlockingQueue<Item> queue = mQueues.get(stage);
+        try {
+            while (true) {
+                Item item = queue.take();
+                if (item == END)
+                    break;
+                // the sentences of a failed text are dropped
+                if (item.text.result.isDone())
+                    continue;
+                try {
+                    process(stage, item);
+                } catch (RuntimeException e) {
+                    LOGGER.warning(stage + " failed: " + e);
+                    item.text.result.completeExceptionally(e);
+                }
+                mProcessed.get(stage).increment();
+            }
+            // the last worker of the stage passes the end on to all workers of the next stage
+            if (mRunningWorkers.get(stage).decrementAndGet() == 0 && stage.ordinal() < STAGES.length - 1) {
+                Stage next = STAGES[stage.ordinal() + 1];
+                for (int i = 0; i < mWorkers.get(next); i++)
+                    put(next, END);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(Stage stage, Item item) throws InterruptedException {
+        Text text = item.text;
+        switch (stage) {
+            case UNICODE:
+                text.content = mManager.mUnicodeNormalizer.normalizeEncoding(text.content);
+                if (text.domain == null)
+                    text.domain = Domain.detect(text.content);
+                put(Stage.TOKENIZE, item);
+                break;
+            case TOKENIZE:
+                List<String> sentences = new Tokenizer(text.rules).detectSentences(text.content);
+                text.sentences = new String[sentences.size()];
+                text.pending = new AtomicInteger(sentences.size());
+                if (sentences.isEmpty())
+                    text.result.complete("");
+                for (int i = 0; i < sentences.size(); i++) {
+                    Item sentence = new Item(text, i);
+                    sentence.sentence = sentences.get(i);
+                    put(Stage.PRE_NORMALIZE, sentence);
+                }
+                break;
+            case PRE_NORMALIZE:
+                item.tokens = mManager.preNormalize(item.sentence, text.rules, text.profile, text.domain);
+                // nothing to normalize
+                if (item.tokens == null)
+                    finish(item, item.sentence);
+                else
+                    put(Stage.TAG, item);
+                break;
+            case TAG:
+                item.tags = mManager.tag(item.tokens, text.profile);
+                put(Stage.POST_NORMALIZE, item);
+                break;
+            case POST_NORMALIZE:
+                finish(item, mManager.postNormalize(item.tokens, item.tags, text.rules, text.profile, text.domain));
+                break;
+        }
+    }
+
+    private static void finish(Item item, String normalized) {
+        Text text = item.text;
+        text.sentences[item.index] = normalized;
+        if (text.pending.decrementAndGet() == 0)
+            text.result.complete(String.join(" ", text.sentences).trim());
+    }
+}
@@ -0,0 +1,51 @@
+package textnorm;
+
+/**
+ * Trade-offs between speed and quality of the normalization, chosen per request: a profile turns off whole parts
+ * of the pipeline. Profiles are constants, choosing one costs nothing per call.
+ *
+ * Without tagging, numbers are expanded as if no noun followed them (NumberPatterns.NO_NOUN), e.g. "1" -> "eitt"
+ * in any context. Without unit dictionaries, units and currencies stay abbreviated ("12 km"). Without link
+ * spelling, URLs, e-mail addresses and hashtags are passed on as they are.
+ *
+ * Measured with NormalizationProfileTest.benchmarkTest (short texts with numbers, units, abbreviations and links,
+ * one core), accuracy is the share of the texts normalized as by ACCURATE:
+ *      FAST       550-680 texts/s, accuracy 0.88 (a number before a word not in the tag lexicon)
+ *      PREVIEW    760-910 texts/s, accuracy 0.38
+ * ACCURATE is only measured with the POS model (is-pos-maxent.bin) on the classpath, tagging makes it the slowest
+ * profile. The test checks that PREVIEW is not slower than the slowest profile measured.
+ */
+public enum NormalizationProfile {
+    // full quality, the default
+    ACCURATE(true, true, true),
+    // no POS-tagging, the most expensive step
+    FAST(false, true, true),
+    // maximum speed, e.g. for subtitle previews: no tagging, no unit dictionaries and no link spelling
+    PREVIEW(false, false, false);
+
+    // the IFD tag of an unanalysed word, matches NO_NOUN: the tag of all tokens if tagging is off
+    static final String DEFAULT_TAG = "x";
+
+    private final boolean mTagging;
+    private final boolean mUnits;
+    private final boolean mLinks;
+
+    NormalizationProfile(boolean tagging, boolean units, boolean links) {
+        this.mTagging = tagging;
+        this.mUnits = units;
+        this.mLinks = links;
+    }
+
+    public boolean isTagging() {
+        return mTagging;
+    }
+
+    // the dictionaries of weights, distances, areas, volumes, times, currencies and electronic units
+    public boolean isExpandingUnits() {
+        return mUnits;
+    }
+
+    public boolean isSpellingLinks() {
+        return mLinks;
+    }
+}
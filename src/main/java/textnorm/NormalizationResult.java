@@ -0,0 +1,48 @@
+package textnorm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of NormalizationManager.process(text, budget): the normalized sentences, and which of them were
+ * normalized in the fallback mode because the time budget was running out.
+ */
+public class NormalizationResult {
+    private final List<String> mSentences;
+    private final boolean[] mDegraded;
+
+    NormalizationResult(List<String> sentences, boolean[] degraded) {
+        this.mSentences = Collections.unmodifiableList(new ArrayList<>(sentences));
+        this.mDegraded = degraded.clone();
+    }
+
+    /**
+     * Returns the normalized text, as returned by NormalizationManager.process(text).
+     */
+    public String getText() {
+        return String.join(" ", mSentences).trim();
+    }
+
+    public List<String> getSentences() {
+        return mSentences;
+    }
+
+    public boolean isDegraded(int sentence) {
+        return mDegraded[sentence];
+    }
+
+    public int getDegradedCount() {
+        int count = 0;
+        for (boolean degraded : mDegraded) {
+            if (degraded)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
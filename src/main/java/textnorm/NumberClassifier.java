@@ -0,0 +1,270 @@
+package textnorm;
+
+/**
+ * Classifies a numeric token into one of the NumberToken types in a single left-to-right scan, replacing the chain
+ * of NumberHelper pattern matches in normalizeNumber(). The scan is a small deterministic automaton over the
+ * character classes digit, separator ('.', ',', ':', '/', ' ') and unicode fraction: it records the digit runs and
+ * the separators between them, any other character, two consecutive separators or more than MAX_RUNS digit runs
+ * reject the token (type OTHER). The type is then decided from the recorded shape, and the digit groups needed for
+ * the expansion are extracted from it.
+ *
+ * The NumberHelper patterns remain the reference definition of the types, NumberClassifierTest verifies that both
+ * classify tokens the same way.
+ */
+public class NumberClassifier {
+
+    // the longest accepted token: 1.234.567.890,1 (four integer groups and decimals)
+    private static final int MAX_RUNS = 5;
+    private static final char NONE = 0;
+    private static final String SEPARATORS = ".,:/ ";
+    private static final String VULGAR_FRACTIONS = "½⅓⅔¼¾";
+    private static final int[][] VULGAR_VALUES = {{1, 2}, {1, 3}, {2, 3}, {1, 4}, {3, 4}};
+
+    private NumberClassifier() {}
+
+    public static NumberToken classify(String token) {
+        int[] starts = new int[MAX_RUNS];
+        int[] ends = new int[MAX_RUNS];
+        // separators[i]: the separator preceding digit run i
+        char[] separators = new char[MAX_RUNS];
+        int runs = 0;
+        boolean inRun = false;
+        char pending = NONE;
+        int vulgar = -1;
+        char vulgarSeparator = NONE;
+
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (!inRun) {
+                    if (runs == MAX_RUNS || vulgar >= 0)
+                        return other(token);
+                    starts[runs] = i;
+                    separators[runs] = pending;
+                    pending = NONE;
+                    inRun = true;
+                    runs++;
+                }
+                ends[runs - 1] = i + 1;
+                continue;
+            }
+            inRun = false;
+            int fraction = VULGAR_FRACTIONS.indexOf(c);
+            if (fraction >= 0 && i == token.length() - 1) {
+                vulgar = fraction;
+                vulgarSeparator = pending;
+                pending = NONE;
+            }
+            else if (SEPARATORS.indexOf(c) >= 0 && pending == NONE && runs > 0) {
+                pending = c;
+            }
+            else {
+                return other(token);
+            }
+        }
+        // only an ordinal dot may end a token
+        boolean ordinal = pending == '.';
+        if (pending != NONE && !ordinal)
+            return other(token);
+
+        Shape shape = new Shape(token, starts, ends, separators, runs);
+        if (vulgar >= 0)
+            return vulgarFraction(shape, vulgar, vulgarSeparator);
+        if (runs == 0)
+            return other(token);
+        if (ordinal)
+            return ordinal(shape);
+        return cardinal(shape);
+    }
+
+    // ½ or 3½ or 3 ½
+    private static NumberToken vulgarFraction(Shape shape, int vulgar, char separator) {
+        int numerator = VULGAR_VALUES[vulgar][0];
+        int denominator = VULGAR_VALUES[vulgar][1];
+        if (shape.runs == 0)
+            return fraction(shape.token, 0, numerator, denominator);
+        if (shape.runs == 1 && shape.lead(0) && shape.length(0) <= 3 && (separator == NONE || separator == ' '))
+            return fraction(shape.token, shape.value(0), numerator, denominator);
+        return other(shape.token);
+    }
+
+    // tokens ending with a dot
+    private static NumberToken ordinal(Shape shape) {
+        if (shape.runs == 1) {
+            if (shape.lead(0) && shape.length(0) <= 4)
+                return integer(shape, NumberToken.Type.ORDINAL_THOUSAND, 1);
+            if (shape.length(0) == 2)
+                return new NumberToken(shape.token, NumberToken.Type.DIGIT_ORDINAL, null, null, 0, 0, 0);
+            return other(shape.token);
+        }
+        if (!shape.isDotted(shape.runs))
+            return other(shape.token);
+        if (shape.runs == 2 && shape.length(0) == 1)
+            return integer(shape, NumberToken.Type.ORDINAL_THOUSAND, 2);
+        if (shape.runs == 2)
+            return integer(shape, NumberToken.Type.ORDINAL_MILLION, 2);
+        if (shape.runs <= NumberToken.MAX_GROUPS)
+            return integer(shape, NumberToken.Type.ORDINAL_BIG, shape.runs);
+        return other(shape.token);
+    }
+
+    private static NumberToken cardinal(Shape shape) {
+        switch (shape.runs) {
+            case 1:
+                if (shape.lead(0) && shape.length(0) <= 4)
+                    return integer(shape, NumberToken.Type.CARDINAL_THOUSAND, 1);
+                // 0\d
+                if (!shape.lead(0) && shape.length(0) == 2)
+                    return new NumberToken(shape.token, NumberToken.Type.TIME, null, null, 0, 0, 0);
+                return other(shape.token);
+            case 2:
+                switch (shape.separators[1]) {
+                    case '.':
+                        if (shape.isDotted(2) && shape.length(0) == 1)
+                            return integer(shape, NumberToken.Type.CARDINAL_THOUSAND, 2);
+                        if (shape.isDotted(2))
+                            return integer(shape, NumberToken.Type.CARDINAL_MILLION, 2);
+                        return time(shape);
+                    case ':':
+                        return time(shape);
+                    case ',':
+                        if (shape.lead(0) && shape.length(0) <= 4)
+                            return decimal(shape, NumberToken.Type.DECIMAL_THOUSAND);
+                        if (shape.lead(0) && shape.length(0) <= 12)
+                            return decimal(shape, NumberToken.Type.DECIMAL_BIG);
+                        return other(shape.token);
+                    case '/':
+                        if (shape.lead(0) && isDenominator(shape, 1))
+                            return fraction(shape.token, 0, shape.value(0), shape.value(1));
+                        return other(shape.token);
+                    default:
+                        return other(shape.token);
+                }
+            case 3:
+                // 3 1/2
+                if (shape.separators[1] == ' ' && shape.separators[2] == '/') {
+                    if (shape.lead(0) && shape.length(0) <= 3 && shape.lead(1) && isDenominator(shape, 2))
+                        return fraction(shape.token, shape.value(0), shape.value(1), shape.value(2));
+                    return other(shape.token);
+                }
+                return grouped(shape);
+            default:
+                return grouped(shape);
+        }
+    }
+
+    // three or more digit runs: a big integer or decimal with thousands separators
+    private static NumberToken grouped(Shape shape) {
+        int last = shape.runs - 1;
+        if (shape.isDotted(shape.runs) && shape.runs <= NumberToken.MAX_GROUPS)
+            return integer(shape, NumberToken.Type.CARDINAL_BIG, shape.runs);
+        if (shape.separators[last] == ',' && shape.isDotted(last)) {
+            if (last == 2 && shape.length(0) == 1)
+                return decimal(shape, NumberToken.Type.DECIMAL_THOUSAND);
+            return decimal(shape, NumberToken.Type.DECIMAL_BIG);
+        }
+        return other(shape.token);
+    }
+
+    // ([01]?\d|2[0-4])[:.][0-5]\d
+    private static NumberToken time(Shape shape) {
+        boolean hours = shape.length(0) == 1
+                || (shape.length(0) == 2 && (shape.digit(0, 0) <= 1 || (shape.digit(0, 0) == 2 && shape.digit(0, 1) <= 4)));
+        boolean minutes = shape.length(1) == 2 && shape.digit(1, 0) <= 5;
+        if (hours && minutes)
+            return new NumberToken(shape.token, NumberToken.Type.TIME, null, null, 0, 0, 0);
+        return other(shape.token);
+    }
+
+    // [2-9]|[1-9]\d+
+    private static boolean isDenominator(Shape shape, int run) {
+        return shape.length(run) == 1 ? shape.digit(run, 0) >= 2 : shape.lead(run);
+    }
+
+    // an integer consisting of the first 'runs' digit runs
+    private static NumberToken integer(Shape shape, NumberToken.Type type, int runs) {
+        return new NumberToken(shape.token, type, shape.groups(runs), null, 0, 0, 0);
+    }
+
+    private static NumberToken decimal(Shape shape, NumberToken.Type type) {
+        int last = shape.runs - 1;
+        String decimals = shape.token.substring(shape.starts[last], shape.ends[last]);
+        return new NumberToken(shape.token, type, shape.groups(last), decimals, 0, 0, 0);
+    }
+
+    private static NumberToken fraction(String token, int whole, int numerator, int denominator) {
+        return new NumberToken(token, NumberToken.Type.FRACTION, null, null, whole, numerator, denominator);
+    }
+
+    private static NumberToken other(String token) {
+        return new NumberToken(token, NumberToken.Type.OTHER, null, null, 0, 0, 0);
+    }
+
+    /*
+     * The digit runs of a token and the separators between them.
+     */
+    private static class Shape {
+        private final String token;
+        private final int[] starts;
+        private final int[] ends;
+        private final char[] separators;
+        private final int runs;
+
+        Shape(String token, int[] starts, int[] ends, char[] separators, int runs) {
+            this.token = token;
+            this.starts = starts;
+            this.ends = ends;
+            this.separators = separators;
+            this.runs = runs;
+        }
+
+        int length(int run) {
+            return ends[run] - starts[run];
+        }
+
+        int digit(int run, int index) {
+            return token.charAt(starts[run] + index) - '0';
+        }
+
+        // does the run start with a digit other than 0
+        boolean lead(int run) {
+            return digit(run, 0) != 0;
+        }
+
+        // [1-9]\d{0,2}(\.\d{3})* for the first 'count' runs
+        boolean isDotted(int count) {
+            if (!lead(0) || length(0) > 3)
+                return false;
+            for (int i = 1; i < count; i++) {
+                if (separators[i] != '.' || length(i) != 3)
+                    return false;
+            }
+            return true;
+        }
+
+        // saturates at a value that is out of range for all number tables
+        int value(int run) {
+            if (length(run) > 9)
+                return Integer.MAX_VALUE;
+            return Integer.parseInt(token.substring(starts[run], ends[run]));
+        }
+
+        // the three digit groups of the integer formed by the first 'count' runs, lowest group first
+        int[] groups(int count) {
+            int[] groups = new int[NumberToken.MAX_GROUPS];
+            int factor = 1;
+            int group = 0;
+            for (int run = count - 1; run >= 0; run--) {
+                for (int i = ends[run] - 1; i >= starts[run]; i--) {
+                    groups[group] += (token.charAt(i) - '0') * factor;
+                    factor *= 10;
+                    if (factor == 1000) {
+                        factor = 1;
+                        group++;
+                    }
+                }
+            }
+            return groups;
+        }
+    }
+}
@@ -50,15 +50,15 @@ public class NumberHelper {
     public static final String[] TIME_SPORT_COLS = new String[] {FIRST_TEN, FIRST_ONE, BETWEEN_TEAMS, SECOND_TEN, SECOND_ONE};
 
     public static final String ORDINAL_THOUSAND_PTRN = "^([1-9]\\.?\\d{3}|[1-9]\\d{0,2})\\.$"; //1.234. or 1. or 12. or 123.
-    public static final String ORDINAL_MILLION_PTRN = "^[1-9]\\d{0,2}\\.\\d{3}\\.$";
-    public static final String ORDINAL_BIG_PTRN = "^[1-9]\\d{0,2}(\\.\\d{3}){2,3}\\.$";
+    public static final String ORDINAL_MILLION_PTRN = "^[1-9]\\d{0,2}\\.\\d{3}\\.$"; //12.345. or 123.456.
+    public static final String ORDINAL_BIG_PTRN = "^[1-9]\\d{0,2}(\\.\\d{3}){2,3}\\.$"; //1.234.567. or 123.456.789.012.
 
     public static final String CARDINAL_THOUSAND_PTRN = "^([1-9]\\.?\\d{3}|[1-9]\\d{0,2})$"; //1.234 or 1 or 12 or 123
     public static final String CARDINAL_MILLION_PTRN = "^[1-9]\\d{0,2}\\.\\d{3}$"; //1.234 or 12.345 or 123.456
-    public static final String CARDINAL_BIG_PTRN = "^[1-9]\\d{0,2}(\\.\\d{3}){2,3}$";
+    public static final String CARDINAL_BIG_PTRN = "^[1-9]\\d{0,2}(\\.\\d{3}){2,3}$"; //1.234.567 or 123.456.789.012
 
     public static final String DECIMAL_THOUSAND_PTRN = "^([1-9]\\.?\\d{3}|[1-9]\\d{0,2}),\\d+$"; //1.123,4 or 1232,4 or 123,4 or 12,42345 or 1,489
-    public static final String DECIMAL_BIG_PTRN = "^[1-9]\\d{0,2}\\.?(\\d{3}){1,3},\\d+$";
+    public static final String DECIMAL_BIG_PTRN = "^[1-9]\\d{0,2}((\\.\\d{3}){1,3}|\\d{3,9}),\\d+$"; //12.345.678,9 or 12345678,9
 
     public static final String FRACTION_PTRN = "^([1-9]\\d{0,2} ?)?([1-9]\\d*\\/([2-9]|[1-9]\\d+)|(½|⅓|⅔|¼|¾))$"; // 4/8 or ⅓ , etc.
     public static final String TIME_PTRN = "^(([01]?\\d|2[0-4])[:\\.][0-5]|0)\\d$"; // 01:55 or 01.55
@@ -128,6 +128,11 @@ public class NumberHelper {
         WLINK_NUMBERS.put("%", "prósent");
         WLINK_NUMBERS.put("#", "myllumerki");
     }
+
+    // the maps above as char-indexed tables, applied in one pass per token
+    public static final CharTable DIGIT_TABLE = new CharTable(DIGIT_NUMBERS);
+    public static final CharTable DIGITS_ORD_TABLE = new CharTable(DIGITS_ORD);
+    public static final CharTable WLINK_TABLE = new CharTable(WLINK_NUMBERS);
 }
 
 
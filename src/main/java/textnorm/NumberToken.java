@@ -0,0 +1,78 @@
+package textnorm;
+
+/**
+ * A numeric token classified by NumberClassifier: its type and the digit groups extracted during classification,
+ * so the expansion of the number does not have to parse the token again.
+ */
+public class NumberToken {
+
+    /**
+     * Number types in the order normalizeNumber() used to test the corresponding NumberHelper patterns,
+     * the first matching pattern determines the type.
+     */
+    public enum Type {
+        ORDINAL_THOUSAND,   // ORDINAL_THOUSAND_PTRN: 1.234. or 1. or 12. or 123.
+        CARDINAL_THOUSAND,  // CARDINAL_THOUSAND_PTRN: 1.234 or 1 or 12 or 123
+        CARDINAL_MILLION,   // CARDINAL_MILLION_PTRN: 12.345 or 123.456
+        ORDINAL_MILLION,    // ORDINAL_MILLION_PTRN: 12.345. or 123.456.
+        CARDINAL_BIG,       // CARDINAL_BIG_PTRN: 1.234.567 or 123.456.789.012
+        ORDINAL_BIG,        // ORDINAL_BIG_PTRN: 1.234.567. or 123.456.789.012.
+        DECIMAL_THOUSAND,   // DECIMAL_THOUSAND_PTRN: 1.123,4 or 1232,4 or 123,4
+        DECIMAL_BIG,        // DECIMAL_BIG_PTRN: 12.345.678,9 or 12345678,9
+        TIME,               // TIME_PTRN: 01:55 or 01.55
+        FRACTION,           // FRACTION_PTRN: 4/8 or ⅓ or 3½
+        DIGIT_ORDINAL,      // 01.
+        OTHER               // anything else containing digits
+    }
+
+    public static final int MAX_GROUPS = 4;
+
+    private final String token;
+    private final Type type;
+    // three digit groups of the integer part, lowest group first
+    private final int[] groups;
+    // the digits after the decimal comma, or null
+    private final String decimals;
+    // fractions: whole number (0 if none), numerator and denominator
+    private final int whole;
+    private final int numerator;
+    private final int denominator;
+
+    NumberToken(String token, Type type, int[] groups, String decimals, int whole, int numerator, int denominator) {
+        this.token = token;
+        this.type = type;
+        this.groups = groups;
+        this.decimals = decimals;
+        this.whole = whole;
+        this.numerator = numerator;
+        this.denominator = denominator;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int[] getGroups() {
+        return groups;
+    }
+
+    public String getDecimals() {
+        return decimals;
+    }
+
+    public int getWhole() {
+        return whole;
+    }
+
+    public int getNumerator() {
+        return numerator;
+    }
+
+    public int getDenominator() {
+        return denominator;
+    }
+}
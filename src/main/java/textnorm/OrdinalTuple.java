@@ -1,5 +1,7 @@
 package textnorm;
 
+import java.util.regex.Pattern;
+
 /**
  * A class to rebuild the tuple data structure in Python.
  */
@@ -9,12 +11,17 @@ public class OrdinalTuple {
     private final String rule;
     private final String categorie;
     private final String expansion;
+    // the patterns TTSNormalizer.fillDict() matches tokens and tags with, compiled once
+    private final Pattern tokenMatcher;
+    private final Pattern tagMatcher;
 
     public OrdinalTuple(String pattern, String rule, String categorie, String expansion) {
         this.numberPattern = pattern;
         this.rule = rule;
         this.categorie = categorie;
         this.expansion = expansion;
+        this.tokenMatcher = TTSNormalizer.pattern(".*" + pattern + ".*");
+        this.tagMatcher = TTSNormalizer.pattern(".*" + rule);
     }
 
     public String getNumberPattern() {
@@ -29,5 +36,11 @@ public class OrdinalTuple {
     public String getExpansion() {
         return this.expansion;
     }
+    Pattern getTokenMatcher() {
+        return this.tokenMatcher;
+    }
+    Pattern getTagMatcher() {
+        return this.tagMatcher;
+    }
 
 }
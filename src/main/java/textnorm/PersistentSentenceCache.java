@@ -0,0 +1,390 @@
+package textnorm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * A cache of normalized sentences in a file, that survives restarts: after a deploy, the sentences normalized by
+ * the previous process are read from the file instead of being normalized again.
+ *
+ * The file is an append-only log, memory-mapped in full. A header (MAGIC, FORMAT) is followed by the records:
+ *      value length + 1 (int), rule set fingerprint (long), key hash (16 bytes), value (UTF-8), CRC32 of the record (int)
+ * The length is stored plus one, as a length field of 0 marks the end of the log, also for an empty value.
+ * The key hash is a SHA-256 hash of the sentence, profile and domain, the fingerprint is RuleSet.getFingerprint():
+ * a changed rule or dictionary entry changes the fingerprint, the results of the old rules are not found anymore.
+ * Changes of the normalization code are not covered by the fingerprint: increase FORMAT, or delete the file.
+ *
+ * Index: an open-addressing hash table on the heap, a single int array of record positions. It is built by
+ * reading the log when the file is opened.
+ *
+ * Recovery: the length of a record is written last, after its content and CRC. When the file is opened, the log
+ * is read up to the first record that is incomplete or has a wrong CRC, e.g. the last record of a process that
+ * crashed while writing it, or of a machine that went down before the pages were written; later appends overwrite
+ * it.
+ *
+ * Compaction: when the file is full, the records still in use are written to a new file, which then replaces the
+ * old file (a crash during compaction leaves the old file as it was). Records of rule sets not used since the
+ * file was opened are dropped, as are older results of the same key, and the oldest records if the remaining
+ * records fill more than half of the file.
+ *
+ * Thread-safe, the methods are synchronized. Call flush() to force written records to the disk, close() flushes.
+ */
+public class PersistentSentenceCache implements Closeable {
+    private final static Logger LOGGER = Logger.getLogger(PersistentSentenceCache.class.getName());
+
+    private static final int MAGIC = 0x544e4331; // "TNC1"
+    // increase to invalidate existing cache files, e.g. after changes of the normalization code
+    private static final int FORMAT = 2;
+    private static final int FILE_HEADER = 8;
+    // value length + 1, rule set fingerprint, key hash
+    private static final int RECORD_HEADER = 4 + 8 + 16;
+    private static final int KEY_LENGTH = 8 + 16;
+    private static final int CRC_LENGTH = 4;
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final Path mFile;
+    private final int mCapacity;
+    private MappedByteBuffer mLog;
+    private int mWritePosition;
+    // record positions plus one, 0 is an empty slot
+    private int[] mIndex;
+    private int mEntries = 0;
+    // the rule sets used since the file was opened, their records are kept on compaction
+    private final Set<Long> mFingerprints = new HashSet<>();
+    private long mHits = 0;
+    private long mMisses = 0;
+    private int mCompactions = 0;
+    private final int mRecovered;
+    private final int mDiscardedBytes;
+
+    /**
+     * Opens the cache file 'file', or creates it. The file is mapped with 'capacityBytes' bytes.
+     *
+     * @throws IOException if the file can not be created, mapped or compacted
+     */
+    public PersistentSentenceCache(Path file, int capacityBytes) throws IOException {
+        if (capacityBytes < 1 << 12)
+            throw new IllegalArgumentException("cache capacity must be at least " + (1 << 12) + " bytes");
+        this.mFile = file;
+        this.mCapacity = capacityBytes;
+        // left by a compaction that did not complete
+        Files.deleteIfExists(compactFile());
+        mLog = map(file, capacityBytes);
+        if (mLog.getInt(0) != MAGIC || mLog.getInt(4) != FORMAT) {
+            if (mLog.getInt(0) != 0)
+                LOGGER.info(file + ": not a cache file of format " + FORMAT + ", starting empty");
+            clear(mLog);
+        }
+        mIndex = new int[64];
+        int position = FILE_HEADER;
+        int recovered = 0;
+        int length;
+        while ((length = validRecord(mLog, position)) > 0) {
+            index(position);
+            position += length;
+            recovered++;
+        }
+        mWritePosition = position;
+        mRecovered = recovered;
+        mDiscardedBytes = discarded(mLog, position);
+        if (mDiscardedBytes > 0)
+            LOGGER.warning(file + ": discarded " + mDiscardedBytes + " bytes after the last complete record");
+        LOGGER.info(file + ": recovered " + recovered + " cached sentences");
+    }
+
+    /**
+     * Returns the cached normalization of 'sentence' with 'rules', 'profile' and 'domain', or null.
+     */
+    public synchronized String get(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain) {
+        byte[] key = key(sentence, rules, profile, domain);
+        int position = find(key);
+        if (position < 0) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        byte[] value = new byte[valueLength(mLog, position)];
+        ByteBuffer view = mLog.duplicate();
+        view.position(position + RECORD_HEADER);
+        view.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends 'normalized' as the normalization of 'sentence' with 'rules', 'profile' and 'domain'.
+     * If the file is full it is compacted first, a record that does not fit afterwards is not cached.
+     */
+    public synchronized void put(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain,
+                                 String normalized) throws IOException {
+        byte[] key = key(sentence, rules, profile, domain);
+        byte[] value = normalized.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER + value.length + CRC_LENGTH;
+        if (mWritePosition + length > mCapacity) {
+            compact();
+            if (mWritePosition + length > mCapacity)
+                return;
+        }
+        write(mLog, mWritePosition, key, value);
+        index(mWritePosition);
+        mWritePosition += length;
+    }
+
+    // fingerprint and content hash, the fingerprint is remembered as in use
+    private byte[] key(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain) {
+        long fingerprint = rules.getFingerprint();
+        mFingerprints.add(fingerprint);
+        MessageDigest digest = DIGESTS.get();
+        digest.update((profile.name() + "\t" + domain.name() + "\t" + sentence).getBytes(StandardCharsets.UTF_8));
+        byte[] hash = digest.digest();
+        ByteBuffer key = ByteBuffer.allocate(KEY_LENGTH);
+        key.putLong(fingerprint);
+        key.put(hash, 0, KEY_LENGTH - 8);
+        return key.array();
+    }
+
+    /**
+     * Forces the records written so far to the disk.
+     */
+    public synchronized void flush() {
+        mLog.force();
+    }
+
+    /**
+     * Rewrites the file with the records in use, see the class comment.
+     */
+    public synchronized void compact() throws IOException {
+        int[] positions = new int[mEntries];
+        int count = 0;
+        for (int slot : mIndex) {
+            if (slot != 0 && (mFingerprints.isEmpty() || mFingerprints.contains(mLog.getLong(slot - 1 + 4))))
+                positions[count++] = slot - 1;
+        }
+        // the newest records that fill at most half of the file, in log order
+        Arrays.sort(positions, 0, count);
+        int first = count;
+        int size = FILE_HEADER;
+        while (first > 0 && size + recordLength(positions[first - 1]) <= mCapacity / 2) {
+            first--;
+            size += recordLength(positions[first]);
+        }
+
+        Path compacted = compactFile();
+        MappedByteBuffer log = map(compacted, mCapacity);
+        clear(log);
+        int position = FILE_HEADER;
+        for (int i = first; i < count; i++) {
+            int length = recordLength(positions[i]);
+            ByteBuffer record = mLog.duplicate();
+            record.position(positions[i]).limit(positions[i] + length);
+            ByteBuffer target = log.duplicate();
+            target.position(position);
+            target.put(record);
+            position += length;
+        }
+        log.force();
+        Files.move(compacted, mFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        LOGGER.info(mFile + ": compacted " + mEntries + " to " + (count - first) + " cached sentences");
+        mLog = log;
+        mWritePosition = position;
+        mIndex = new int[64];
+        mEntries = 0;
+        for (int p = FILE_HEADER; p < position; p += recordLength(p))
+            index(p);
+        mCompactions++;
+    }
+
+    public synchronized int size() {
+        return mEntries;
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    public synchronized int getCompactions() {
+        return mCompactions;
+    }
+
+    /**
+     * Returns the number of records read from the file when it was opened.
+     */
+    public int getRecovered() {
+        return mRecovered;
+    }
+
+    /**
+     * Returns the number of bytes after the last complete record when the file was opened, i.e. of a record
+     * that was not completely written.
+     */
+    public int getDiscardedBytes() {
+        return mDiscardedBytes;
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PersistentSentenceCache " + mFile + ": " + mEntries + " entries, " + mHits + " hits, " + mMisses
+                + " misses, " + mCompactions + " compactions, " + mWritePosition + " of " + mCapacity + " bytes used";
+    }
+
+    private Path compactFile() {
+        return mFile.resolveSibling(mFile.getFileName() + COMPACT_SUFFIX);
+    }
+
+    private static MappedByteBuffer map(Path file, int capacity) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            // a file of a larger capacity is mapped in part, the records behind the capacity are dropped
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        }
+    }
+
+    private static void clear(MappedByteBuffer log) {
+        log.putInt(0, MAGIC);
+        log.putInt(4, FORMAT);
+        // an empty log: the first record length is 0
+        log.putInt(FILE_HEADER, 0);
+    }
+
+    private static void write(MappedByteBuffer log, int position, byte[] key, byte[] value) {
+        ByteBuffer view = log.duplicate();
+        // the length is written last, a reader of the file after a crash sees a complete record or none
+        view.position(position + 4);
+        view.put(key);
+        view.put(value);
+        view.putInt(crc(log, position + 4, KEY_LENGTH + value.length));
+        // an end mark behind the record, the space may hold a record of a log that was compacted
+        if (view.position() + 4 <= view.capacity())
+            view.putInt(0);
+        log.putInt(position, value.length + 1);
+    }
+
+    private static int crc(ByteBuffer log, int position, int length) {
+        ByteBuffer view = log.duplicate();
+        view.position(position).limit(position + length);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    // returns the length of the record at 'position', 0 if there is no complete record
+    private static int validRecord(MappedByteBuffer log, int position) {
+        if (position + RECORD_HEADER + CRC_LENGTH > log.capacity())
+            return 0;
+        int valueLength = valueLength(log, position);
+        if (valueLength < 0 || valueLength > log.capacity() - position - RECORD_HEADER - CRC_LENGTH)
+            return 0;
+        int length = RECORD_HEADER + valueLength + CRC_LENGTH;
+        if (crc(log, position + 4, KEY_LENGTH + valueLength) != log.getInt(position + length - CRC_LENGTH))
+            return 0;
+        return length;
+    }
+
+    // the length of an incomplete record behind the last complete record, as far as it is in the file
+    private static int discarded(MappedByteBuffer log, int position) {
+        if (position + 4 > log.capacity() || log.getInt(position) == 0)
+            return 0;
+        long length = (long) RECORD_HEADER + (log.getInt(position) & 0xffffffffL) - 1 + CRC_LENGTH;
+        return (int) Math.min(length, log.capacity() - position);
+    }
+
+    private int recordLength(int position) {
+        return RECORD_HEADER + valueLength(mLog, position) + CRC_LENGTH;
+    }
+
+    // -1 at the end of the log
+    private static int valueLength(ByteBuffer log, int position) {
+        return log.getInt(position) - 1;
+    }
+
+    // a newer record of the same key replaces the older one
+    private void index(int position) {
+        if ((mEntries + 1) * 2 > mIndex.length)
+            grow();
+        int mask = mIndex.length - 1;
+        int slot = slot(mLog, position + 4) & mask;
+        while (mIndex[slot] != 0) {
+            if (keyEquals(mIndex[slot] - 1, position)) {
+                mIndex[slot] = position + 1;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        mIndex[slot] = position + 1;
+        mEntries++;
+    }
+
+    private void grow() {
+        int[] old = mIndex;
+        mIndex = new int[old.length * 2];
+        int mask = mIndex.length - 1;
+        for (int value : old) {
+            if (value == 0)
+                continue;
+            int slot = slot(mLog, value - 1 + 4) & mask;
+            while (mIndex[slot] != 0)
+                slot = (slot + 1) & mask;
+            mIndex[slot] = value;
+        }
+    }
+
+    // returns the position of the record of 'key', or -1
+    private int find(byte[] key) {
+        int mask = mIndex.length - 1;
+        int slot = slot(ByteBuffer.wrap(key), 0) & mask;
+        while (mIndex[slot] != 0) {
+            int position = mIndex[slot] - 1;
+            boolean equal = true;
+            for (int i = 0; i < KEY_LENGTH && equal; i++)
+                equal = mLog.get(position + 4 + i) == key[i];
+            if (equal)
+                return position;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(int position, int other) {
+        for (int i = 4; i < RECORD_HEADER; i++) {
+            if (mLog.get(position + i) != mLog.get(other + i))
+                return false;
+        }
+        return true;
+    }
+
+    // the key bytes are a hash already, the slot is taken from the content hash
+    private static int slot(ByteBuffer buffer, int keyPosition) {
+        return buffer.getInt(keyPosition + 8) & Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,204 @@
+package textnorm;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Recognizes sentences that need no normalization at all, so they can be passed to the output as they are, without
+ * pre-normalization, tagging and post-normalization. Much of our input is clean prose, where the full pipeline
+ * returns the sentence unchanged.
+ *
+ * A sentence is plain, if a character scan shows that it consists of words separated by single spaces, optionally
+ * followed by a final '.', '?' or '!', and each word
+ *      - consists of letters only (no digits, symbols, dots or link characters),
+ *      - is lower case, except for the first letter (no upper case runs, see TokenFlags.ACRONYM),
+ *      - does not start with two equal letters (those are spelled out by postNormalize),
+ *      - is not a word that a pre-normalization rule can rewrite.
+ * The last condition is decided once per word and cached: no rule of the pre-normalization dictionaries may match
+ * the word alone, between two words or before the final punctuation. Words matching THE_CLOCK,
+ * MEASURE_PREFIX_WORDS or a month are never plain.
+ * Rules spanning several words without digits ("mörg þús.") can not be decided per word: for each word we also
+ * cache the rules a match of which can start in the word and continue with a letter of the next word. These
+ * rules are run on the sentence, if one of them matches, the sentence is not plain.
+ */
+public class PlainSentenceFilter {
+
+    // the cache holds the vocabulary seen so far, beyond this size new words are not checked, see isPlain()
+    private static final int MAX_CACHED_WORDS = 100000;
+    private static final String FINAL_PUNCTUATION = ".?!";
+    // the characters a plain sentence continues with after a space
+    private static final String CONTINUATIONS = "abcdefghijklmnopqrstuvwxyzáðéíóúýþæö" + FINAL_PUNCTUATION;
+    private static final Pattern[] NO_RULES = new Pattern[0];
+    // a plain word to probe rules depending on a preceding or following word
+    private static final String PROBE_WORD = "orð";
+    private static final Pattern[] CONTEXT_PATTERNS = {
+            Pattern.compile(NormalizationDictionaries.THE_CLOCK),
+            Pattern.compile(NormalizationDictionaries.MEASURE_PREFIX_WORDS.trim()),
+            Pattern.compile(NormalizationDictionaries.ALL_MONTHS)};
+
+    private static volatile Pattern[] RULES;
+
+    // word -> the rules that might match from the word on into the next words, null if the word is not plain
+    private final Map<String, Optional<Pattern[]>> mPlainWords = new ConcurrentHashMap<>();
+    private final int mMaxCachedWords;
+    private final AtomicLong mCheckedWords = new AtomicLong();
+
+    public PlainSentenceFilter() {
+        this(MAX_CACHED_WORDS);
+    }
+
+    /**
+     * Creates a filter that caches the results of at most 'maxCachedWords' words.
+     */
+    public PlainSentenceFilter(int maxCachedWords) {
+        this.mMaxCachedWords = maxCachedWords;
+    }
+
+    /**
+     * Returns true if normalizing 'sentence' (as detected by the Tokenizer) would return it unchanged.
+     * Checking a new word runs all pre-normalization rules on it, more than normalizing its sentence once. Once the
+     * cache is full, a sentence with a word not in the cache is therefore not plain and takes the normal path.
+     */
+    public boolean isPlain(String sentence) {
+        int length = sentence.length();
+        if (length > 1 && sentence.charAt(length - 2) == ' ' && FINAL_PUNCTUATION.indexOf(sentence.charAt(length - 1)) >= 0)
+            length -= 2;
+        if (length == 0)
+            return false;
+        int start = 0;
+        Set<Pattern> multiWordRules = null;
+        for (int i = 0; i <= length; i++) {
+            if (i < length && sentence.charAt(i) != ' ')
+                continue;
+            Pattern[] rules = plainWordRules(sentence, start, i);
+            if (rules == null)
+                return false;
+            if (rules.length > 0) {
+                if (multiWordRules == null)
+                    multiWordRules = new HashSet<>();
+                multiWordRules.addAll(Arrays.asList(rules));
+            }
+            start = i + 1;
+        }
+        if (multiWordRules != null) {
+            for (Pattern rule : multiWordRules) {
+                if (rule.matcher(sentence).find())
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    // the multi-word rules to check if the word is plain, null if it is not
+    private Pattern[] plainWordRules(String sentence, int start, int end) {
+        if (start == end)
+            return null;
+        if (end - start > 1 && sentence.charAt(start) == sentence.charAt(start + 1))
+            return null;
+        for (int i = start; i < end; i++) {
+            char c = sentence.charAt(i);
+            if (!TokenFlags.isLowerCase(c) && (i > start || !TokenFlags.isUpperCase(c)))
+                return null;
+        }
+        String word = sentence.substring(start, end);
+        Optional<Pattern[]> rules = mPlainWords.get(word);
+        if (rules == null) {
+            if (mPlainWords.size() >= mMaxCachedWords)
+                return null;
+            mCheckedWords.incrementAndGet();
+            rules = Optional.ofNullable(checkWord(word));
+            mPlainWords.put(word, rules);
+        }
+        return rules.orElse(null);
+    }
+
+    // the number of words checked against the rules so far
+    long getCheckedWords() {
+        return mCheckedWords.get();
+    }
+
+    // the rules that might match from 'word' on into the next words, null if a rule matches the word itself
+    private static Pattern[] checkWord(String word) {
+        for (Pattern context : CONTEXT_PATTERNS) {
+            if (context.matcher(word).matches())
+                return null;
+        }
+        List<String> probes = new ArrayList<>();
+        probes.add(word);
+        probes.add(PROBE_WORD + " " + word + " " + PROBE_WORD);
+        for (char punctuation : FINAL_PUNCTUATION.toCharArray())
+            probes.add(PROBE_WORD + " " + word + " " + punctuation);
+        // the word at the beginning of a sentence, and after another word
+        String[] continued = {word + " ", PROBE_WORD + " " + word + " "};
+        List<Pattern> multiWordRules = new ArrayList<>();
+        for (Pattern rule : getRules()) {
+            for (String probe : probes) {
+                if (rule.matcher(probe).find())
+                    return null;
+            }
+            if (continuesWithLetters(rule, continued[0], 0)) {
+                multiWordRules.add(rule);
+                continue;
+            }
+            // a match starting at the space before the word or at the word
+            if (continuesWithLetters(rule, continued[1], PROBE_WORD.length())
+                    || continuesWithLetters(rule, continued[1], PROBE_WORD.length() + 1))
+                multiWordRules.add(rule);
+        }
+        return multiWordRules.isEmpty() ? NO_RULES : multiWordRules.toArray(new Pattern[0]);
+    }
+
+    /*
+     * True if a match of 'rule' starting at 'start' in 'probe' runs over the end of the probe, and might go on with
+     * a plain word, i.e. 'probe' followed by a letter or final punctuation.
+     */
+    private static boolean continuesWithLetters(Pattern rule, String probe, int start) {
+        if (!matchesBeyond(rule, probe, start))
+            return false;
+        for (char c : CONTINUATIONS.toCharArray()) {
+            if (matchesBeyond(rule, probe + c, start))
+                return true;
+            Matcher matcher = region(rule, probe + c, start);
+            if (matcher.lookingAt())
+                return true;
+        }
+        return false;
+    }
+
+    // true if the match of 'rule' starting at 'start' needs more input than 'probe'
+    private static boolean matchesBeyond(Pattern rule, String probe, int start) {
+        Matcher matcher = region(rule, probe, start);
+        return !matcher.lookingAt() && matcher.hitEnd();
+    }
+
+    private static Matcher region(Pattern rule, String probe, int start) {
+        Matcher matcher = rule.matcher(probe);
+        matcher.useTransparentBounds(true);
+        // '^' only at the beginning of the sentence
+        matcher.useAnchoringBounds(start == 0);
+        return matcher.region(start, probe.length());
+    }
+
+    // all rules of the dictionaries used in TTSNormalizer.preNormalize()
+    private static Pattern[] getRules() {
+        if (RULES != null)
+            return RULES;
+        List<Map<String, String>> dicts = Arrays.asList(NormalizationDictionaries.preHelpDict,
+                NormalizationDictionaries.directionDict, NormalizationDictionaries.hyphenDict,
+                NormalizationDictionaries.abbreviationDict, NormalizationDictionaries.denominatorDict,
+                NormalizationDictionaries.weightDict, NormalizationDictionaries.getDistanceDict(),
+                NormalizationDictionaries.getAreaDict(), NormalizationDictionaries.getVolumeDict(),
+                NormalizationDictionaries.getTimeDict(), NormalizationDictionaries.getCurrencyDict(),
+                NormalizationDictionaries.getElectronicDict(), NormalizationDictionaries.restDict);
+        List<Pattern> rules = new ArrayList<>();
+        for (Map<String, String> dict : dicts) {
+            for (String regex : dict.keySet())
+                rules.add(TTSNormalizer.pattern(regex));
+        }
+        RULES = rules.toArray(new Pattern[0]);
+        return RULES;
+    }
+}
@@ -0,0 +1,170 @@
+package textnorm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical normalization requests running at the same time: the first request of a text normalizes it,
+ * requests of the same text arriving before it is done wait for its result instead of normalizing the text again,
+ * e.g. when many clients normalize the same headline within milliseconds. Requests are identical if they have the
+ * same text, rule set, profile and domain. A request arriving after the result is complete normalizes the text
+ * again, results are not cached (see SentenceCache for that).
+ *
+ * The texts in flight are kept in lock-striped maps, a request only locks the stripe of its text, twice: to join
+ * or start the flight, and to remove it when it is done. An exception of the normalization is thrown to all
+ * requests of the flight.
+ *
+ * Share one coalescer between the NormalizationManagers of all threads, see NormalizationManager.setRequestCoalescer().
+ */
+public class RequestCoalescer {
+
+    private final Stripe[] mStripes;
+    private final int mMask;
+    private final LongAdder mExecuted = new LongAdder();
+    private final LongAdder mCoalesced = new LongAdder();
+
+    private static class Stripe {
+        final Map<Key, CompletableFuture<String>> inFlight = new HashMap<>();
+    }
+
+    private static final class Key {
+        final String text;
+        final long rulesVersion;
+        final NormalizationProfile profile;
+        final Domain domain;
+        final int hash;
+
+        Key(String text, RuleSet rules, NormalizationProfile profile, Domain domain) {
+            this.text = text;
+            this.rulesVersion = rules.getVersion();
+            this.profile = profile;
+            this.domain = domain;
+            this.hash = Objects.hash(text, rulesVersion, profile, domain);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return hash == other.hash && rulesVersion == other.rulesVersion && profile == other.profile
+                    && domain == other.domain && text.equals(other.text);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Creates a coalescer with four stripes per processor.
+     */
+    public RequestCoalescer() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a coalescer with 'stripes' locks, rounded up to a power of two.
+     */
+    public RequestCoalescer(int stripes) {
+        if (stripes < 1)
+            throw new IllegalArgumentException("stripes must be positive");
+        int count = Integer.highestOneBit(stripes);
+        if (count < stripes)
+            count <<= 1;
+        mStripes = new Stripe[count];
+        for (int i = 0; i < count; i++)
+            mStripes[i] = new Stripe();
+        mMask = count - 1;
+    }
+
+    /**
+     * Returns the result of 'normalization' of 'text', or the result of an identical request in flight.
+     *
+     * @param normalization normalizes 'text' with 'rules', 'profile' and 'domain', only run if no identical
+     *                      request is in flight
+     */
+    public String process(String text, RuleSet rules, NormalizationProfile profile, Domain domain,
+                         Supplier<String> normalization) {
+        Key key = new Key(text, rules, profile, domain);
+        Stripe stripe = mStripes[(key.hash ^ (key.hash >>> 16)) & mMask];
+        CompletableFuture<String> flight;
+        boolean first;
+        synchronized (stripe) {
+            flight = stripe.inFlight.get(key);
+            first = flight == null;
+            if (first) {
+                flight = new CompletableFuture<>();
+                stripe.inFlight.put(key, flight);
+            }
+        }
+        if (!first) {
+            mCoalesced.increment();
+            return await(flight);
+        }
+        mExecuted.increment();
+        try {
+            String result = normalization.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            synchronized (stripe) {
+                stripe.inFlight.remove(key);
+            }
+        }
+    }
+
+    private static String await(CompletableFuture<String> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the number of requests that normalized their text.
+     */
+    public long getExecuted() {
+        return mExecuted.sum();
+    }
+
+    /**
+     * Returns the number of requests that received the result of an identical request in flight.
+     */
+    public long getCoalesced() {
+        return mCoalesced.sum();
+    }
+
+    /**
+     * Returns the number of texts in flight.
+     */
+    public int getInFlight() {
+        int count = 0;
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                count += stripe.inFlight.size();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "RequestCoalescer: " + getExecuted() + " executed, " + getCoalesced() + " coalesced, "
+                + mStripes.length + " stripes";
+    }
+}
@@ -0,0 +1,198 @@
+package textnorm;
+
+import opennlp.tools.postag.POSModel;
+import opennlp.tools.postag.POSTaggerME;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The resources of the normalizer, built once per JVM and shared by all NormalizationManager instances: the
+ * abbreviation sets of the Tokenizer, the pre-normalization dictionaries, the number tuple lists and the POS model.
+ *
+ * The registry is built on first access to get(), by the class initialization of a holder class. The JVM runs this
+ * once, even if several threads access the registry at the same time, and publishes the registry safely to all
+ * threads. All collections of the registry are unmodifiable, so managers in any number of threads (or tenant
+ * contexts) can read them without synchronization, and creating a manager costs no loading at all.
+ *
+ * The rules that can be changed at runtime (regex rules, abbreviations, tuples) are published as an immutable
+ * RuleSet, built on these resources. A new rule set replaces the current one atomically (copy-on-write), texts
+ * in progress keep the rule set they started with.
+ *
+ * The POS model is loaded on the first tagging, since many inputs never need it (see TTSNormalizer.needsTags()),
+ * the pronunciation dictionary of the LinkSegmenter on the first link.
+ * The POS-taggers themselves are not thread safe, each thread tags with its own tagger on the shared model. A
+ * thread keeps its tagger until it ends or calls release(), pooled threads that stop normalizing should release it.
+ */
+public final class ResourceRegistry {
+
+    private static final String POS_MODEL = "is-pos-maxent.bin";
+    // converted from POS_MODEL by CompactPOSModel, used instead of POS_MODEL if present
+    private static final String COMPACT_POS_MODEL = "is-pos-compact.bin";
+
+    private final Set<String> mAbbreviations;
+    private final Set<String> mNonEndingAbbreviations;
+    private final Map<String, Map<String, String>> mDictionaries = new HashMap<>();
+    // the tuple lists TTSNormalizer.normalizeNumber() combines, per number type
+    private final Map<NumberToken.Type, List<OrdinalTuple>> mTuples = new EnumMap<>(NumberToken.Type.class);
+    private final PlainSentenceFilter mPlainSentenceFilter;
+    private final RuleSet mDefaultRuleSet;
+    private final AtomicReference<RuleSet> mRuleSet;
+
+    private volatile LinkSegmenter mLinkSegmenter;
+    private final ThreadLocal<Tagger> mTaggers = new ThreadLocal<>();
+    private POSModel mPOSModel;
+    private CompactPOSModel mCompactPOSModel;
+
+    private interface Tagger {
+        String[] tag(String[] tokens);
+    }
+
+    private static class Holder {
+        static final ResourceRegistry INSTANCE = new ResourceRegistry();
+    }
+
+    private ResourceRegistry() {
+        Abbreviations abbreviations = new Abbreviations();
+        mAbbreviations = Collections.unmodifiableSet(abbreviations.getAbbreviations());
+        mNonEndingAbbreviations = Collections.unmodifiableSet(abbreviations.getNonEndingAbbr());
+
+        mDictionaries.put("distanceDict", Collections.unmodifiableMap(NormalizationDictionaries.getDistanceDict()));
+        mDictionaries.put("areaDict", Collections.unmodifiableMap(NormalizationDictionaries.getAreaDict()));
+        mDictionaries.put("volumeDict", Collections.unmodifiableMap(NormalizationDictionaries.getVolumeDict()));
+        mDictionaries.put("timeDict", Collections.unmodifiableMap(NormalizationDictionaries.getTimeDict()));
+        mDictionaries.put("currencyDict", Collections.unmodifiableMap(NormalizationDictionaries.getCurrencyDict()));
+        mDictionaries.put("electronicDict", Collections.unmodifiableMap(NormalizationDictionaries.getElectronicDict()));
+
+        mTuples.put(NumberToken.Type.ORDINAL_THOUSAND, merge(OrdinalOnesTuples.getTuples(),
+                OrdinalThousandTuples.getTuples(), CardinalThousandTuples.getTuples()));
+        mTuples.put(NumberToken.Type.CARDINAL_THOUSAND, merge(CardinalOnesTuples.getTuples(),
+                CardinalThousandTuples.getTuples()));
+        mTuples.put(NumberToken.Type.CARDINAL_MILLION, merge(CardinalThousandTuples.getTuples(),
+                CardinalMillionTuples.getTuples()));
+        mTuples.put(NumberToken.Type.DECIMAL_THOUSAND, merge(CardinalOnesTuples.getTuples(),
+                CardinalThousandTuples.getTuples(), DecimalThousandTuples.getTuples()));
+        mTuples.put(NumberToken.Type.TIME, merge(TimeTuples.getTuples()));
+        mTuples.put(NumberToken.Type.FRACTION, merge(SportTuples.getTuples()));
+        FractionTuples.getForms();
+
+        mPlainSentenceFilter = new PlainSentenceFilter();
+        mDefaultRuleSet = RuleSet.defaults(this);
+        mRuleSet = new AtomicReference<>(mDefaultRuleSet);
+    }
+
+    /**
+     * Returns the registry, building it on the first call.
+     */
+    public static ResourceRegistry get() {
+        return Holder.INSTANCE;
+    }
+
+    @SafeVarargs
+    private static List<OrdinalTuple> merge(List<OrdinalTuple>... tuples) {
+        List<OrdinalTuple> merged = new ArrayList<>();
+        for (List<OrdinalTuple> list : tuples)
+            merged.addAll(list);
+        return Collections.unmodifiableList(merged);
+    }
+
+    public Set<String> getAbbreviations() {
+        return mAbbreviations;
+    }
+
+    public Set<String> getNonEndingAbbreviations() {
+        return mNonEndingAbbreviations;
+    }
+
+    /**
+     * Returns a lazily built dictionary of NormalizationDictionaries by name, e.g. "distanceDict".
+     */
+    public Map<String, String> getDictionary(String name) {
+        return mDictionaries.get(name);
+    }
+
+    /**
+     * Returns the tuples to expand a number of 'type' with (for FRACTION: the tuples of sport results).
+     */
+    public List<OrdinalTuple> getTuples(NumberToken.Type type) {
+        return mTuples.get(type);
+    }
+
+    public PlainSentenceFilter getPlainSentenceFilter() {
+        return mPlainSentenceFilter;
+    }
+
+    /**
+     * Returns the current rule set. Take it once per text and use it for all sentences of the text.
+     */
+    public RuleSet getRuleSet() {
+        return mRuleSet.get();
+    }
+
+    /**
+     * Publishes 'rules' as the current rule set, null to return to the rule set of the built-in resources.
+     * Returns the replaced rule set.
+     */
+    public RuleSet setRuleSet(RuleSet rules) {
+        return mRuleSet.getAndSet(rules == null ? mDefaultRuleSet : rules);
+    }
+
+    /**
+     * Returns the segmenter for links, loading the pronunciation dictionary on the first call.
+     */
+    public LinkSegmenter getLinkSegmenter() {
+        LinkSegmenter segmenter = mLinkSegmenter;
+        if (segmenter != null)
+            return segmenter;
+        synchronized (this) {
+            if (mLinkSegmenter == null)
+                mLinkSegmenter = LinkSegmenter.load(this);
+            return mLinkSegmenter;
+        }
+    }
+
+    /**
+     * Tags 'tokens' with the POS-tagger of the current thread, loading the POS model on the first call.
+     */
+    public String[] tag(String[] tokens) throws IOException {
+        Tagger tagger = mTaggers.get();
+        if (tagger == null) {
+            tagger = newTagger();
+            mTaggers.set(tagger);
+        }
+        return tagger.tag(tokens);
+    }
+
+    /**
+     * Frees the POS-tagger of the current thread, the next tag() call of the thread creates a new one. The taggers
+     * are kept per thread for the life of the thread: call this from worker threads of a pool that stop normalizing,
+     * e.g. when the worker is returned to a pool shared with other tasks.
+     */
+    public void release() {
+        mTaggers.remove();
+    }
+
+    // true if the current thread has a tagger
+    boolean hasTagger() {
+        return mTaggers.get() != null;
+    }
+
+    private synchronized Tagger newTagger() throws IOException {
+        if (mCompactPOSModel == null && mPOSModel == null) {
+            try (InputStream compact = getClass().getClassLoader().getResourceAsStream(COMPACT_POS_MODEL)) {
+                if (compact != null)
+                    mCompactPOSModel = CompactPOSModel.load(compact);
+            }
+            if (mCompactPOSModel == null) {
+                try (InputStream is = getClass().getClassLoader().getResourceAsStream(POS_MODEL)) {
+                    mPOSModel = new POSModel(is);
+                }
+            }
+        }
+        if (mCompactPOSModel != null)
+            return new CompactPOSTagger(mCompactPOSModel)::tag;
+        return new POSTaggerME(mPOSModel)::tag;
+    }
+}
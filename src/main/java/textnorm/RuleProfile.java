@@ -0,0 +1,270 @@
+package textnorm;
+
+import org.apache.commons.collections4.OrderedMap;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Hit statistics and evaluation order for the rules (regex keys) of the normalization dictionaries.
+ *
+ * A profile is either created empty for a calibration run (see calibration()), where TTSNormalizer counts for each
+ * dictionary rule how often it actually matched, or loaded from a profile file written by an earlier calibration run
+ * (see load()). A loaded profile determines the order in which the rules of each dictionary are evaluated:
+ *      - rules that matched during calibration come first, the most frequent ones first
+ *      - a rule that matched after another rule of the same dictionary on the same text during calibration might
+ *        depend on the output of that rule, it is never moved in front of it. The same holds for two rules where
+ *        the replacement of one changed whether the other matches (e.g. one consumes text the other needs), they
+ *        keep their declared order, also if one of them never matched
+ *      - rules of ordered dictionaries (OrderedMap, e.g. preHelpDict) are never reordered, their rules are
+ *        evaluated in the declared order of the dictionary, also the rules that never matched
+ *      - rules that never matched are evaluated after the others (ZeroHitPolicy.DEFER), or skipped (ZeroHitPolicy.SKIP)
+ *      - rules unknown to the profile (i.e. added after calibration) are always evaluated, after the known rules
+ *
+ * Profile file format, one rule per line, in evaluation order: dictionary name TAB hit count TAB regex
+ * An ordered dictionary is marked by a line: dictionary name TAB ORDERED. Lines starting with '#' are comments.
+ */
+public class RuleProfile {
+    private final static Logger LOGGER = Logger.getLogger(RuleProfile.class.getName());
+    private final static String COMMENT = "#";
+    private final static String SEPARATOR = "\t";
+    private final static String ORDERED = "ORDERED";
+
+    public enum ZeroHitPolicy {
+        DEFER, // evaluate rules without hits after all other rules
+        SKIP   // don't evaluate rules without hits
+    }
+
+    private final boolean mCalibrating;
+    private final ZeroHitPolicy mZeroHitPolicy;
+    // dictionary name -> regex -> number of hits
+    private final Map<String, Map<String, AtomicLong>> mHits = new ConcurrentHashMap<>();
+    // dictionary name -> regex -> regexes that matched before 'regex' on the same text (possible dependencies)
+    private final Map<String, Map<String, Set<String>>> mDependencies = new ConcurrentHashMap<>();
+    // dictionary name -> rules in evaluation order, as stored in the profile file
+    private final Map<String, List<String>> mStoredOrder = new ConcurrentHashMap<>();
+    // dictionaries with a declared rule order (registered during calibration)
+    private final Set<String> mOrderedDicts = ConcurrentHashMap.newKeySet();
+    // dictionary name -> evaluation plan for the current dictionary content
+    private final Map<String, List<String>> mPlans = new ConcurrentHashMap<>();
+
+    private RuleProfile(boolean calibrating, ZeroHitPolicy policy) {
+        this.mCalibrating = calibrating;
+        this.mZeroHitPolicy = policy;
+    }
+
+    /**
+     * Creates an empty profile that collects hit statistics. Rules are evaluated in the dictionaries' own order.
+     */
+    public static RuleProfile calibration() {
+        return new RuleProfile(true, ZeroHitPolicy.DEFER);
+    }
+
+    /**
+     * Loads a profile written by save(). The returned profile does not collect statistics, it only determines the
+     * rule evaluation order.
+     *
+     * @param filename path of the profile file
+     * @param policy how to treat rules that did not match during calibration
+     * @return the loaded profile
+     * @throws IOException if the file can not be read
+     */
+    public static RuleProfile load(String filename, ZeroHitPolicy policy) throws IOException {
+        RuleProfile profile = new RuleProfile(false, policy);
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith(COMMENT))
+                    continue;
+                String[] arr = line.split(SEPARATOR, 3);
+                if (arr.length == 2 && arr[1].equals(ORDERED)) {
+                    profile.mOrderedDicts.add(arr[0]);
+                    continue;
+                }
+                if (arr.length != 3) {
+                    LOGGER.warning("skipping malformed profile line: " + line);
+                    continue;
+                }
+                profile.mStoredOrder.computeIfAbsent(arr[0], k -> new ArrayList<>()).add(arr[2]);
+                profile.hitsFor(arr[0]).computeIfAbsent(arr[2], k -> new AtomicLong()).set(Long.parseLong(arr[1]));
+            }
+        }
+        return profile;
+    }
+
+    public boolean isCalibrating() {
+        return mCalibrating;
+    }
+
+    public long getHits(String dictName, String regex) {
+        AtomicLong hits = hitsFor(dictName).get(regex);
+        return hits == null ? 0 : hits.get();
+    }
+
+    /**
+     * Returns the regexes of 'dict' in the order they should be evaluated. During calibration this is the
+     * dictionary's own order.
+     */
+    public List<String> evaluationOrder(String dictName, Map<String, String> dict) {
+        if (mCalibrating)
+            return new ArrayList<>(dict.keySet());
+        List<String> plan = mPlans.get(dictName);
+        // the lazily initialized dictionaries might still have been empty when we created the plan
+        if (plan == null || (plan.isEmpty() && !dict.isEmpty())) {
+            plan = createPlan(dictName, dict);
+            mPlans.put(dictName, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Records that the rules in 'fired' matched, in this order, in one pass over a text with dictionary 'dictName'.
+     */
+    public void recordHits(String dictName, List<String> fired) {
+        Map<String, AtomicLong> hits = hitsFor(dictName);
+        Map<String, Set<String>> dependencies = mDependencies.computeIfAbsent(dictName, k -> new ConcurrentHashMap<>());
+        for (int i = 0; i < fired.size(); i++) {
+            String regex = fired.get(i);
+            hits.computeIfAbsent(regex, k -> new AtomicLong()).incrementAndGet();
+            if (i > 0) {
+                Set<String> before = dependencies.computeIfAbsent(regex, k -> ConcurrentHashMap.newKeySet());
+                before.addAll(fired.subList(0, i));
+            }
+        }
+    }
+
+    /**
+     * Records that a replacement of rule 'regex' of dictionary 'dictName' changed whether the rules in 'others'
+     * match. The rule declared later depends on the earlier one.
+     */
+    public void recordInteractions(String dictName, String regex, Collection<String> others) {
+        List<String> declared = mStoredOrder.get(dictName);
+        if (declared == null || others.isEmpty())
+            return;
+        Map<String, Set<String>> dependencies = mDependencies.computeIfAbsent(dictName, k -> new ConcurrentHashMap<>());
+        int position = declared.indexOf(regex);
+        for (String other : others) {
+            int otherPosition = declared.indexOf(other);
+            if (position < 0 || otherPosition < 0)
+                continue;
+            String later = otherPosition > position ? other : regex;
+            String earlier = otherPosition > position ? regex : other;
+            dependencies.computeIfAbsent(later, k -> ConcurrentHashMap.newKeySet()).add(earlier);
+        }
+    }
+
+    /**
+     * Makes sure every rule of 'dict' is known to the profile, so that rules without hits are stored as such
+     * (and not treated as new rules when the profile is loaded).
+     */
+    public void register(String dictName, Map<String, String> dict) {
+        List<String> stored = mStoredOrder.get(dictName);
+        if (stored != null && stored.size() == dict.size())
+            return;
+        Map<String, AtomicLong> hits = hitsFor(dictName);
+        for (String regex : dict.keySet())
+            hits.computeIfAbsent(regex, k -> new AtomicLong());
+        mStoredOrder.put(dictName, new ArrayList<>(dict.keySet()));
+        if (dict instanceof OrderedMap)
+            mOrderedDicts.add(dictName);
+    }
+
+    /**
+     * Writes the profile to 'filename', rules sorted in their resolved evaluation order.
+     */
+    public void save(String filename) throws IOException {
+        Path path = Paths.get(filename);
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write(COMMENT + " rule profile: dictionary, hits, regex - in evaluation order");
+            writer.newLine();
+            List<String> dictNames = new ArrayList<>(mHits.keySet());
+            Collections.sort(dictNames);
+            for (String dictName : dictNames) {
+                if (mOrderedDicts.contains(dictName)) {
+                    writer.write(dictName + SEPARATOR + ORDERED);
+                    writer.newLine();
+                }
+                for (String regex : resolveOrder(dictName)) {
+                    writer.write(dictName + SEPARATOR + getHits(dictName, regex) + SEPARATOR + regex);
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    /*
+     * Order the rules of 'dictName': rules with hits sorted by hit count, rules without hits in declared order
+     * after them, but no rule in front of a rule it depends on. Ordered dictionaries keep their declared order.
+     */
+    private List<String> resolveOrder(String dictName) {
+        List<String> declared = mStoredOrder.getOrDefault(dictName, new ArrayList<>(hitsFor(dictName).keySet()));
+        if (mOrderedDicts.contains(dictName))
+            return declared;
+        List<String> ordered = new ArrayList<>();
+        Map<String, Set<String>> dependencies = mDependencies.getOrDefault(dictName, Collections.emptyMap());
+        Set<String> known = new HashSet<>(declared);
+        Set<String> done = new HashSet<>();
+        List<String> pending = new ArrayList<>(declared);
+        while (!pending.isEmpty()) {
+            String next = null;
+            for (String regex : pending) {
+                Set<String> before = dependencies.getOrDefault(regex, Collections.emptySet());
+                boolean ready = true;
+                for (String dependency : before)
+                    ready &= done.contains(dependency) || !known.contains(dependency);
+                if (!ready)
+                    continue;
+                // the first rule with the most hits, i.e. rules without hits in declared order
+                if (next == null || getHits(dictName, regex) > getHits(dictName, next))
+                    next = regex;
+            }
+            // dependencies are always recorded in declared or evaluation order, so there are no cycles - but be safe
+            if (next == null)
+                next = pending.get(0);
+            pending.remove(next);
+            done.add(next);
+            ordered.add(next);
+        }
+        return ordered;
+    }
+
+    // the evaluation plan of a loaded profile for the current content of 'dict'
+    private List<String> createPlan(String dictName, Map<String, String> dict) {
+        List<String> plan = new ArrayList<>();
+        // ordered dictionaries are evaluated in their own order, rules without hits may only be skipped
+        if (mOrderedDicts.contains(dictName) || dict instanceof OrderedMap) {
+            for (String regex : dict.keySet()) {
+                if (mZeroHitPolicy == ZeroHitPolicy.DEFER || getHits(dictName, regex) > 0
+                        || !hitsFor(dictName).containsKey(regex))
+                    plan.add(regex);
+            }
+            return Collections.unmodifiableList(plan);
+        }
+        List<String> stored = mStoredOrder.getOrDefault(dictName, Collections.emptyList());
+        for (String regex : stored) {
+            if (!dict.containsKey(regex))
+                continue;
+            if (getHits(dictName, regex) > 0 || mZeroHitPolicy == ZeroHitPolicy.DEFER)
+                plan.add(regex);
+        }
+        Set<String> known = new HashSet<>(stored);
+        for (String regex : dict.keySet()) {
+            if (!known.contains(regex))
+                plan.add(regex);
+        }
+        return Collections.unmodifiableList(plan);
+    }
+
+    private Map<String, AtomicLong> hitsFor(String dictName) {
+        return mHits.computeIfAbsent(dictName, k -> new ConcurrentHashMap<>());
+    }
+}
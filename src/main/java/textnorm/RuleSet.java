@@ -0,0 +1,324 @@
+package textnorm;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable snapshot of the rules that can be changed at runtime: regex rules applied first in
+ * TTSNormalizer.preNormalize(), the abbreviations of the Tokenizer and the tuples of the number expansion.
+ *
+ * A rule set consists of the built-in resources of the ResourceRegistry, extended by rule files. All regexes are
+ * compiled while the rule set is loaded, so a rule set can be loaded in the background (see RuleSetWatcher) and
+ * published with ResourceRegistry.setRuleSet(). Readers take one snapshot per text or sentence and use it
+ * throughout, without locking.
+ *
+ * Rule file format (UTF-8), one rule per line, lines starting with '#' are comments. A line '[section]' starts
+ * a section, lines before the first section header are regex rules:
+ *      [regex]          regex TAB replacement, e.g. abbr_regex_1.csv
+ *      [abbreviations]  an abbreviation, e.g. "gr."
+ *      [nonending]      an abbreviation that does not end a sentence, e.g. "hr."
+ *      [tuples]         number type TAB number pattern TAB tag pattern TAB column TAB expansion, see OrdinalTuple,
+ *                       e.g. "CARDINAL_THOUSAND TAB ^0*4$ TAB nvfþ TAB ones TAB fjórum"
+ * Regexes and replacements are written as in the string literals of NormalizationDictionaries (and of the
+ * Python normalizer): backslashes doubled, groups referred to as $1 or \g<1>. Tuples of a rule file are
+ * evaluated after the built-in tuples of their type, so they override them.
+ */
+public final class RuleSet {
+    private final static Logger LOGGER = Logger.getLogger(RuleSet.class.getName());
+    private final static String COMMENT = "#";
+    private final static String SEPARATOR = "\t";
+    private final static Pattern PYTHON_GROUP = Pattern.compile("\\\\g<(\\d+)>");
+    private final static AtomicLong VERSIONS = new AtomicLong();
+
+    private enum Section {
+        REGEX, ABBREVIATIONS, NONENDING, TUPLES
+    }
+
+    private final long mVersion;
+    private final String mSource;
+    private final Map<String, String> mRegexRules;
+    private final Set<String> mAbbreviations;
+    private final Set<String> mNonEndingAbbreviations;
+    private final Map<NumberToken.Type, List<OrdinalTuple>> mTuples;
+    private volatile long mFingerprint;
+
+    private RuleSet(String source, Map<String, String> regexRules, Set<String> abbreviations,
+                    Set<String> nonEndingAbbreviations, Map<NumberToken.Type, List<OrdinalTuple>> tuples) {
+        this.mVersion = VERSIONS.incrementAndGet();
+        this.mSource = source;
+        this.mRegexRules = Collections.unmodifiableMap(regexRules);
+        this.mAbbreviations = Collections.unmodifiableSet(abbreviations);
+        this.mNonEndingAbbreviations = Collections.unmodifiableSet(nonEndingAbbreviations);
+        this.mTuples = tuples;
+    }
+
+    /**
+     * Returns the rule set of the built-in resources of 'resources', without regex rules.
+     */
+    static RuleSet defaults(ResourceRegistry resources) {
+        return new Loader(resources).build("built-in");
+    }
+
+    /**
+     * Loads a rule set from the built-in resources and 'files', in this order. Rules of later files replace equal
+     * regexes of earlier files.
+     *
+     * @throws IOException if a file can not be read, or contains an unknown section, number type or an invalid regex.
+     * Then no rule set is created at all.
+     */
+    public static RuleSet load(List<Path> files) throws IOException {
+        Loader loader = new Loader(ResourceRegistry.get());
+        for (Path file : files) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                loader.read(reader, file.toString());
+            }
+        }
+        return loader.build(files.toString());
+    }
+
+    /**
+     * As load(files), for a rule file in the resources, e.g. "abbr_regex_1.csv".
+     */
+    public static RuleSet loadResource(String name) throws IOException {
+        Loader loader = new Loader(ResourceRegistry.get());
+        try (InputStream is = RuleSet.class.getClassLoader().getResourceAsStream(name)) {
+            if (is == null)
+                throw new IOException(name + " not found");
+            loader.read(new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8)), name);
+        }
+        return loader.build(name);
+    }
+
+    /**
+     * Returns the number of this rule set, increasing with each rule set created.
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Returns a hash of the content of this rule set and of the built-in dictionaries of the pre-normalization.
+     * Other than the version, it is equal for equal rules in every process, and changes with every change of a
+     * rule or a dictionary entry, e.g. to key results that are stored across restarts (see PersistentSentenceCache).
+     */
+    public long getFingerprint() {
+        long fingerprint = mFingerprint;
+        if (fingerprint == 0) {
+            fingerprint = computeFingerprint();
+            mFingerprint = fingerprint;
+        }
+        return fingerprint;
+    }
+
+    private long computeFingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, "regex", mRegexRules, true);
+        update(digest, "abbreviations", new TreeSet<>(mAbbreviations));
+        update(digest, "nonending", new TreeSet<>(mNonEndingAbbreviations));
+        for (NumberToken.Type type : NumberToken.Type.values()) {
+            List<String> tuples = new ArrayList<>();
+            for (OrdinalTuple tuple : mTuples.getOrDefault(type, Collections.emptyList()))
+                tuples.add(tuple.getNumberPattern() + SEPARATOR + tuple.getRule() + SEPARATOR + tuple.getCategorie()
+                        + SEPARATOR + tuple.getExpansion());
+            update(digest, type.name(), tuples);
+        }
+        ResourceRegistry resources = ResourceRegistry.get();
+        for (String name : new String[]{"distanceDict", "areaDict", "volumeDict", "timeDict", "currencyDict", "electronicDict"})
+            update(digest, name, resources.getDictionary(name), false);
+        update(digest, "preHelpDict", NormalizationDictionaries.preHelpDict, true);
+        update(digest, "directionDict", NormalizationDictionaries.directionDict, false);
+        update(digest, "hyphenDict", NormalizationDictionaries.hyphenDict, false);
+        update(digest, "abbreviationDict", NormalizationDictionaries.abbreviationDict, false);
+        update(digest, "denominatorDict", NormalizationDictionaries.denominatorDict, false);
+        update(digest, "weightDict", NormalizationDictionaries.weightDict, false);
+        update(digest, "restDict", NormalizationDictionaries.restDict, false);
+        byte[] hash = digest.digest();
+        long fingerprint = 0;
+        for (int i = 0; i < Long.BYTES; i++)
+            fingerprint = (fingerprint << 8) | (hash[i] & 0xff);
+        // 0 marks a fingerprint not yet computed
+        return fingerprint == 0 ? 1 : fingerprint;
+    }
+
+    // the rules of unordered dictionaries are hashed in sorted order, the iteration order of a HashMap may change
+    private static void update(MessageDigest digest, String name, Map<String, String> dict, boolean ordered) {
+        List<String> rules = new ArrayList<>();
+        for (Map.Entry<String, String> entry : dict.entrySet())
+            rules.add(entry.getKey() + SEPARATOR + entry.getValue());
+        if (!ordered)
+            Collections.sort(rules);
+        update(digest, name, rules);
+    }
+
+    private static void update(MessageDigest digest, String name, Collection<String> lines) {
+        digest.update(("[" + name + "]\n").getBytes(StandardCharsets.UTF_8));
+        for (String line : lines)
+            digest.update((line + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getSource() {
+        return mSource;
+    }
+
+    /**
+     * Returns the regex rules in evaluation order: regex -> replacement (Java notation).
+     */
+    public Map<String, String> getRegexRules() {
+        return mRegexRules;
+    }
+
+    public Set<String> getAbbreviations() {
+        return mAbbreviations;
+    }
+
+    public Set<String> getNonEndingAbbreviations() {
+        return mNonEndingAbbreviations;
+    }
+
+    /**
+     * Returns the tuples to expand a number of 'type' with, see ResourceRegistry.getTuples().
+     */
+    public List<OrdinalTuple> getTuples(NumberToken.Type type) {
+        return mTuples.get(type);
+    }
+
+    @Override
+    public String toString() {
+        return "RuleSet " + mVersion + " (" + mSource + "): " + mRegexRules.size() + " regex rules, "
+                + mAbbreviations.size() + " abbreviations";
+    }
+
+    /*
+     * Collects the content of the rule files on top of the built-in resources.
+     */
+    private static class Loader {
+        private final ResourceRegistry mResources;
+        private final Map<String, String> mRegexRules = new LinkedHashMap<>();
+        private final Set<String> mAbbreviations;
+        private final Set<String> mNonEndingAbbreviations;
+        private final Map<NumberToken.Type, List<OrdinalTuple>> mTupleOverrides = new EnumMap<>(NumberToken.Type.class);
+
+        Loader(ResourceRegistry resources) {
+            this.mResources = resources;
+            this.mAbbreviations = new HashSet<>(resources.getAbbreviations());
+            this.mNonEndingAbbreviations = new HashSet<>(resources.getNonEndingAbbreviations());
+        }
+
+        void read(BufferedReader reader, String source) throws IOException {
+            Section section = Section.REGEX;
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty() || line.startsWith(COMMENT))
+                    continue;
+                String location = source + ":" + lineNumber;
+                if (line.startsWith("[") && line.trim().endsWith("]")) {
+                    section = section(line.trim(), location);
+                    continue;
+                }
+                switch (section) {
+                    case REGEX:
+                        readRegexRule(line, location);
+                        break;
+                    case ABBREVIATIONS:
+                        mAbbreviations.add(line.trim().toLowerCase());
+                        break;
+                    case NONENDING:
+                        mNonEndingAbbreviations.add(line.trim().toLowerCase());
+                        break;
+                    case TUPLES:
+                        readTuple(line, location);
+                        break;
+                }
+            }
+        }
+
+        private static Section section(String header, String location) throws IOException {
+            try {
+                return Section.valueOf(header.substring(1, header.length() - 1).trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(location + ": unknown section " + header);
+            }
+        }
+
+        private void readRegexRule(String line, String location) throws IOException {
+            String[] arr = line.split(SEPARATOR, 2);
+            if (arr.length != 2) {
+                LOGGER.warning(location + ": skipping malformed rule: " + line);
+                return;
+            }
+            String regex = unescape(arr[0]);
+            try {
+                // compiled here, not on the first sentence after the rule set is published
+                TTSNormalizer.pattern(regex);
+            } catch (PatternSyntaxException e) {
+                throw new IOException(location + ": invalid regex: " + e.getMessage());
+            }
+            String replacement = PYTHON_GROUP.matcher(unescape(arr[1].trim())).replaceAll("\\$$1");
+            mRegexRules.put(regex, replacement);
+        }
+
+        private void readTuple(String line, String location) throws IOException {
+            String[] arr = line.split(SEPARATOR);
+            if (arr.length != 5) {
+                LOGGER.warning(location + ": skipping malformed tuple: " + line);
+                return;
+            }
+            NumberToken.Type type;
+            try {
+                type = NumberToken.Type.valueOf(arr[0].trim());
+            } catch (IllegalArgumentException e) {
+                throw new IOException(location + ": unknown number type " + arr[0]);
+            }
+            if (mResources.getTuples(type) == null)
+                throw new IOException(location + ": number type " + type + " is not expanded with tuples");
+            OrdinalTuple tuple;
+            try {
+                tuple = new OrdinalTuple(unescape(arr[1]), unescape(arr[2]), arr[3].trim(), arr[4]);
+            } catch (PatternSyntaxException e) {
+                throw new IOException(location + ": invalid regex: " + e.getMessage());
+            }
+            mTupleOverrides.computeIfAbsent(type, k -> new ArrayList<>()).add(tuple);
+        }
+
+        // "\\d" -> "\d"
+        private static String unescape(String s) {
+            return s.replace("\\\\", "\\");
+        }
+
+        RuleSet build(String source) {
+            Map<NumberToken.Type, List<OrdinalTuple>> tuples = new EnumMap<>(NumberToken.Type.class);
+            for (NumberToken.Type type : NumberToken.Type.values()) {
+                List<OrdinalTuple> builtIn = mResources.getTuples(type);
+                List<OrdinalTuple> overrides = mTupleOverrides.get(type);
+                if (overrides == null) {
+                    if (builtIn != null)
+                        tuples.put(type, builtIn);
+                    continue;
+                }
+                List<OrdinalTuple> merged = new ArrayList<>(builtIn);
+                merged.addAll(overrides);
+                tuples.put(type, Collections.unmodifiableList(merged));
+            }
+            return new RuleSet(source, mRegexRules, mAbbreviations, mNonEndingAbbreviations, tuples);
+        }
+    }
+}
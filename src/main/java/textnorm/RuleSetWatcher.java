@@ -0,0 +1,88 @@
+package textnorm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Reloads a RuleSet from rule files when they change, so a running server picks up new rules without a restart.
+ *
+ * The files are checked for a new modification time or size in a background thread. On a change, the rule set is
+ * loaded and compiled in this thread and then published with ResourceRegistry.setRuleSet(); normalization never
+ * waits for it. If the files can not be loaded (e.g. an invalid regex), the current rule set stays in place and
+ * the files are loaded again on their next change.
+ */
+public class RuleSetWatcher implements Closeable {
+    private final static Logger LOGGER = Logger.getLogger(RuleSetWatcher.class.getName());
+
+    private final List<Path> mFiles;
+    private final ScheduledExecutorService mExecutor;
+    // modification time and size of the files at the last load attempt
+    private List<Object> mStamps = new ArrayList<>();
+
+    /**
+     * Loads the rule set from 'files' in the background and reloads it each time one of them has changed,
+     * checking every 'interval' 'unit'.
+     */
+    public RuleSetWatcher(List<Path> files, long interval, TimeUnit unit) {
+        this.mFiles = new ArrayList<>(files);
+        this.mExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "rule-set-watcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mExecutor.scheduleWithFixedDelay(this::check, 0, interval, unit);
+    }
+
+    /**
+     * Loads and publishes the rule set now, regardless of changes. Returns false if the files could not be loaded.
+     */
+    public synchronized boolean reload() {
+        mStamps = stamps();
+        try {
+            RuleSet rules = RuleSet.load(mFiles);
+            ResourceRegistry.get().setRuleSet(rules);
+            LOGGER.info("published " + rules);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warning("could not load rules from " + mFiles + ", keeping the current rules: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stops watching the files. The current rule set stays published.
+     */
+    @Override
+    public void close() {
+        mExecutor.shutdownNow();
+    }
+
+    private synchronized void check() {
+        if (!stamps().equals(mStamps))
+            reload();
+    }
+
+    private List<Object> stamps() {
+        List<Object> stamps = new ArrayList<>();
+        for (Path file : mFiles) {
+            try {
+                FileTime modified = Files.getLastModifiedTime(file);
+                stamps.add(modified);
+                stamps.add(Files.size(file));
+            } catch (IOException e) {
+                // a missing file is a change too, and fails the next load
+                stamps.add(null);
+            }
+        }
+        return stamps;
+    }
+}
@@ -0,0 +1,314 @@
+package textnorm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * A cache of normalized sentences stored off-heap, for workloads where the same sentences come back again and
+ * again (catalogues, timetables). Millions of cached sentences in on-heap strings would be scanned by every full
+ * garbage collection; here the cache consists of a few direct (or memory-mapped) ByteBuffers, only the key and
+ * value of a lookup are created on the heap, and they are short-lived.
+ *
+ * Data: the entries are appended to a ring of equally sized segments, each entry holds the hash, the UTF-8 encoded
+ * key (the sentence with the rule set version, profile and domain it was normalized with) and the UTF-8 encoded
+ * value. When the writer moves on to a segment still holding entries, the whole segment is evicted, i.e. the
+ * oldest entries are dropped first. A hit on an entry in the older half of the ring copies the entry to the
+ * current segment, so frequently used entries survive eviction (LRU-like, without a linked list).
+ *
+ * Index: an open-addressing hash table with linear probing, one long per slot holding the hash of the key and the
+ * position of the entry, in a direct buffer as well. Removed slots are filled by shifting back the following slots,
+ * so there are no tombstones.
+ *
+ * The capacity in bytes covers the data and the index. Thread-safe, the methods are synchronized.
+ */
+public class SentenceCache {
+    private final static Logger LOGGER = Logger.getLogger(SentenceCache.class.getName());
+
+    // hash, key length, value length
+    private static final int HEADER = 12;
+    // entries start at multiples of ALIGN, positions are stored in units of ALIGN
+    private static final int ALIGN = 8;
+    private static final int MAX_SEGMENT_SIZE = 1 << 26;
+    private static final int MIN_SEGMENT_SIZE = 1 << 12;
+    // the index is sized for an average entry of this many bytes, at a load of at most MAX_LOAD
+    private static final int AVERAGE_ENTRY = 128;
+    private static final double MAX_LOAD = 0.75;
+
+    private final ByteBuffer[] mSegments;
+    private final int[] mFill;
+    private final int mSegmentSize;
+    private final LongBuffer mIndex;
+    private final int mMask;
+    private final int mMaxEntries;
+    private int mWriteSegment = 0;
+    private int mEntries = 0;
+    private long mHits = 0;
+    private long mMisses = 0;
+    private long mEvictions = 0;
+
+    /**
+     * Creates a cache of about 'capacityBytes' in direct buffers.
+     */
+    public SentenceCache(long capacityBytes) {
+        this(capacityBytes, (FileChannel) null);
+    }
+
+    /**
+     * Creates a cache of about 'capacityBytes', with the data segments mapped from 'file', to let the operating
+     * system page out cold segments. The file is overwritten, its content is not read: the cache starts empty.
+     */
+    public SentenceCache(long capacityBytes, Path file) throws IOException {
+        this(capacityBytes, open(file));
+    }
+
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private SentenceCache(long capacityBytes, FileChannel channel) {
+        if (capacityBytes < 2 * MIN_SEGMENT_SIZE)
+            throw new IllegalArgumentException("cache capacity must be at least " + 2 * MIN_SEGMENT_SIZE + " bytes");
+        int slots = Integer.highestOneBit((int) Math.min(1 << 30, capacityBytes / AVERAGE_ENTRY * 2));
+        long dataBytes = capacityBytes - (long) slots * Long.BYTES;
+        mSegmentSize = (int) Math.max(MIN_SEGMENT_SIZE, Math.min(MAX_SEGMENT_SIZE, dataBytes / 8)) / ALIGN * ALIGN;
+        int segments = (int) Math.max(2, dataBytes / mSegmentSize);
+        if ((long) segments * mSegmentSize / ALIGN >= 0xffffffffL)
+            throw new IllegalArgumentException("cache capacity too large: " + capacityBytes);
+        mSegments = new ByteBuffer[segments];
+        mFill = new int[segments];
+        try {
+            for (int i = 0; i < segments; i++) {
+                mSegments[i] = channel == null ? ByteBuffer.allocateDirect(mSegmentSize)
+                        : channel.map(FileChannel.MapMode.READ_WRITE, (long) i * mSegmentSize, mSegmentSize);
+            }
+            if (channel != null)
+                channel.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("could not map the cache file: " + e.getMessage(), e);
+        }
+        mIndex = ByteBuffer.allocateDirect(slots * Long.BYTES).asLongBuffer();
+        mMask = slots - 1;
+        mMaxEntries = (int) (slots * MAX_LOAD);
+        LOGGER.info("sentence cache: " + segments + " segments of " + mSegmentSize + " bytes, " + slots + " index slots");
+    }
+
+    /**
+     * Returns the cached normalization of 'sentence' with 'rules', 'profile' and 'domain', or null.
+     */
+    public String get(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain) {
+        return get(key(sentence, rules, profile, domain));
+    }
+
+    /**
+     * Caches 'normalized' as the normalization of 'sentence' with 'rules', 'profile' and 'domain'.
+     */
+    public void put(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain, String normalized) {
+        put(key(sentence, rules, profile, domain), normalized);
+    }
+
+    // the rule set version, profile and domain are part of the key, results of replaced rule sets age out
+    private static byte[] key(String sentence, RuleSet rules, NormalizationProfile profile, Domain domain) {
+        return (rules.getVersion() + "\t" + profile.ordinal() + "\t" + domain.ordinal() + "\t" + sentence)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    synchronized String get(byte[] key) {
+        int hash = hash(key);
+        int slot = find(key, hash);
+        if (slot < 0) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        long position = position(mIndex.get(slot));
+        ByteBuffer segment = mSegments[(int) (position / mSegmentSize)];
+        int offset = (int) (position % mSegmentSize);
+        int keyLength = segment.getInt(offset + 4);
+        byte[] value = new byte[segment.getInt(offset + 8)];
+        ByteBuffer view = segment.duplicate();
+        view.position(offset + HEADER + keyLength);
+        view.get(value);
+        // second chance: an entry in the older half of the ring is moved to the current segment
+        int age = (mWriteSegment - (int) (position / mSegmentSize) + mSegments.length) % mSegments.length;
+        if (age > mSegments.length / 2) {
+            long moved = append(hash, key, value);
+            // the append may have evicted the segment of the entry
+            slot = find(key, hash);
+            if (slot >= 0)
+                mIndex.put(slot, slotValue(hash, moved));
+            else
+                insert(hash, moved);
+        }
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    synchronized void put(byte[] key, String normalized) {
+        int hash = hash(key);
+        if (find(key, hash) >= 0)
+            return;
+        byte[] value = normalized.getBytes(StandardCharsets.UTF_8);
+        if (HEADER + key.length + value.length > mSegmentSize)
+            return;
+        // the index is full: evict the oldest segments
+        while (mEntries >= mMaxEntries)
+            evict(nextSegment());
+        insert(hash, append(hash, key, value));
+    }
+
+    private void insert(int hash, long position) {
+        int slot = hash & mMask;
+        while (mIndex.get(slot) != 0)
+            slot = (slot + 1) & mMask;
+        mIndex.put(slot, slotValue(hash, position));
+        mEntries++;
+    }
+
+    public synchronized int size() {
+        return mEntries;
+    }
+
+    public synchronized long getHits() {
+        return mHits;
+    }
+
+    public synchronized long getMisses() {
+        return mMisses;
+    }
+
+    /**
+     * Returns the number of entries dropped by segment eviction.
+     */
+    public synchronized long getEvictions() {
+        return mEvictions;
+    }
+
+    /**
+     * Returns the bytes of data and index memory of the cache.
+     */
+    public long getCapacity() {
+        return (long) mSegments.length * mSegmentSize + (long) mIndex.capacity() * Long.BYTES;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SentenceCache: " + mEntries + " entries, " + mHits + " hits, " + mMisses + " misses, "
+                + mEvictions + " evictions, capacity " + getCapacity();
+    }
+
+    /*
+     * Appends the entry to the current segment, moving on to the next segment (and evicting it) if it does not fit.
+     * Returns the position of the entry, the entry must not be larger than a segment.
+     */
+    private long append(int hash, byte[] key, byte[] value) {
+        int length = HEADER + key.length + value.length;
+        if (mFill[mWriteSegment] + length > mSegmentSize)
+            evict(nextSegment());
+        ByteBuffer segment = mSegments[mWriteSegment];
+        int offset = mFill[mWriteSegment];
+        segment.putInt(offset, hash);
+        segment.putInt(offset + 4, key.length);
+        segment.putInt(offset + 8, value.length);
+        ByteBuffer view = segment.duplicate();
+        view.position(offset + HEADER);
+        view.put(key);
+        view.put(value);
+        mFill[mWriteSegment] = (offset + length + ALIGN - 1) / ALIGN * ALIGN;
+        return (long) mWriteSegment * mSegmentSize + offset;
+    }
+
+    private int nextSegment() {
+        mWriteSegment = (mWriteSegment + 1) % mSegments.length;
+        return mWriteSegment;
+    }
+
+    // removes the entries of 'segment' from the index, entries moved to another segment on a hit are skipped
+    private void evict(int segment) {
+        ByteBuffer buffer = mSegments[segment];
+        int offset = 0;
+        while (offset < mFill[segment]) {
+            int hash = buffer.getInt(offset);
+            long position = (long) segment * mSegmentSize + offset;
+            int slot = hash & mMask;
+            long value;
+            while ((value = mIndex.get(slot)) != 0) {
+                if (value == slotValue(hash, position)) {
+                    remove(slot);
+                    mEvictions++;
+                    break;
+                }
+                slot = (slot + 1) & mMask;
+            }
+            offset = (offset + HEADER + buffer.getInt(offset + 4) + buffer.getInt(offset + 8) + ALIGN - 1) / ALIGN * ALIGN;
+        }
+        mFill[segment] = 0;
+    }
+
+    // empties 'slot' and shifts back the following slots of the probe sequence
+    private void remove(int slot) {
+        mEntries--;
+        int hole = slot;
+        int next = (hole + 1) & mMask;
+        long value;
+        while ((value = mIndex.get(next)) != 0) {
+            int home = (int) (value >>> 32) & mMask;
+            // the entry at 'next' may move to 'hole' if its home slot is not between 'hole' and 'next'
+            boolean movable = hole <= next ? (home <= hole || home > next) : (home <= hole && home > next);
+            if (movable) {
+                mIndex.put(hole, value);
+                hole = next;
+            }
+            next = (next + 1) & mMask;
+        }
+        mIndex.put(hole, 0);
+    }
+
+    // returns the slot of 'key', or -1
+    private int find(byte[] key, int hash) {
+        int slot = hash & mMask;
+        long value;
+        while ((value = mIndex.get(slot)) != 0) {
+            if ((int) (value >>> 32) == hash && keyEquals(position(value), key))
+                return slot;
+            slot = (slot + 1) & mMask;
+        }
+        return -1;
+    }
+
+    private boolean keyEquals(long position, byte[] key) {
+        ByteBuffer segment = mSegments[(int) (position / mSegmentSize)];
+        int offset = (int) (position % mSegmentSize);
+        if (segment.getInt(offset + 4) != key.length)
+            return false;
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(offset + HEADER + i) != key[i])
+                return false;
+        }
+        return true;
+    }
+
+    // the upper half holds the hash, the lower half the position in units of ALIGN, plus one (0 is an empty slot)
+    private static long slotValue(int hash, long position) {
+        return ((long) hash << 32) | (position / ALIGN + 1);
+    }
+
+    private static long position(long slotValue) {
+        return ((slotValue & 0xffffffffL) - 1) * ALIGN;
+    }
+
+    // FNV-1a, the key bytes are spread over the whole int
+    private static int hash(byte[] key) {
+        int hash = 0x811c9dc5;
+        for (byte b : key) {
+            hash ^= b;
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+}
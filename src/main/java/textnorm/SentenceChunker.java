@@ -0,0 +1,75 @@
+package textnorm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Splits long normalized sentences into chunks of a maximum length for synthesis. A sentence is preferably split
+ * after a comma, otherwise before a conjunction, and only if neither is possible between any two tokens.
+ */
+public class SentenceChunker {
+
+    // conjunctions that are natural pause positions in Icelandic
+    private static final Set<String> CONJUNCTIONS = new HashSet<>(Arrays.asList(
+            "og", "en", "eða", "heldur", "enda", "því", "þegar", "þótt", "þó", "ef", "sem", "að"));
+
+    private final int mMaxLength;
+
+    /**
+     * @param maxLength maximum length of a chunk in characters, chunks consisting of one token can be longer
+     */
+    public SentenceChunker(int maxLength) {
+        if (maxLength <= 0)
+            throw new IllegalArgumentException("maxLength has to be positive: " + maxLength);
+        this.mMaxLength = maxLength;
+    }
+
+    /**
+     * Splits 'sentence' (tokens separated by single spaces) into chunks no longer than the maximum length.
+     * @param sentence a normalized sentence
+     * @return the chunks in order, the sentence itself if it is short enough
+     */
+    public List<String> split(String sentence) {
+        List<String> chunks = new ArrayList<>();
+        if (sentence.length() <= mMaxLength) {
+            chunks.add(sentence);
+            return chunks;
+        }
+        String[] tokens = sentence.split(" ");
+        int start = 0;
+        while (start < tokens.length) {
+            int end = chunkEnd(tokens, start);
+            chunks.add(String.join(" ", Arrays.asList(tokens).subList(start, end)));
+            start = end;
+        }
+        return chunks;
+    }
+
+    // the (exclusive) end index of the chunk starting at token 'start'
+    private int chunkEnd(String[] tokens, int start) {
+        int length = tokens[start].length();
+        int afterComma = -1;
+        int beforeConjunction = -1;
+        int i = start + 1;
+        for (; i < tokens.length; i++) {
+            if (tokens[i - 1].equals(","))
+                afterComma = i;
+            if (CONJUNCTIONS.contains(tokens[i].toLowerCase()))
+                beforeConjunction = i;
+            length += 1 + tokens[i].length();
+            if (length > mMaxLength)
+                break;
+        }
+        if (i == tokens.length)
+            return i;
+        // prefer a natural pause: after a comma or before a conjunction
+        if (afterComma > start)
+            return afterComma;
+        if (beforeConjunction > start + 1)
+            return beforeConjunction;
+        return i;
+    }
+}
@@ -1,13 +1,15 @@
 package textnorm;
 
+import org.apache.commons.collections4.OrderedMap;
+
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Regular expressions-based text normalizer for TTS.
@@ -15,6 +17,9 @@ import java.util.stream.Stream;
  */
 
 public class TTSNormalizer {
+    private final static Logger LOGGER = Logger.getLogger(TTSNormalizer.class.getName());
+    // compiled patterns of the dictionary rules, the tuples and the number patterns
+    private final static Map<String, Pattern> PATTERN_CACHE = new ConcurrentHashMap<>();
 
     /*
     public TTSNormalizer(Context context) {
@@ -22,8 +27,42 @@ public class TTSNormalizer {
         this.mRegexMap = readAbbreviations();
     }*/
 
+    // optional hit statistics / rule evaluation order for the normalization dictionaries
+    private RuleProfile mRuleProfile;
+    private MatchBudget mMatchBudget = MatchBudget.UNLIMITED;
+    private final NormalizationMetrics mMetrics;
+    private final ResourceRegistry mResources = ResourceRegistry.get();
+
     public TTSNormalizer() {
+        this(new NormalizationMetrics());
+    }
+
+    public TTSNormalizer(NormalizationMetrics metrics) {
+        this.mMetrics = metrics;
+    }
+
+    /**
+     * Sets the time budget for regex matching. Rules exceeding the budget are not applied, see MatchBudget.
+     * The default is MatchBudget.UNLIMITED.
+     */
+    public void setMatchBudget(MatchBudget budget) {
+        this.mMatchBudget = budget;
+    }
+
+    public NormalizationMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Sets a rule profile: either a calibration profile collecting rule hit statistics, or a loaded profile
+     * determining the evaluation order of the dictionary rules. Set to null to use the dictionaries as they are.
+     */
+    public void setRuleProfile(RuleProfile profile) {
+        this.mRuleProfile = profile;
+    }
 
+    public RuleProfile getRuleProfile() {
+        return mRuleProfile;
     }
 
     /**
@@ -33,57 +72,130 @@ public class TTSNormalizer {
      * @return pre-normalized text, i.e. some common abbreviations expanded
      */
     public String preNormalize(String text) {
+        return preNormalize(text, mResources.getRuleSet());
+    }
+
+    /**
+     * As preNormalize(text), with the rule set 'rules' instead of the current one. Its regex rules are applied
+     * before the built-in dictionaries.
+     */
+    public String preNormalize(String text, RuleSet rules) {
+        return preNormalize(text, rules, NormalizationProfile.ACCURATE);
+    }
+
+    /**
+     * As preNormalize(text, rules), without the unit dictionaries if 'profile' turns them off.
+     */
+    public String preNormalize(String text, RuleSet rules, NormalizationProfile profile) {
+        return preNormalize(text, rules, profile, Domain.GENERAL);
+    }
+
+    /**
+     * As preNormalize(text, rules, profile), with the rules of 'domain': the unit dictionaries the domain does not
+     * use are skipped, and in SPORT texts a hyphen between numbers is silent.
+     */
+    public String preNormalize(String text, RuleSet rules, NormalizationProfile profile, Domain domain) {
+        return preNormalize(text, rules, profile, domain, MatchBudget.NO_DEADLINE);
+    }
+
+    /*
+     * As preNormalize(text, rules, profile, domain), the match budget of the sentence ends at 'requestDeadline' at
+     * the latest.
+     */
+    String preNormalize(String text, RuleSet rules, NormalizationProfile profile, Domain domain, long requestDeadline) {
         String normalized = text;
-        String domain = ""; //we will need to determine this from "text" in real life!
+        boolean units = profile.isExpandingUnits();
+        long deadline = MatchBudget.earlier(mMatchBudget.sentenceDeadline(), requestDeadline);
+
+        if (!rules.getRegexRules().isEmpty())
+            normalized = replaceFromDict(normalized, "ruleSet", rules.getRegexRules(), deadline);
+        // character classes of the sentence, scanned again after the dictionaries that decide later branches
+        int flags = TokenFlags.of(normalized);
 
         // some pre-processing and formatting of digits
-        if (normalized.matches(".*\\d.*")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.preHelpDict);
+        if (TokenFlags.has(flags, TokenFlags.DIGIT)) {
+            normalized = replaceFromDict(normalized, "preHelpDict", NormalizationDictionaries.preHelpDict, deadline);
+            flags = TokenFlags.of(normalized);
         }
         // process strings containing a hyphen, affects weather description and combination of letters and hyphen
-        if (normalized.contains("-")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.directionDict);
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.hyphenDict);
+        if (TokenFlags.has(flags, TokenFlags.HYPHEN)) {
+            normalized = replaceFromDict(normalized, "directionDict", NormalizationDictionaries.directionDict, deadline);
+            normalized = replaceFromDict(normalized, "hyphenDict", NormalizationDictionaries.hyphenDict, deadline);
+            flags = TokenFlags.of(normalized);
         }
         // most standard abbreviations
-        if (normalized.contains(".")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.abbreviationDict);
+        if (TokenFlags.has(flags, TokenFlags.DOT)) {
+            normalized = replaceFromDict(normalized, "abbreviationDict", NormalizationDictionaries.abbreviationDict, deadline);
+            flags = TokenFlags.of(normalized);
         }
         // looking for patterns like "500 kr/kg"
-        if (normalized.contains("/")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.denominatorDict);
+        if (units && TokenFlags.has(flags, TokenFlags.SLASH)) {
+            normalized = replaceFromDict(normalized, "denominatorDict", NormalizationDictionaries.denominatorDict, deadline);
+            flags = TokenFlags.of(normalized);
         }
-        if (normalized.matches(".*\\d.*")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.weightDict);
+        if (units && TokenFlags.has(flags, TokenFlags.DIGIT)) {
+            normalized = replaceFromDict(normalized, "weightDict", NormalizationDictionaries.weightDict, deadline);
         }
-        if (normalized.matches(".*\\b([pnµmcsdkN]?m|ft)\\.?\\b.*")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.getDistanceDict());
+        if (units && domain.usesDictionary("distanceDict") && guardMatches(normalized, ".*\\b([pnµmcsdkN]?m|ft)\\.?\\b.*", deadline)) {
+            normalized = replaceFromDict(normalized, "distanceDict", mResources.getDictionary("distanceDict"), deadline);
         }
-        if (normalized.matches(".*(\\bha\\.?\\b).*|([pnµmcsdk]?m\\b\\.?)|([pnµmcsdk]?m[²2³3]).*")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.getAreaDict());
+        if (units && domain.usesDictionary("areaDict") && guardMatches(normalized, ".*(\\bha\\.?\\b).*|([pnµmcsdk]?m\\b\\.?)|([pnµmcsdk]?m[²2³3]).*", deadline)) {
+            normalized = replaceFromDict(normalized, "areaDict", mResources.getDictionary("areaDict"), deadline);
         }
-        if (normalized.matches(".*\\b[dcmµ]?[Ll]\\.?\\b.*")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.getVolumeDict());
+        if (units && domain.usesDictionary("volumeDict") && guardMatches(normalized, ".*\\b[dcmµ]?[Ll]\\.?\\b.*", deadline)) {
+            normalized = replaceFromDict(normalized, "volumeDict", mResources.getDictionary("volumeDict"), deadline);
         }
-        if (normalized.matches(".*\\b(klst|mín|m?s(ek)?)\\b.*")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.getTimeDict());
+        if (units && guardMatches(normalized, ".*\\b(klst|mín|m?s(ek)?)\\b.*", deadline)) {
+            normalized = replaceFromDict(normalized, "timeDict", mResources.getDictionary("timeDict"), deadline);
         }
-        if (normalized.matches(".*(\\W|^)((ma?\\.?)?[Kk]r\\.?-?|C(HF|AD|ZK)|(DK|SE|NO)K|EUR|GBP|I[NS]K|JPY|PTE|(AU|US)D|mlj[óa]\\.?)((\\W|$)|[$£¥])(.*)")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.getCurrencyDict());
+        if (units && domain.usesDictionary("currencyDict") && guardMatches(normalized, ".*(\\W|^)((ma?\\.?)?[Kk]r\\.?-?|C(HF|AD|ZK)|(DK|SE|NO)K|EUR|GBP|I[NS]K|JPY|PTE|(AU|US)D|mlj[óa]\\.?)((\\W|$)|[$£¥])(.*)", deadline)) {
+            normalized = replaceFromDict(normalized, "currencyDict", mResources.getDictionary("currencyDict"), deadline);
         }
-        if (normalized.matches(".*\\b([kMGT]?(V|Hz|B|W|W\\.?(st|h)))\\.?\\b.*")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.getElectronicDict());
+        if (units && domain.usesDictionary("electronicDict") && guardMatches(normalized, ".*\\b([kMGT]?(V|Hz|B|W|W\\.?(st|h)))\\.?\\b.*", deadline)) {
+            normalized = replaceFromDict(normalized, "electronicDict", mResources.getDictionary("electronicDict"), deadline);
         }
-        if (normalized.matches(".*(%|\\b(stk|[Kk][Cc]al)\\.?\\b).*")) {
-            normalized = replaceFromDict(normalized, NormalizationDictionaries.restDict);
+        if (guardMatches(normalized, ".*(%|\\b(stk|[Kk][Cc]al)\\.?\\b).*", deadline)) {
+            normalized = replaceFromDict(normalized, "restDict", NormalizationDictionaries.restDict, deadline);
         }
         // if we have domain "sport" a hyphen between numbers is silent, otherwise it is normalized to "til"
-        if (normalized.matches(".*-.*")) {
-            normalized = replaceHyphen(normalized, domain);
+        if (normalized.indexOf('-') >= 0) {
+            normalized = replaceHyphen(normalized, domain == Domain.SPORT);
         }
+        if (MatchBudget.isExpired(deadline))
+            mMetrics.countSentenceTimeout();
         return normalized;
     }
 
+    /**
+     * Returns true if the normalization of 'tokens' in postNormalize() depends on POS-tags: the tag of the next token
+     * is only looked at for numbers. If this returns false, postNormalize() can be called with empty tags.
+     *
+     * @param tokens the tokens of a pre-normalized sentence
+     */
+    public boolean needsTags(String[] tokens) {
+        for (boolean position : tagPositions(tokens)) {
+            if (position)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns for each token of 'tokens' whether postNormalize() reads its POS-tag, i.e. whether it follows a number.
+     * Tags at the other positions can be left empty.
+     *
+     * @param tokens the tokens of a pre-normalized sentence
+     */
+    public boolean[] tagPositions(String[] tokens) {
+        boolean[] positions = new boolean[tokens.length];
+        // the last token is never normalized with a next tag
+        for (int i = 0; i < tokens.length - 1; i++) {
+            if (TokenFlags.has(TokenFlags.of(tokens[i]), TokenFlags.NUMBER))
+                positions[i + 1] = true;
+        }
+        return positions;
+    }
+
     /**
      * Performs normalizing of text partly based on POS-tags. For number normalization the algorithm looks at
      * the POS-tags at the next token position, to determine the correct form of the normalization (case, gender, etc.)
@@ -93,6 +205,36 @@ public class TTSNormalizer {
      * @return a normalized string created from the normalized tokenis in 'tokens'
      */
     public String postNormalize(String[] tokens, String[] tags) {
+        return postNormalize(tokens, tags, mResources.getRuleSet());
+    }
+
+    /**
+     * As postNormalize(tokens, tags), with the number tuples of 'rules' instead of the current rule set.
+     */
+    public String postNormalize(String[] tokens, String[] tags, RuleSet rules) {
+        return postNormalize(tokens, tags, rules, NormalizationProfile.ACCURATE);
+    }
+
+    /**
+     * As postNormalize(tokens, tags, rules), links are passed on as they are if 'profile' turns off link spelling.
+     */
+    public String postNormalize(String[] tokens, String[] tags, RuleSet rules, NormalizationProfile profile) {
+        return postNormalize(tokens, tags, rules, profile, Domain.GENERAL);
+    }
+
+    /**
+     * As postNormalize(tokens, tags, rules, profile), in SPORT texts fractions like "2/1" are read as results.
+     */
+    public String postNormalize(String[] tokens, String[] tags, RuleSet rules, NormalizationProfile profile, Domain domain) {
+        return postNormalize(tokens, tags, rules, profile, domain, MatchBudget.NO_DEADLINE);
+    }
+
+    /*
+     * As postNormalize(tokens, tags, rules, profile, domain), the match budget of the sentence ends at
+     * 'requestDeadline' at the latest, the remaining tokens are normalized by fallbackNormalize().
+     */
+    String postNormalize(String[] tokens, String[] tags, RuleSet rules, NormalizationProfile profile, Domain domain,
+                         long requestDeadline) {
         // tokens and tags have to match - tag at index 'i' should be the tag for the token at index 'i'
         if (tokens.length != tags.length)
             return "";
@@ -100,54 +242,223 @@ public class TTSNormalizer {
         String token;
         String nextTag;
         String lastToken = "";
-        StringBuilder sb = new StringBuilder();
+        WorkBuffers buffers = WorkBuffers.get();
+        StringBuilder sb = buffers.sentence();
         String linksPattern = NormalizationDictionaries.links.get(NormalizationDictionaries.LINK_PTRN_ALL);
+        long deadline = MatchBudget.earlier(mMatchBudget.sentenceDeadline(), requestDeadline);
+        // one scan per token, the branches below read the flags instead of matching regexes
+        int[] flags = TokenFlags.of(tokens);
 
         // we always look at the next tag, hence only iterate up to length-2
         for (int i = 0; i < tags.length - 1; i++) {
             token = tokens[i];
             nextTag = tags[i + 1];
-            if (token.matches(".*\\d.*")) {
-                token = normalizeNumber(token, nextTag);
+            if (MatchBudget.isExpired(deadline)) {
+                token = fallbackNormalize(token, flags[i]);
+            }
+            else {
+                try {
+                    long ruleDeadline = mMatchBudget.ruleDeadline(deadline);
+                    // digits or unicode fractions
+                    if (TokenFlags.has(flags[i], TokenFlags.NUMBER)) {
+                        token = normalizeNumber(token, nextTag, rules, domain, ruleDeadline);
+                    }
+                    // add space between upper case letters, if they do not build known Acronyms like "RÚV"
+                    else if (TokenFlags.has(flags[i], TokenFlags.ACRONYM))
+                        token = insertSpaces(token);
+                    else if (token.length() > 1 && token.charAt(0) == token.charAt(1))
+                        token = insertSpaces(token);
+                    else if (TokenFlags.has(flags[i], TokenFlags.LINK_CANDIDATE) && matches(token, linksPattern, ruleDeadline)) {
+                        if (profile.isSpellingLinks())
+                            token = normalizeURL(token);
+                    }
+                    else if (TokenFlags.has(flags[i], TokenFlags.SYMBOL))
+                        token = normalizeSymbols(token);
+                } catch (MatchTimeoutException e) {
+                    LOGGER.warning(e.getMessage());
+                    mMetrics.countRuleTimeout();
+                    token = fallbackNormalize(tokens[i], flags[i]);
+                }
             }
-            // add space between upper case letters, if they do not build known Acronyms like "RÚV"
-            else if (token.matches(NumberHelper.LETTERS_PTRN))
-                token = insertSpaces(token);
-            else if (token.length() > 1 && token.charAt(0) == token.charAt(1))
-                token = insertSpaces(token);
-            else if (token.matches(linksPattern))
-                token = normalizeURL(token);
-            else if (token.matches(NormalizationDictionaries.NOT_LETTERS))
-                token = normalizeSymbols(token);
-
-            sb.append(token.trim()).append(" ");
+
+            appendTrimmed(sb, token).append(' ');
             lastToken = tokens[i + 1];
         }
         sb.append(lastToken); //what if this is a digit or something that needs normalizing?
-        String result = sb.toString();
-        return result.replaceAll("\\s+", " ");
+        if (MatchBudget.isExpired(deadline))
+            mMetrics.countSentenceTimeout();
+        // as sb.toString().replaceAll("\\s+", " ")
+        StringBuilder result = buffers.output();
+        boolean space = false;
+        for (int i = 0; i < sb.length(); i++) {
+            char c = sb.charAt(i);
+            if (c == ' ' || (c >= '\t' && c <= '\r')) {
+                if (!space)
+                    result.append(' ');
+                space = true;
+            }
+            else {
+                result.append(c);
+                space = false;
+            }
+        }
+        return result.toString();
+    }
+
+    private static StringBuilder appendTrimmed(StringBuilder sb, String s) {
+        int start = 0;
+        int end = s.length();
+        while (start < end && s.charAt(start) <= ' ')
+            start++;
+        while (end > start && s.charAt(end - 1) <= ' ')
+            end--;
+        return sb.append(s, start, end);
     }
 
     public String replaceFromDict(String text, Map<String, String> dict) {
         for (String regex : dict.keySet()) {
-            text = replacePattern(text, regex, dict);
+            text = replacePattern(text, regex, dict.get(regex), MatchBudget.NO_DEADLINE);
+        }
+        return text;
+    }
+
+    /*
+     * As replaceFromDict(text, dict), but if a rule profile is set, the rules are evaluated in the order of the
+     * profile (or hits are counted, if the profile is calibrating). 'dictName' identifies 'dict' in the profile.
+     * When 'deadline' has passed, the remaining rules are not applied.
+     */
+    private String replaceFromDict(String text, String dictName, Map<String, String> dict, long deadline) {
+        RuleProfile profile = mRuleProfile;
+        Collection<String> rules = dict.keySet();
+        List<String> fired = null;
+        if (profile != null && profile.isCalibrating()) {
+            profile.register(dictName, dict);
+            fired = new ArrayList<>();
+        }
+        else if (profile != null) {
+            rules = profile.evaluationOrder(dictName, dict);
+        }
+        for (String regex : rules) {
+            if (MatchBudget.isExpired(deadline))
+                break;
+            String replaced = replacePattern(text, regex, dict.get(regex), deadline);
+            if (fired != null && !replaced.equals(text)) {
+                fired.add(regex);
+                // the order of ordered dictionaries is kept anyway
+                if (!(dict instanceof OrderedMap))
+                    profile.recordInteractions(dictName, regex, interactingRules(dict, regex, text, replaced));
+            }
+            text = replaced;
         }
+        if (fired != null)
+            profile.recordHits(dictName, fired);
         return text;
     }
 
-    // Replace a given regex with the corresponding replacement pattern from 'dict'
-    private String replacePattern(String text, String regex, Map<String, String> dict) {
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(text);
-        String replaced = text;
-        while (matcher.find()) {
-            replaced = matcher.replaceAll(dict.get(regex));
+    // the rules of 'dict' that match only one of 'text' and 'replaced', i.e. whose match the replacement of 'regex' changed
+    private static List<String> interactingRules(Map<String, String> dict, String regex, String text, String replaced) {
+        List<String> rules = new ArrayList<>();
+        for (String other : dict.keySet()) {
+            Pattern pattern = pattern(other);
+            if (!other.equals(regex) && pattern.matcher(text).find() != pattern.matcher(replaced).find())
+                rules.add(other);
+        }
+        return rules;
+    }
+
+    // Replace a given regex with 'replacement'. If the rule exceeds its time budget, 'text' is returned unchanged.
+    private String replacePattern(String text, String regex, String replacement, long sentenceDeadline) {
+        long deadline = mMatchBudget.ruleDeadline(sentenceDeadline);
+        try {
+            Matcher matcher = pattern(regex).matcher(interruptible(text, deadline));
+            String replaced = text;
+            while (matcher.find()) {
+                replaced = matcher.replaceAll(replacement);
+            }
+            return replaced;
+        } catch (MatchTimeoutException e) {
+            LOGGER.warning("rule '" + regex + "': " + e.getMessage());
+            mMetrics.countRuleTimeout();
+            return text;
+        }
+    }
+
+    // Evaluate a guard regex before applying a dictionary, a guard that can not be evaluated in time does not match
+    private boolean guardMatches(String text, String regex, long sentenceDeadline) {
+        if (MatchBudget.isExpired(sentenceDeadline))
+            return false;
+        try {
+            return matches(text, regex, mMatchBudget.ruleDeadline(sentenceDeadline));
+        } catch (MatchTimeoutException e) {
+            LOGGER.warning("guard '" + regex + "': " + e.getMessage());
+            mMetrics.countRuleTimeout();
+            return false;
         }
-        return replaced;
     }
 
+    // Match 'text' against 'regex', throws a MatchTimeoutException if 'deadline' passes
+    private boolean matches(String text, String regex, long deadline) {
+        return WorkBuffers.get().matcher(pattern(regex), interruptible(text, deadline)).matches();
+    }
+
+    private CharSequence interruptible(String text, long deadline) {
+        if (deadline == MatchBudget.NO_DEADLINE)
+            return text;
+        return new InterruptibleCharSequence(text, deadline);
+    }
+
+    static Pattern pattern(String regex) {
+        return PATTERN_CACHE.computeIfAbsent(regex, Pattern::compile);
+    }
+
+    /**
+     * A cheap normalization of a sentence (as detected by the Tokenizer), for requests running out of time: no
+     * dictionaries and no POS-tags, digits are read one by one, see normalizeDigits(), other tokens stay as they are.
+     */
+    public String fallbackNormalize(String sentence) {
+        String[] tokens = sentence.split(" ");
+        int[] flags = TokenFlags.of(tokens);
+        StringBuilder sb = new StringBuilder(sentence.length() * 2);
+        for (int i = 0; i < tokens.length; i++) {
+            String token = fallbackNormalize(tokens[i], flags[i]);
+            int length = sb.length();
+            if (length > 0)
+                sb.append(' ');
+            appendTrimmed(sb, token);
+            if (sb.length() == length + 1)
+                sb.setLength(length);
+        }
+        return sb.toString();
+    }
+
+    // Safe default for a token we could not normalize in time: read digits one by one, leave other tokens as they are
+    private String fallbackNormalize(String token, int flags) {
+        if (TokenFlags.has(flags, TokenFlags.DIGIT))
+            return normalizeDigits(token);
+        return token;
+    }
+
+    // as token.replaceAll(".", "$0 ").trim(): a space after each character, except line terminators
     private String insertSpaces(String token) {
-        return token.replaceAll(".", "$0 ").trim();
+        StringBuilder sb = WorkBuffers.get().token();
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            sb.append(c);
+            if (!isLineTerminator(c) && !(Character.isHighSurrogate(c) && i + 1 < token.length()
+                    && Character.isLowSurrogate(token.charAt(i + 1))))
+                sb.append(' ');
+        }
+        int start = 0;
+        int end = sb.length();
+        while (start < end && sb.charAt(start) <= ' ')
+            start++;
+        while (end > start && sb.charAt(end - 1) <= ' ')
+            end--;
+        return sb.substring(start, end);
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 
     private String join(String[] textArr) {
@@ -163,14 +474,14 @@ public class TTSNormalizer {
     Replace hyphens based on domain: in sport results we don't speak the hyphen between two digits, otherwise
     it is spoken as "til" (to)
      */
-    private String replaceHyphen(String text, String domain) {
+    private String replaceHyphen(String text, boolean sport) {
         String replacedText = text;
         boolean didReplace = false;
         String[] textArr = text.split(" ");
         for (int i = 2; i < textArr.length - 1; i++) {
             // pattern: "digit - digit"
             if (textArr[i].equals("-") && textArr[i - 1].matches("\\d+\\.?(\\d+)?") && textArr[i + 1].matches("\\d+\\.?(\\d+)?")) {
-                if (domain.equals("sport"))
+                if (sport)
                     textArr[i] = "";
                 else
                     textArr[i] = "til";
@@ -184,74 +495,79 @@ public class TTSNormalizer {
     }
 
     /*
-    Look for matching patterns for 'numberToken' and normalize according to 'nextTag', which is the POS-tag of the
-    next token in the sentence to normalize. If we don't find a match, use the default 'normalizeDigits()' to
-    normalize. Return the normalized numberToken.
+    Classify 'numberToken' (see NumberClassifier) and normalize according to 'nextTag', which is the POS-tag of the
+    next token in the sentence to normalize. If the token is of no known number type, use the default
+    'normalizeDigits()' to normalize. Return the normalized numberToken.
      */
-    private String normalizeNumber(String numberToken, String nextTag) {
+    private String normalizeNumber(String numberToken, String nextTag, RuleSet rules, Domain domain, long deadline) {
         String normalized = numberToken;
-        //1.234. or 1. or 12. or 123.
-        if (numberToken.matches(NumberHelper.ORDINAL_THOUSAND_PTRN)) {
-            Map<String, Map<String, String>> ordinalThousandDict = makeDict(numberToken, NumberHelper.INT_COLS_THOUSAND); // should look like: {token: {thousands: "", hundreds: "", dozens: "", ones: ""}}
-            List<OrdinalTuple> mergedTupleList = Stream.of(OrdinalOnesTuples.getTuples(), OrdinalThousandTuples.getTuples(),
-                    CardinalThousandTuples.getTuples())
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            normalized = fillDict(numberToken, nextTag, mergedTupleList, ordinalThousandDict, NumberHelper.INT_COLS_THOUSAND);
-        }
-        //1.234 or 1 or 12 or 123
-        else if (numberToken.matches(NumberHelper.CARDINAL_THOUSAND_PTRN)) {
-            Map<String, Map<String, String>> cardinalThousandDict = makeDict(numberToken, NumberHelper.INT_COLS_THOUSAND); // should look like: {token: {thousands: "", hundreds: "", dozens: "", ones: ""}}
-            List<OrdinalTuple> mergedTupleList = Stream.of(CardinalOnesTuples.getTuples(), CardinalThousandTuples.getTuples())
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            normalized = fillDict(numberToken, nextTag, mergedTupleList, cardinalThousandDict, NumberHelper.INT_COLS_THOUSAND);
-        }
-        //1.234 or 12.345 or 123.456 -> asking the same thing twice, check
-        else if (numberToken.matches(NumberHelper.CARDINAL_MILLION_PTRN)) {
-            Map<String, Map<String, String>> cardinalMillionDict = makeDict(numberToken, NumberHelper.INT_COLS_MILLION); // should look like: {token: {thousands: "", hundreds: "", dozens: "", ones: ""}}
-            List<OrdinalTuple> mergedTupleList = Stream.of(CardinalThousandTuples.getTuples(), CardinalMillionTuples.getTuples())
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            normalized = fillDict(numberToken, nextTag, mergedTupleList, cardinalMillionDict, NumberHelper.INT_COLS_MILLION);
-        }
-        //1.123,4 or 1232,4 or 123,4 or 12,42345 or 1,489 ; NOT: 12345,5
-        else if (numberToken.matches(NumberHelper.DECIMAL_THOUSAND_PTRN)) {
-            Map<String, Map<String, String>> decimalDict = makeDict(numberToken, NumberHelper.DECIMAL_COLS_THOUSAND); // should look like: {token: {"first_ten", "first_one","between_teams","second_ten", "second_one"}}
-
-            List<OrdinalTuple> mergedCardinalTupleList = Stream.of(CardinalOnesTuples.getTuples(), CardinalThousandTuples.getTuples())
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            List<OrdinalTuple> mergedTupleList = Stream.of(mergedCardinalTupleList, DecimalThousandTuples.getTuples())
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            normalized = fillDict(numberToken, nextTag, mergedTupleList, decimalDict, NumberHelper.DECIMAL_COLS_THOUSAND);
-        }
-        // 01:55 or 01.55
-        else if (numberToken.matches(NumberHelper.TIME_PTRN)) {
-            Map<String, Map<String, String>> timeDict = makeDict(numberToken, NumberHelper.TIME_SPORT_COLS); // should look like: {token: {"first_ten", "first_one","between_teams","second_ten", "second_one"}}
-            normalized = fillDict(numberToken, nextTag, TimeTuples.getTuples(), timeDict, NumberHelper.TIME_SPORT_COLS);
-        }
-        // 4/8 or ⅓ , etc.
-        else if (numberToken.matches(NumberHelper.FRACTION_PTRN)) {
-            // if domain == "other" - do other things, below is the handling for sport results:
-            Map<String, Map<String, String>> sportsDict = makeDict(numberToken, NumberHelper.TIME_SPORT_COLS); // should look like: {token: {"first_ten", "first_one","between_teams","second_ten", "second_one"}}
-            normalized = fillDict(numberToken, nextTag, SportTuples.getTuples(), sportsDict, NumberHelper.TIME_SPORT_COLS);
-        }
-        // 01. (what kind of ordinal is this?)
-        else if (numberToken.matches("^0\\d\\.$")) {
-            normalized = normalizeDigitOrdinal(numberToken);
-        }
-        else {
-            normalized = normalizeDigits(numberToken);
+        NumberToken number = NumberClassifier.classify(numberToken);
+        switch (number.getType()) {
+            //1.234. or 1. or 12. or 123.
+            case ORDINAL_THOUSAND: {
+                List<OrdinalTuple> mergedTupleList = rules.getTuples(NumberToken.Type.ORDINAL_THOUSAND);
+                normalized = fillDict(numberToken, nextTag, mergedTupleList, NumberHelper.INT_COLS_THOUSAND, deadline);
+                break;
+            }
+            //1.234 or 1 or 12 or 123
+            case CARDINAL_THOUSAND: {
+                List<OrdinalTuple> mergedTupleList = rules.getTuples(NumberToken.Type.CARDINAL_THOUSAND);
+                normalized = fillDict(numberToken, nextTag, mergedTupleList, NumberHelper.INT_COLS_THOUSAND, deadline);
+                break;
+            }
+            //12.345 or 123.456
+            case CARDINAL_MILLION: {
+                List<OrdinalTuple> mergedTupleList = rules.getTuples(NumberToken.Type.CARDINAL_MILLION);
+                normalized = fillDict(numberToken, nextTag, mergedTupleList, NumberHelper.INT_COLS_MILLION, deadline);
+                break;
+            }
+            // 12.345. or 123.456. or 1.234.567. - the big number engine does not use regexes, see CardinalBigTuples
+            case ORDINAL_MILLION:
+            case ORDINAL_BIG:
+                normalized = CardinalBigTuples.expandOrdinal(number, nextTag);
+                break;
+            // 1.234.567 or 123.456.789.012
+            case CARDINAL_BIG:
+                normalized = CardinalBigTuples.expandCardinal(number, nextTag);
+                break;
+            //1.123,4 or 1232,4 or 123,4 or 12,42345 or 1,489 ; NOT: 12345,5
+            case DECIMAL_THOUSAND: {
+                List<OrdinalTuple> mergedTupleList = rules.getTuples(NumberToken.Type.DECIMAL_THOUSAND);
+                normalized = fillDict(numberToken, nextTag, mergedTupleList, NumberHelper.DECIMAL_COLS_THOUSAND, deadline);
+                break;
+            }
+            // 12.345,6 or 12345678,9
+            case DECIMAL_BIG:
+                normalized = CardinalBigTuples.expandDecimal(number, nextTag);
+                break;
+            // 01:55 or 01.55
+            case TIME: {
+                normalized = fillDict(numberToken, nextTag, rules.getTuples(NumberToken.Type.TIME), NumberHelper.TIME_SPORT_COLS, deadline);
+                break;
+            }
+            // 4/8 or ⅓ , etc.
+            case FRACTION:
+                // followed by a noun or an adjective: a fraction, "2/3 bolla" - in sport texts always a result
+                normalized = domain == Domain.SPORT ? null : FractionTuples.expand(number, nextTag);
+                if (normalized == null) {
+                    // the handling for sport results:
+                    normalized = fillDict(numberToken, nextTag, rules.getTuples(NumberToken.Type.FRACTION), NumberHelper.TIME_SPORT_COLS, deadline);
+                }
+                break;
+            // 01. (what kind of ordinal is this?)
+            case DIGIT_ORDINAL:
+                normalized = normalizeDigitOrdinal(numberToken);
+                break;
+            default:
+                normalized = normalizeDigits(numberToken);
         }
         return normalized;
     }
 
     /*
-     * Normalize URLs and e-mail addresses. In the current implementation, everything but the suffix .com / .is / .org
-     * is separated character by character. We need to have a method that allows us to speak urls like "rúv punktur is",
-     * "visir punktur is" etc. instead of "r u v punktur is", as is done right now.
+     * Normalize URLs and e-mail addresses. Everything but the suffix .com / .is / .org is segmented into known words
+     * and spelled characters by the LinkSegmenter, so we speak urls like "rúv punktur is", "vísir punktur is" instead
+     * of "r u v punktur is".
      */
     private String normalizeURL(String token) {
         String normalized = token;
@@ -261,11 +577,7 @@ public class TTSNormalizer {
             String prefix = token.substring(0, ind);
             String suffix = token.substring(ind + 1);
             // how can we choose which words to keep as words and which to separate?
-            prefix = insertSpaces(prefix);
-
-            for (String symbol : NumberHelper.WLINK_NUMBERS.keySet()) {
-                prefix = prefix.replaceAll(symbol, NumberHelper.WLINK_NUMBERS.get(symbol));
-            }
+            prefix = NumberHelper.WLINK_TABLE.translate(mResources.getLinkSegmenter().segment(prefix));
             if (suffix.indexOf('/') > 0) {
                 String postSuffix = processSubPath(suffix);
                 suffix = suffix.substring(0, suffix.indexOf('/')) + " " + postSuffix;
@@ -274,10 +586,7 @@ public class TTSNormalizer {
         }
         // we do not have a domain name, maybe a twitter handle with @ symbol
         else {
-            normalized = insertSpaces(token);
-            for (String symbol : NumberHelper.WLINK_NUMBERS.keySet()) {
-                normalized = normalized.replaceAll(symbol, NumberHelper.WLINK_NUMBERS.get(symbol));
-            }
+            normalized = NumberHelper.WLINK_TABLE.translate(mResources.getLinkSegmenter().segment(token));
             if (normalized.indexOf('/') > 0) {
                 String postSuffix = processSubPath(token);
                 normalized = normalized.substring(0, normalized.indexOf('/')) + " " + postSuffix;
@@ -289,23 +598,20 @@ public class TTSNormalizer {
     // that token contains '/' should be checked before calling this method
     private String processSubPath(String token) {
         String postSuffix = token.substring(token.indexOf('/'));
-        postSuffix = insertSpaces(postSuffix);
-        for (String symbol : NumberHelper.WLINK_NUMBERS.keySet()) {
-            postSuffix = postSuffix.replaceAll(symbol, NumberHelper.WLINK_NUMBERS.get(symbol));
-        }
-        return postSuffix;
+        return NumberHelper.WLINK_TABLE.translate(mResources.getLinkSegmenter().segment(postSuffix));
     }
 
     private String normalizeSymbols(String token) {
-        for (String symbol : NumberHelper.DIGIT_NUMBERS.keySet()) {
-            token = token.replaceAll(symbol, NumberHelper.DIGIT_NUMBERS.get(symbol));
-        }
-        return token;
+        return NumberHelper.DIGIT_TABLE.translate(token);
     }
 
+    // "0" + digit + "." is read "núll" + ordinal digit
     private String normalizeDigitOrdinal(String token) {
-        for (String digit : NumberHelper.DIGITS_ORD.keySet())
-            token = token.replaceAll("^0" + digit + "\\.$", "núll " + NumberHelper.DIGITS_ORD.get(digit));
+        if (token.length() == 3 && token.charAt(0) == '0' && token.charAt(2) == '.') {
+            String ordinal = NumberHelper.DIGITS_ORD_TABLE.get(token.charAt(1));
+            if (ordinal != null)
+                return "núll " + ordinal;
+        }
         return token;
     }
 
@@ -313,49 +619,46 @@ public class TTSNormalizer {
      * now we simply replace digits by their default word representation.
      */
     private String normalizeDigits(String token) {
-        token = token.replaceAll(" ", "<sil> ");
-        for (String digit : NumberHelper.DIGIT_NUMBERS.keySet()) {
-            token = token.replaceAll(digit, NumberHelper.DIGIT_NUMBERS.get(digit));
-        }
-        return token;
-    }
-
-    /*
-     * Initializes a map to hold the digit positions for a token, e.g.:
-     * {token: {thousands: "", hundreds: "", dozens: "", ones: ""}}
-     */
-    private Map<String, Map<String, String>> makeDict(String token, String[] columns) {
-        Map<String, Map<String, String>> valueDict = new HashMap<>();
-        Map<String, String> innerMap = new HashMap<>();
-        for (String s : columns)
-            innerMap.put(s, "");
-        valueDict.put(token, innerMap);
-        return valueDict;
+        if (token.indexOf(' ') < 0)
+            return NumberHelper.DIGIT_TABLE.translate(token);
+        StringBuilder sb = WorkBuffers.get().token();
+        int start = 0;
+        for (int space = token.indexOf(' '); space >= 0; space = token.indexOf(' ', start)) {
+            NumberHelper.DIGIT_TABLE.appendTo(sb, token, start, space).append("<sil> ");
+            start = space + 1;
+        }
+        return NumberHelper.DIGIT_TABLE.appendTo(sb, token, start, token.length()).toString();
     }
 
     /*
-     * Fills a map that holds the digit positions for a token, e.g.:
-     * {"1983": {thousands: "", hundreds: "nítján hundruð", dozens: " áttatíu og", ones: "þrjú"}}
+     * Fills the digit positions (columns) for a token from the matching tuples, e.g. for "1983" and the columns
+     * {thousands, hundreds, dozens, ones}: {"", "nítján hundruð", " áttatíu og", "þrjú"}
      * Returns a string combined of the values, e.g.: "nítján hundruð áttatíu og þrjú"
+     * The columns are slots of a per-thread array, a column without a matching tuple stays empty.
      */
-    private String fillDict(String token, String tag, List<OrdinalTuple> tuples, Map<String, Map<String, String>> typeDict, String[] columns) {
-        String result = "";
-
+    private String fillDict(String token, String tag, List<OrdinalTuple> tuples, String[] columns, long deadline) {
+        WorkBuffers buffers = WorkBuffers.get();
+        String[] slots = buffers.slots(columns.length);
+        CharSequence input = interruptible(token, deadline);
         for (int i = 0; i < tuples.size(); i++) {
-            if (token.matches(".*" + tuples.get(i).getNumberPattern() + ".*") && tag.matches(".*" + tuples.get(i).getRule())) {
-                if (typeDict.containsKey(token)) {
-                    if (typeDict.get(token).containsKey(tuples.get(i).getCategorie())) {
-                        Map<String, String> tmp = typeDict.get(token);
-                        tmp.put(tuples.get(i).getCategorie(), tuples.get(i).getExpansion());
-                        typeDict.put(token, tmp); // not really necessary, since the previous assignment updates the map in typeDict, but this is more clear
-                    }
-                }
-            }
-        }
-        for (String s : columns)
-            result += typeDict.get(token).get(s);
+            OrdinalTuple tuple = tuples.get(i);
+            int column = columnIndex(columns, tuple.getCategorie());
+            if (column >= 0 && buffers.matcher(tuple.getTokenMatcher(), input).matches()
+                    && buffers.matcher(tuple.getTagMatcher(), tag).matches())
+                slots[column] = tuple.getExpansion();
+        }
+        StringBuilder result = buffers.token();
+        for (String column : columns)
+            result.append(slots[columnIndex(columns, column)]);
+        return result.toString();
+    }
 
-        return result;
+    private static int columnIndex(String[] columns, String column) {
+        for (int i = 0; i < columns.length; i++) {
+            if (columns[i].equals(column))
+                return i;
+        }
+        return -1;
     }
 
 }
@@ -0,0 +1,138 @@
+package textnorm;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * A lexicon of word forms and their dominant POS-tag (MIM-GOLD tagset), used to tag the words following numbers
+ * without running the POS-tagger. The only tags postNormalize() reads are the tags of the words after numbers, and
+ * these words are mostly frequent nouns and units ("krónur", "ára", "manns").
+ *
+ * Like a RuleProfile, a lexicon is either created empty to observe the output of the POS-tagger (see observing()),
+ * or loaded from a lexicon file. Only unambiguous high-frequency forms are saved: forms seen at least 'minCount'
+ * times, with the same tag in at least 'minShare' of the cases. A lexicon can also be built offline from a tagged
+ * corpus, by calling observe() for its sentences.
+ *
+ * Lexicon file format, one word form per line: word TAB tag TAB count. Lines starting with '#' are comments.
+ */
+public class TagLexicon {
+    private final static Logger LOGGER = Logger.getLogger(TagLexicon.class.getName());
+    private final static String COMMENT = "#";
+    private final static String SEPARATOR = "\t";
+
+    private final boolean mObserving;
+    // word -> tag -> count, while observing
+    private final Map<String, Map<String, AtomicLong>> mObservations = new ConcurrentHashMap<>();
+    // word -> dominant tag, of a loaded lexicon
+    private final Map<String, String> mTags = new HashMap<>();
+
+    private TagLexicon(boolean observing) {
+        this.mObserving = observing;
+    }
+
+    /**
+     * Creates an empty lexicon that records the tags of the POS-tagger, see observe(). Lookups return null.
+     */
+    public static TagLexicon observing() {
+        return new TagLexicon(true);
+    }
+
+    /**
+     * Loads a lexicon written by save().
+     *
+     * @param filename path of the lexicon file
+     * @return the loaded lexicon
+     * @throws IOException if the file can not be read
+     */
+    public static TagLexicon load(String filename) throws IOException {
+        return load(Files.newInputStream(Paths.get(filename)));
+    }
+
+    public static TagLexicon load(InputStream is) throws IOException {
+        TagLexicon lexicon = new TagLexicon(false);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty() || line.startsWith(COMMENT))
+                    continue;
+                String[] arr = line.split(SEPARATOR);
+                if (arr.length != 3) {
+                    LOGGER.warning("skipping malformed lexicon line: " + line);
+                    continue;
+                }
+                lexicon.mTags.put(arr[0], arr[1]);
+            }
+        }
+        return lexicon;
+    }
+
+    public boolean isObserving() {
+        return mObserving;
+    }
+
+    public int size() {
+        return mObserving ? mObservations.size() : mTags.size();
+    }
+
+    /**
+     * Returns the tag of 'word', or null if the word is not in the lexicon (unknown or ambiguous).
+     */
+    public String lookup(String word) {
+        return mTags.get(word);
+    }
+
+    /**
+     * Records the tags of a tagged sentence.
+     */
+    public void observe(String[] tokens, String[] tags) {
+        for (int i = 0; i < tokens.length && i < tags.length; i++) {
+            mObservations.computeIfAbsent(tokens[i], k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(tags[i], k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes the unambiguous high-frequency word forms observed to 'filename', most frequent forms first.
+     *
+     * @param minCount minimum number of observations of a word form
+     * @param minShare minimum share of the dominant tag among the observations of a word form, e.g. 0.99
+     */
+    public void save(String filename, long minCount, double minShare) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        for (Map.Entry<String, Map<String, AtomicLong>> word : mObservations.entrySet()) {
+            long total = 0;
+            String dominant = null;
+            long dominantCount = 0;
+            for (Map.Entry<String, AtomicLong> tag : word.getValue().entrySet()) {
+                long count = tag.getValue().get();
+                total += count;
+                if (count > dominantCount) {
+                    dominant = tag.getKey();
+                    dominantCount = count;
+                }
+            }
+            if (total >= minCount && dominantCount >= minShare * total)
+                entries.add(new String[]{word.getKey(), dominant, Long.toString(total)});
+        }
+        entries.sort(Comparator.comparingLong((String[] e) -> -Long.parseLong(e[2])).thenComparing(e -> e[0]));
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(filename), StandardCharsets.UTF_8)) {
+            writer.write(COMMENT + " tag lexicon: word, dominant tag, observations - min. count " + minCount
+                    + ", min. share " + minShare);
+            writer.newLine();
+            for (String[] entry : entries) {
+                writer.write(String.join(SEPARATOR, entry));
+                writer.newLine();
+            }
+        }
+    }
+}
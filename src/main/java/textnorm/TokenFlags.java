@@ -0,0 +1,123 @@
+package textnorm;
+
+/**
+ * Character class flags of a token or a sentence, computed in one scan. TTSNormalizer reads these bits to decide
+ * which normalization branch a token takes, instead of matching each token against a series of regexes.
+ *
+ * Each flag documents the regex it replaces. LINK_CANDIDATE is a necessary condition only: a token has to contain
+ * one of the characters the link patterns require, the patterns themselves are still matched for candidates.
+ */
+public final class TokenFlags {
+
+    // contains an ASCII digit: .*\d.*
+    public static final int DIGIT = 1;
+    // contains a unicode fraction: .*[½⅓⅔¼¾].*
+    public static final int FRACTION = 1 << 1;
+    // contains a digit or a unicode fraction
+    public static final int NUMBER = DIGIT | FRACTION;
+    // consists of upper case letters, '-' and '.' only: [\-\.A-ZÁÐÉÍÓÚÝÞÆÖ]+
+    public static final int UPPER_CASE = 1 << 2;
+    // an upper case token to spell out: NumberHelper.LETTERS_PTRN
+    public static final int ACRONYM = 1 << 3;
+    // contains '.', ':', '@' or '#', see NormalizationDictionaries.LINK_PTRN_ALL
+    public static final int LINK_CANDIDATE = 1 << 4;
+    // a single character that is not a letter: NormalizationDictionaries.NOT_LETTERS
+    public static final int SYMBOL = 1 << 5;
+    // contains '-'
+    public static final int HYPHEN = 1 << 6;
+    // contains '.'
+    public static final int DOT = 1 << 7;
+    // contains '/'
+    public static final int SLASH = 1 << 8;
+
+    private static final String UPPER_CASE_LETTERS = "ÁÐÉÍÓÚÝÞÆÖ";
+    private static final String LOWER_CASE_LETTERS = "áðéíóúýþæö";
+    private static final String FRACTIONS = "½⅓⅔¼¾";
+    // upper case tokens that are read as words (and the single characters '-' and '.')
+    private static final String[] WORD_ACRONYMS = {"RÚV", "SPRON", "-", "."};
+    private static final int MAX_ACRONYM_LENGTH = 5;
+
+    private TokenFlags() {}
+
+    public static boolean has(int flags, int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * Returns the flags of each token in 'tokens'.
+     */
+    public static int[] of(String[] tokens) {
+        int[] flags = new int[tokens.length];
+        for (int i = 0; i < tokens.length; i++)
+            flags[i] = of(tokens[i]);
+        return flags;
+    }
+
+    /**
+     * Returns the flags of 'token'. For a whole sentence, the flags DIGIT, FRACTION, LINK_CANDIDATE, HYPHEN, DOT and
+     * SLASH are meaningful.
+     */
+    public static int of(String token) {
+        int flags = token.isEmpty() ? 0 : UPPER_CASE;
+        boolean letters = false;
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c >= '0' && c <= '9') {
+                flags |= DIGIT;
+            }
+            else if (isUpperCase(c)) {
+                letters = true;
+                continue;
+            }
+            else if (isLowerCase(c)) {
+                letters = true;
+            }
+            else if (FRACTIONS.indexOf(c) >= 0) {
+                flags |= FRACTION;
+            }
+            else {
+                switch (c) {
+                    case '-':
+                        flags |= HYPHEN;
+                        continue;
+                    case '.':
+                        flags |= DOT | LINK_CANDIDATE;
+                        continue;
+                    case '/':
+                        flags |= SLASH;
+                        break;
+                    case ':':
+                    case '@':
+                    case '#':
+                        flags |= LINK_CANDIDATE;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            // not an upper case letter, '-' or '.'
+            flags &= ~UPPER_CASE;
+        }
+        if (has(flags, UPPER_CASE) && token.length() <= MAX_ACRONYM_LENGTH && !isWordAcronym(token))
+            flags |= ACRONYM;
+        if (!letters && token.codePointCount(0, token.length()) == 1)
+            flags |= SYMBOL;
+        return flags;
+    }
+
+    static boolean isUpperCase(char c) {
+        return (c >= 'A' && c <= 'Z') || UPPER_CASE_LETTERS.indexOf(c) >= 0;
+    }
+
+    static boolean isLowerCase(char c) {
+        return (c >= 'a' && c <= 'z') || LOWER_CASE_LETTERS.indexOf(c) >= 0;
+    }
+
+    private static boolean isWordAcronym(String token) {
+        for (String acronym : WORD_ACRONYMS) {
+            if (acronym.equals(token))
+                return true;
+        }
+        return false;
+    }
+}
@@ -3,6 +3,10 @@ package textnorm;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * The Tokenizer is a basic white space tokenizer, that takes abbreviations and digits into account,
@@ -14,17 +18,29 @@ import java.util.Set;
  * d. collect sentences in a list to return
  */
 public class Tokenizer {
-    private Set<String> mAbbreviations;
-    private Set<String> mAbbreviationsNonending;
+    private final RuleSet mRuleSet;
+    private final Set<String> mAbbreviations;
+    private final Set<String> mAbbreviationsNonending;
 
     private final String mAlphabetic = "[A-Za-záéíóúýðþæöÁÉÍÓÚÝÐÞÆÖ]+";
     private final String mUpperCase = "[A-ZÁÉÍÓÚÝÐÞÆÖ]";
     private final String mEOSSymbol = "[.:?!;]";
 
     public Tokenizer() {
-        Abbreviations abbr = new Abbreviations();
-        mAbbreviations = abbr.getAbbreviations();
-        mAbbreviationsNonending = abbr.getNonEndingAbbr();
+        this(ResourceRegistry.get().getRuleSet());
+    }
+
+    /**
+     * Creates a tokenizer with the abbreviations of 'rules'.
+     */
+    public Tokenizer(RuleSet rules) {
+        mRuleSet = rules;
+        mAbbreviations = rules.getAbbreviations();
+        mAbbreviationsNonending = rules.getNonEndingAbbreviations();
+    }
+
+    public RuleSet getRuleSet() {
+        return mRuleSet;
     }
 
     /**
@@ -39,6 +55,19 @@ public class Tokenizer {
      */
     public List<String> detectSentences(String text) {
         List<String> sentences = new ArrayList<>();
+        detectSentences(text, sentences::add);
+        return sentences;
+    }
+
+    /**
+     * As detectSentences(text), but each sentence is handed to 'sentenceConsumer' as soon as its boundary is
+     * certain, i.e. before the rest of the text has been tokenized.
+     *
+     * @param text a string that has been unicode-normalized
+     * @param sentenceConsumer receives the sentences in text order
+     */
+    public void detectSentences(String text, Consumer<String> sentenceConsumer) {
+        SentenceList sentences = new SentenceList(sentenceConsumer);
         String[] tokensArr = text.split("\\s");
         StringBuilder sb = new StringBuilder();
         String lastToken = "";
@@ -47,12 +76,11 @@ public class Tokenizer {
         for (String t : tokensArr) {
             if (t.isEmpty())
                 continue;
-            String tokenized = t;
-            // we don't need to do anything with alphabetic-only tokens
-            if (!t.matches(mAlphabetic)) {
-                tokenized = processSpecialCharacters(t.trim());
-            }
+            String tokenized = tokenize(t);
             sb = checkLastToken(sentences, sb, lastToken, tokenized);
+            // the last sentence can only change as long as we only see symbols (see finishSentence)
+            if (hasContent(tokenized))
+                sentences.release();
             // keep tokens ending with '.' for the next iteration
             lastToken = updateLastToken(tokenized);
             if (!lastToken.isEmpty()) continue;
@@ -60,16 +88,144 @@ public class Tokenizer {
             sb = updateStringBuilder(sentences, sb, tokenized);
         }
         finishSentence(sentences, sb, lastToken);
+        sentences.release();
+    }
 
+    /**
+     * As detectSentences(text), but for large texts: the text is split into chunks of about 'chunkLength'
+     * characters at safe split points (see isSafeSplit), and the sentences of the chunks are detected in parallel
+     * by 'executor'. The result is exactly the result of detectSentences(text).
+     *
+     * @param text a string that has been unicode-normalized
+     * @param chunkLength minimum length of a chunk
+     * @param executor runs the detection of the chunks
+     * @return a list of sentences as strings
+     */
+    public List<String> detectSentences(String text, int chunkLength, ExecutorService executor) {
+        if (chunkLength < 1)
+            throw new IllegalArgumentException("chunk length must be positive: " + chunkLength);
+        List<Future<List<String>>> chunks = new ArrayList<>();
+        int start = 0;
+        while (start < text.length()) {
+            int end = findSplit(text, start + chunkLength);
+            String chunk = text.substring(start, end);
+            chunks.add(executor.submit(() -> detectSentences(chunk)));
+            start = end;
+        }
+        List<String> sentences = new ArrayList<>();
+        try {
+            for (Future<List<String>> chunk : chunks)
+                sentences.addAll(chunk.get());
+        } catch (InterruptedException e) {
+            chunks.forEach(chunk -> chunk.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while detecting sentences", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("sentence detection failed", e.getCause());
+        }
         return sentences;
     }
 
+    // the first safe split point after 'from', or the end of 'text'
+    private int findSplit(String text, int from) {
+        for (int i = text.indexOf('\n', from); i >= 0; i = text.indexOf('\n', i + 1)) {
+            if (isSafeSplit(text, i))
+                return i;
+        }
+        return text.length();
+    }
+
+    /*
+     * A newline at 'pos' is a safe split point, if the sequential detection always finishes a sentence between the
+     * tokens before and after it: the token before ends with an EOS symbol other than '.', or with a '.' that ends
+     * the sentence before the next token (it is not a non-ending abbreviation, and the next token starts with an
+     * upper case letter, see isFullStopEOS()). The next token has to have content, otherwise the sequential detection
+     * might append symbols following it to the sentence before (see finishSentence()).
+     */
+    private boolean isSafeSplit(String text, int pos) {
+        int end = pos;
+        while (end > 0 && isWhitespace(text.charAt(end - 1)))
+            end--;
+        int start = end;
+        while (start > 0 && !isWhitespace(text.charAt(start - 1)))
+            start--;
+        int nextStart = pos + 1;
+        while (nextStart < text.length() && isWhitespace(text.charAt(nextStart)))
+            nextStart++;
+        int nextEnd = nextStart;
+        while (nextEnd < text.length() && !isWhitespace(text.charAt(nextEnd)))
+            nextEnd++;
+        if (start == end || nextStart == nextEnd)
+            return false;
+        String last = tokenize(text.substring(start, end));
+        String next = tokenize(text.substring(nextStart, nextEnd));
+        if (!hasContent(next))
+            return false;
+        if (endsWithDot(last))
+            return isFullStopEOS(next, last);
+        return isEOS(last);
+    }
+
+    // the characters detectSentences() splits on, "\\s"
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+
+    private String tokenize(String token) {
+        // we don't need to do anything with alphabetic-only tokens
+        if (token.matches(mAlphabetic))
+            return token;
+        return processSpecialCharacters(token.trim());
+    }
+
+    private boolean hasContent(String token) {
+        return token.matches(".*" + mAlphabetic + ".*|.*\\d+.*");
+    }
+
+    /*
+     * A list of detected sentences that hands each sentence to a consumer as soon as it can no longer change.
+     * The last added sentence is kept back until release() is called, because a trailing sequence of symbols
+     * might still be appended to it.
+     */
+    private static class SentenceList {
+        private final Consumer<String> mConsumer;
+        private String mPending;
+
+        SentenceList(Consumer<String> consumer) {
+            this.mConsumer = consumer;
+        }
+
+        void add(String sentence) {
+            release();
+            mPending = sentence;
+        }
+
+        // the last sentence, if it has not been released yet
+        boolean hasLast() {
+            return mPending != null;
+        }
+
+        String getLast() {
+            return mPending;
+        }
+
+        void setLast(String sentence) {
+            mPending = sentence;
+        }
+
+        void release() {
+            if (mPending != null)
+                mConsumer.accept(mPending);
+            mPending = null;
+        }
+    }
+
     /*
      * Check the content of 'sb' and 'lastToken' and finish the sentence contained in 'sb'.
      * 'sentences' is the list of sentences already detected from the input text (see @detectSentences)
      * After processing 'sb' and 'lastToken' we create a new sentence string to add to 'sentences'
      */
-    private void finishSentence(List<String> sentences, StringBuilder sb, String lastToken) {
+    private void finishSentence(SentenceList sentences, StringBuilder sb, String lastToken) {
         // we might still have a dangling last token
         if (!lastToken.isEmpty()) {
             String sent = ensureFullStop(sb, lastToken);
@@ -83,10 +239,10 @@ public class Tokenizer {
             if (!lastSentence.matches(".*" + mAlphabetic + ".*|.*\\d+.*")) {
                 // we don't want to add a sentence only consisting of symbols, do we?
                 // rather add to last sentence, was probably a mistake to finish that one
-                if (!sentences.isEmpty()) {
-                    String sent = sentences.get(sentences.size() - 1);
+                if (sentences.hasLast()) {
+                    String sent = sentences.getLast();
                     sent = sent + " " + lastSentence;
-                    sentences.set(sentences.size() - 1, sent);
+                    sentences.setLast(sent);
                 }
             } else if (!Character.toString(lastSentence.charAt(lastSentence.length() - 1)).matches(mEOSSymbol))
                 sentences.add(sb.toString().trim() + " .");
@@ -100,7 +256,7 @@ public class Tokenizer {
      * new sentence from 'sb' and add to 'sentences'. Create new StringBuilder object.
      * Return the 'sb', either we have the old 'sb' with 'tokenized' appended, or a new StringBuilder object.
      */
-    private StringBuilder updateStringBuilder(List<String> sentences, StringBuilder sb, String tokenized) {
+    private StringBuilder updateStringBuilder(SentenceList sentences, StringBuilder sb, String tokenized) {
         sb.append(tokenized).append(" ");
         if (isEOS(tokenized)) {
             sentences.add(sb.toString().trim());
@@ -116,7 +272,7 @@ public class Tokenizer {
             return "";
     }
 
-    private StringBuilder checkLastToken(List<String> sentences, StringBuilder sb, String lastToken, String tokenized) {
+    private StringBuilder checkLastToken(SentenceList sentences, StringBuilder sb, String lastToken, String tokenized) {
         if (!lastToken.isEmpty()) {
             if (!isFullStopEOS(tokenized, lastToken))
                 appendToken(sb, lastToken);
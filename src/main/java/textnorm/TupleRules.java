@@ -9,7 +9,7 @@ public class TupleRules {
     private TupleRules(){}
 
     private static final String ANYTHING = "^.*$";
-    private static final String HALF_PATTERN = "(1\\/2|½)";
+    static final String HALF_PATTERN = "(1\\/2|½)";
     private static final String THIRD_PATTERN = "(1\\/3|⅓)";
     private static final String FOURTH_PATTERN = "(1\\/4|¼)";
     private static final String TWO_THIRD_PATTERN = "(2\\/3|⅔)";
@@ -162,6 +162,7 @@ public class TupleRules {
         HALF_ZIP.add(new Tuple(NumberPatterns.HALFU, " hálfu", HALF_PATTERN));
         HALF_ZIP.add(new Tuple(NumberPatterns.HALFIR, " hálfir", HALF_PATTERN));
         HALF_ZIP.add(new Tuple(NumberPatterns.HALFRA, " hálfra", HALF_PATTERN));
+        HALF_ZIP.add(new Tuple(NumberPatterns.HALFAR, " hálfar", HALF_PATTERN));
         HALF_ZIP.add(new Tuple(NumberPatterns.NO_NOUN, " hálfur", HALF_PATTERN));
 
         HALF_ZIP.add(new Tuple(NumberPatterns.FRACTIONNOM, " einn þriðji", THIRD_PATTERN));
@@ -278,13 +279,13 @@ public class TupleRules {
     public static final List<Tuple> BILLIONS_ZIP = new ArrayList<>();
     static {
         BILLIONS_ZIP.add(new Tuple("", " tveir", "2"));
-        BILLIONS_ZIP.add(new Tuple("", " tveir", "3"));
-        BILLIONS_ZIP.add(new Tuple("", " tveir", "4"));
-        BILLIONS_ZIP.add(new Tuple("", " tveir", "5"));
-        BILLIONS_ZIP.add(new Tuple("", " tveir", "6"));
-        BILLIONS_ZIP.add(new Tuple("", " tveir", "7"));
-        BILLIONS_ZIP.add(new Tuple("", " tveir", "8"));
-        BILLIONS_ZIP.add(new Tuple("", " tveir", "9"));
+        BILLIONS_ZIP.add(new Tuple("", " þrír", "3"));
+        BILLIONS_ZIP.add(new Tuple("", " fjórir", "4"));
+        BILLIONS_ZIP.add(new Tuple("", " fimm", "5"));
+        BILLIONS_ZIP.add(new Tuple("", " sex", "6"));
+        BILLIONS_ZIP.add(new Tuple("", " sjö", "7"));
+        BILLIONS_ZIP.add(new Tuple("", " átta", "8"));
+        BILLIONS_ZIP.add(new Tuple("", " níu", "9"));
     }
     public static final List<Tuple> MB_ORDINAL_ZIP = new ArrayList<>();
     static {
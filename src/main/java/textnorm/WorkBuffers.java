@@ -0,0 +1,77 @@
+package textnorm;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Working buffers of the post-normalization, one set per thread, reused for every sentence and token the thread
+ * normalizes: string builders for the sentence and for single tokens, the slots of the number columns (see
+ * TTSNormalizer.fillDict()), and one Matcher per pattern, reset for each input instead of being created per match.
+ *
+ * A buffer must only be used by one method at a time: take it, fill it, convert it to the result, before calling
+ * a method that may use the same buffer.
+ */
+final class WorkBuffers {
+
+    // a builder grown beyond this capacity by an unusually long sentence is not kept for the thread
+    private static final int MAX_KEPT_CAPACITY = 1 << 16;
+    // the columns of the widest number dictionary
+    static final int MAX_COLUMNS = NumberHelper.DECIMAL_COLS_BIG.length;
+    private static final ThreadLocal<WorkBuffers> BUFFERS = ThreadLocal.withInitial(WorkBuffers::new);
+
+    private StringBuilder mSentence = new StringBuilder();
+    private StringBuilder mOutput = new StringBuilder();
+    private StringBuilder mToken = new StringBuilder();
+    private final String[] mSlots = new String[MAX_COLUMNS];
+    private final Map<Pattern, Matcher> mMatchers = new IdentityHashMap<>();
+
+    private WorkBuffers() {}
+
+    static WorkBuffers get() {
+        return BUFFERS.get();
+    }
+
+    // the sentence being built
+    StringBuilder sentence() {
+        mSentence = cleared(mSentence);
+        return mSentence;
+    }
+
+    // the final form of the sentence
+    StringBuilder output() {
+        mOutput = cleared(mOutput);
+        return mOutput;
+    }
+
+    // a single token
+    StringBuilder token() {
+        mToken = cleared(mToken);
+        return mToken;
+    }
+
+    // the first 'columns' slots, set to ""
+    String[] slots(int columns) {
+        for (int i = 0; i < columns; i++)
+            mSlots[i] = "";
+        return mSlots;
+    }
+
+    Matcher matcher(Pattern pattern, CharSequence input) {
+        Matcher matcher = mMatchers.get(pattern);
+        if (matcher == null) {
+            matcher = pattern.matcher(input);
+            mMatchers.put(pattern, matcher);
+            return matcher;
+        }
+        return matcher.reset(input);
+    }
+
+    private static StringBuilder cleared(StringBuilder sb) {
+        if (sb.capacity() > MAX_KEPT_CAPACITY)
+            return new StringBuilder();
+        sb.setLength(0);
+        return sb;
+    }
+}
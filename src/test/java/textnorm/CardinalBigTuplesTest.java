@@ -0,0 +1,57 @@
+package textnorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the expansion of big cardinals, ordinals and decimals, directly and through TTSNormalizer.postNormalize().
+ */
+public class CardinalBigTuplesTest {
+
+    @Test
+    public void cardinalTest() {
+        assertEquals("ein milljón", CardinalBigTuples.expandCardinal("1.000.000", "pl"));
+        assertEquals("tvær milljónir og tvö", CardinalBigTuples.expandCardinal("2.000.002", "pl"));
+        assertEquals("tvær milljónir þrjátíu og fjögur þúsund fjögur hundruð þrjátíu og fimm",
+                CardinalBigTuples.expandCardinal("2.034.435", "pl"));
+        assertEquals("tvær milljónir og eitt hundrað þúsund", CardinalBigTuples.expandCardinal("2.100.000", "pl"));
+        assertEquals("tólf milljónir þrjú hundruð fjörutíu og fimm þúsund sex hundruð sjötíu og átta",
+                CardinalBigTuples.expandCardinal("12.345.678", "pl"));
+        assertEquals("tuttugu og ein milljón", CardinalBigTuples.expandCardinal("21.000.000", "pl"));
+        assertEquals("hundrað milljónir", CardinalBigTuples.expandCardinal("100.000.000", "pl"));
+        assertEquals("tveir milljarðar og þrír", CardinalBigTuples.expandCardinal("2.000.000.003", "nkfn"));
+        assertEquals("einn milljarður og ein milljón", CardinalBigTuples.expandCardinal("1.001.000.000", "pl"));
+        assertEquals("níu hundruð níutíu og níu milljarðar níu hundruð níutíu og níu milljónir "
+                + "níu hundruð níutíu og níu þúsund níu hundruð níutíu og níu",
+                CardinalBigTuples.expandCardinal("999.999.999.999", "pl"));
+        // the lowest group is inflected according to the next tag
+        assertEquals("ein milljón og tvær", CardinalBigTuples.expandCardinal("1.000.002", "nvfn"));
+    }
+
+    @Test
+    public void ordinalTest() {
+        assertEquals("tólf þúsund þrjú hundruð fertugasti og fimmti", CardinalBigTuples.expandOrdinal("12.345.", "nken"));
+        assertEquals("tvímilljónasta", CardinalBigTuples.expandOrdinal("2.000.000.", "pl"));
+        assertEquals("milljarðasti", CardinalBigTuples.expandOrdinal("1.000.000.000.", "nken"));
+        assertEquals("tvímilljónasti og fimmti", CardinalBigTuples.expandOrdinal("2.000.005.", "nken"));
+        assertEquals("ein milljón eitt hundraðasti og tíundi", CardinalBigTuples.expandOrdinal("1.000.110.", "nken"));
+        assertEquals("þrjátíu og fjögur þúsundasta", CardinalBigTuples.expandOrdinal("34.000.", "pl"));
+    }
+
+    @Test
+    public void decimalTest() {
+        assertEquals("tólf milljónir þrjú hundruð fjörutíu og fimm þúsund sex hundruð sjötíu og átta komma núll fimm",
+                CardinalBigTuples.expandDecimal("12.345.678,05", "pl"));
+        assertEquals("tólf þúsund og einn komma tvö", CardinalBigTuples.expandDecimal("12.001,2", "pl"));
+    }
+
+    @Test
+    public void postNormalizeTest() {
+        TTSNormalizer normalizer = new TTSNormalizer();
+        String[] tokens = {"Það", "kostar", "12.345.678", "krónur", "."};
+        String[] tags = {"fphen", "sfg3en", "ta", "nvfn", "pl"};
+        assertEquals("Það kostar tólf milljónir þrjú hundruð fjörutíu og fimm þúsund sex hundruð sjötíu og átta krónur .",
+                normalizer.postNormalize(tokens, tags));
+    }
+}
@@ -0,0 +1,56 @@
+package textnorm;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the CharTables of NumberHelper replace like the replaceAll() loops over the maps they are built from.
+ */
+public class CharTableTest {
+
+    private static final String ALPHABET = "0123456789-+:/._@=?!&%#aábð ";
+
+    // one replaceAll() per key, in map order
+    private static String reference(String text, Map<String, String> map) {
+        for (String key : map.keySet())
+            text = text.replaceAll(key, map.get(key));
+        return text;
+    }
+
+    @Test
+    public void translateTest() {
+        assertEquals(" einn tveir tvípunktur núll", NumberHelper.DIGIT_TABLE.translate("12:0"));
+        assertEquals("", NumberHelper.DIGIT_TABLE.translate("-"));
+        assertEquals("m b l punktur i s", NumberHelper.WLINK_TABLE.translate("m b l . i s"));
+        assertEquals("þriðja", NumberHelper.DIGITS_ORD_TABLE.get('3'));
+        assertNull(NumberHelper.DIGITS_ORD_TABLE.get('0'));
+        String unchanged = "orð";
+        assertSame(unchanged, NumberHelper.WLINK_TABLE.translate(unchanged));
+    }
+
+    @Test
+    public void randomTranslateTest() {
+        Random random = new Random(40);
+        for (int n = 0; n < 20000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int i = 0; i < length; i++)
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            String text = sb.toString();
+            assertEquals(text, reference(text, NumberHelper.DIGIT_NUMBERS), NumberHelper.DIGIT_TABLE.translate(text));
+            assertEquals(text, reference(text, NumberHelper.WLINK_NUMBERS), NumberHelper.WLINK_TABLE.translate(text));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidKeyTest() {
+        Map<String, String> map = new HashMap<>();
+        map.put("\\d", "digit");
+        new CharTable(map);
+    }
+}
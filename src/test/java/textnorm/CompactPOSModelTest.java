@@ -0,0 +1,168 @@
+package textnorm;
+
+import opennlp.tools.dictionary.Dictionary;
+import opennlp.tools.ml.model.MaxentModel;
+import opennlp.tools.postag.*;
+import opennlp.tools.util.ObjectStreamUtils;
+import opennlp.tools.util.TrainingParameters;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a CompactPOSModel tags like the POSModel it was converted from, on a small model trained here and, if
+ * present, on the POS model of the normalizer, with a comparison of load time, heap footprint and tagging speed.
+ */
+public class CompactPOSModelTest {
+
+    private static final String[][] WORDS = {
+            {"Hann_fp1ken", "Hún_fp3ven", "Það_fp3hen", "Barnið_nheng"},
+            {"er_sfg3en", "var_sfg3eþ", "verður_sfg3en"},
+            {"5_ta", "25_ta", "3_ta", "100_ta"},
+            {"ára_nhfe", "daga_nkfo", "kílómetra_nkfe", "krónur_nvfo"},
+            {"gamall_lkensf", "í_af", "á_af", "._."}
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> trainingSentences(int count) {
+        Random random = new Random(37);
+        List<String> sentences = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            StringBuilder sb = new StringBuilder();
+            for (String[] words : WORDS)
+                sb.append(words[random.nextInt(words.length)]).append(' ');
+            sentences.add(sb.append("._.").toString());
+        }
+        return sentences;
+    }
+
+    private static POSModel train() throws Exception {
+        List<String> sentences = trainingSentences(200);
+        POSDictionary tagDictionary = new POSDictionary(true);
+        tagDictionary.put("í", "af");
+        tagDictionary.put("á", "af");
+        Dictionary ngramDictionary = POSTaggerME.buildNGramDictionary(
+                new WordTagSampleStream(ObjectStreamUtils.createObjectStream(sentences)), 1);
+        TrainingParameters params = TrainingParameters.defaultParams();
+        params.put(TrainingParameters.CUTOFF_PARAM, "1");
+        params.put(TrainingParameters.ITERATIONS_PARAM, "50");
+        return POSTaggerME.train("is", new WordTagSampleStream(ObjectStreamUtils.createObjectStream(sentences)),
+                params, new POSTaggerFactory(ngramDictionary, tagDictionary));
+    }
+
+    private static List<String[]> testSentences(int count) {
+        List<String[]> sentences = new ArrayList<>();
+        for (String sentence : trainingSentences(count)) {
+            String[] tokens = sentence.split(" ");
+            for (int i = 0; i < tokens.length; i++)
+                tokens[i] = tokens[i].substring(0, tokens[i].lastIndexOf('_'));
+            sentences.add(tokens);
+        }
+        // unknown words
+        sentences.add(new String[]{"Kötturinn", "er", "7", "vikna", "."});
+        return sentences;
+    }
+
+    @Test
+    public void convertTest() throws Exception {
+        POSModel posModel = train();
+        Path file = folder.newFile("pos-compact.bin").toPath();
+        CompactPOSModel.convert(posModel, file);
+        CompactPOSModel loaded = CompactPOSModel.load(file);
+        CompactPOSModel mapped = CompactPOSModel.map(file);
+        MaxentModel maxent = posModel.getArtifact(POSModel.POS_MODEL_ENTRY_NAME);
+        assertEquals(maxent.getNumOutcomes(), loaded.getNumOutcomes());
+        assertArrayEquals(new String[]{"af"}, loaded.getTagDictionary().getTags("í"));
+        assertEquals(posModel.getFactory().getDictionary().size(), mapped.getNgramDictionary().size());
+
+        POSTaggerME reference = new POSTaggerME(posModel);
+        CompactPOSTagger loadedTagger = new CompactPOSTagger(loaded);
+        CompactPOSTagger mappedTagger = new CompactPOSTagger(mapped);
+        String[] context = {"w=er", "p=_", "unknown feature"};
+        double[] expected = maxent.eval(context);
+        assertArrayEquals(expected, loaded.eval(context), 1e-5);
+        assertArrayEquals(expected, mapped.eval(context), 1e-5);
+        for (String[] tokens : testSentences(50)) {
+            assertArrayEquals(reference.tag(tokens), loadedTagger.tag(tokens));
+            assertArrayEquals(reference.tag(tokens), mappedTagger.tag(tokens));
+        }
+    }
+
+    // compares the POS model of the normalizer with its compact version
+    @Test
+    public void benchmarkTest() throws Exception {
+        Assume.assumeNotNull(getClass().getClassLoader().getResource("is-pos-maxent.bin"));
+        Path file = folder.newFile("is-pos-compact.bin").toPath();
+        long usedBefore = usedHeap();
+        long start = System.nanoTime();
+        POSModel posModel;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("is-pos-maxent.bin")) {
+            posModel = new POSModel(is);
+        }
+        long posModelLoad = System.nanoTime() - start;
+        long posModelHeap = usedHeap() - usedBefore;
+        CompactPOSModel.convert(posModel, file);
+
+        usedBefore = usedHeap();
+        start = System.nanoTime();
+        CompactPOSModel loaded = CompactPOSModel.load(file);
+        long loadedLoad = System.nanoTime() - start;
+        long loadedHeap = usedHeap() - usedBefore;
+        start = System.nanoTime();
+        CompactPOSModel mapped = CompactPOSModel.map(file);
+        long mappedLoad = System.nanoTime() - start;
+
+        List<String[]> sentences = new ArrayList<>();
+        for (String sentence : new String[]{"Það kostar 500 krónur á dag .", "Hann er 25 ára gamall .",
+                "Þar voru 3 menn og 2 konur .", "Hún hljóp 10 kílómetra á 45 mínútum .",
+                "Við keyptum 4 bíla fyrir 2 árum .", "Fundurinn hefst kl. 14 í dag ."})
+            sentences.add(sentence.split(" "));
+        POSTaggerME reference = new POSTaggerME(posModel);
+        CompactPOSTagger compact = new CompactPOSTagger(mapped);
+        int agreeing = 0;
+        for (String[] tokens : sentences) {
+            if (Arrays.equals(reference.tag(tokens), compact.tag(tokens)))
+                agreeing++;
+        }
+        System.out.println("POSModel:         load " + posModelLoad / 1000000 + " ms, heap "
+                + posModelHeap / 1024 + " KB, " + tagsPerSecond(reference::tag, sentences) + " tags/s");
+        System.out.println("CompactPOSModel:  load " + loadedLoad / 1000000 + " ms, heap "
+                + loadedHeap / 1024 + " KB, " + tagsPerSecond(new CompactPOSTagger(loaded)::tag, sentences) + " tags/s");
+        System.out.println("mapped:           load " + mappedLoad / 1000000 + " ms, file "
+                + file.toFile().length() / 1024 + " KB, " + tagsPerSecond(compact::tag, sentences) + " tags/s");
+        assertEquals(sentences.size(), agreeing);
+    }
+
+    private interface Tagger {
+        String[] tag(String[] tokens);
+    }
+
+    private static long tagsPerSecond(Tagger tagger, List<String[]> sentences) {
+        long tags = 0;
+        long start = System.nanoTime();
+        for (int n = 0; n < 500; n++) {
+            for (String[] tokens : sentences)
+                tags += tagger.tag(tokens).length;
+        }
+        return tags * 1000000000L / Math.max(1, System.nanoTime() - start);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
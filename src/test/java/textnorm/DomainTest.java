@@ -0,0 +1,67 @@
+package textnorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the domain detection and the domain specific rules of TTSNormalizer.
+ */
+public class DomainTest {
+
+    @Test
+    public void detectTest() {
+        assertEquals(Domain.SPORT, Domain.detect("Liðið vann leikinn 2-1 í úrvalsdeildinni."));
+        assertEquals(Domain.WEATHER, Domain.detect("Norðan átt og rigning, hiti 5 stig."));
+        assertEquals(Domain.FINANCE, Domain.detect("Gengi hlutabréfa hækkaði og vísitalan líka."));
+        assertEquals(Domain.GENERAL, Domain.detect("Þetta er góður dagur."));
+        // one keyword is not enough
+        assertEquals(Domain.GENERAL, Domain.detect("Hann kom á mótið í gær."));
+        assertEquals(Domain.GENERAL, Domain.detect(""));
+    }
+
+    @Test
+    public void generalProseTest() {
+        // words sharing the beginning of a keyword, but not the meaning
+        assertEquals(Domain.GENERAL, Domain.detect("Hann ók 10 km um Evrópu og evrópska vegi ."));
+        assertEquals(Domain.GENERAL, Domain.detect("Hann tapaði 5 km hlaupinu í Evrópu ."));
+        assertEquals(Domain.GENERAL, Domain.detect("Hún markaði tímamót í sögu leikhússins og leikritið var vinsælt ."));
+        assertEquals(Domain.GENERAL, Domain.detect("Þau stigu á svið og léku á mótinu í gær ."));
+        assertEquals(Domain.GENERAL, Domain.detect("Vinir hans hittust í Vindheimum og drukku kaldan bjór ."));
+        assertEquals(Domain.GENERAL, Domain.detect("Deildin gekk vel og gengið var heim að loknum fundi ."));
+        // the units of a misdetected text would not be expanded
+        NormalizationManager manager = new NormalizationManager();
+        String text = "Hann ók 10 km um Evrópu og evrópska vegi.";
+        assertEquals(manager.process(text, NormalizationProfile.FAST, Domain.GENERAL),
+                manager.process(text, NormalizationProfile.FAST, null));
+        assertTrue(manager.process(text, NormalizationProfile.FAST, null).contains("kílómetr"));
+    }
+
+    @Test
+    public void rulesTest() {
+        TTSNormalizer normalizer = new TTSNormalizer();
+        RuleSet rules = ResourceRegistry.get().getRuleSet();
+        String text = "Íbúðin er 5 ha og 10 kWh og 100 kr.";
+        assertEquals(normalizer.preNormalize(text), normalizer.preNormalize(text, rules, NormalizationProfile.ACCURATE,
+                Domain.GENERAL));
+        assertEquals("Íbúðin er 5 ha og 10 kílóvattstundir og 100 krónur",
+                normalizer.preNormalize(text, rules, NormalizationProfile.ACCURATE, Domain.SPORT).trim());
+        assertEquals("Íbúðin er 5 ha og 10 kWh og 100 kr.",
+                normalizer.preNormalize(text, rules, NormalizationProfile.ACCURATE, Domain.WEATHER).trim());
+
+        // sport results: the hyphen is silent, a fraction is a result also before a noun
+        NormalizationManager manager = new NormalizationManager();
+        assertEquals("Leikurinn fór tvö til eitt í gær .",
+                manager.process("Leikurinn fór 2-1 í gær.", NormalizationProfile.FAST, Domain.GENERAL));
+        assertEquals("Leikurinn fór tvö eitt í gær .",
+                manager.process("Leikurinn fór 2-1 í gær.", NormalizationProfile.FAST, Domain.SPORT));
+        assertEquals("Liðið vann leikinn tvö eitt í úrvalsdeildinni .",
+                manager.process("Liðið vann leikinn 2-1 í úrvalsdeildinni.", NormalizationProfile.FAST, null));
+        String[] tokens = {"Staðan", "var", "3/2", "mörk", "."};
+        String[] tags = {"nven", "sfg3eþ", "ta", "nhfn", "."};
+        assertEquals("Staðan var þrír aðrir mörk .",
+                normalizer.postNormalize(tokens, tags, rules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+        assertEquals("Staðan var þrjú <sil> tvö mörk .",
+                normalizer.postNormalize(tokens, tags, rules, NormalizationProfile.ACCURATE, Domain.SPORT));
+    }
+}
@@ -0,0 +1,43 @@
+package textnorm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FractionTuplesTest {
+
+    @Test
+    public void fractionTest() {
+        assertEquals("tveir þriðju", FractionTuples.expand("2/3", "nkfn"));
+        assertEquals("tvo þriðju", FractionTuples.expand("2/3", "nkeo"));
+        assertEquals("tveimur þriðju", FractionTuples.expand("2/3", "nveþ"));
+        assertEquals("þriggja fjórðu", FractionTuples.expand("3/4", "nkfe"));
+        assertEquals("einn fjórði", FractionTuples.expand("¼", "pl"));
+        assertEquals("einum sextánda", FractionTuples.expand("1/16", "nheþ"));
+        assertEquals("sjö tuttugustu og fimmtu", FractionTuples.expand("7/25", "nkfn"));
+        assertEquals("hálfur", FractionTuples.expand("½", "nken"));
+        assertEquals("hálf", FractionTuples.expand("1/2", "nven"));
+        assertEquals("þrír og hálfur", FractionTuples.expand("3½", "nken"));
+        // no noun following: ambiguous with sports results
+        assertNull(FractionTuples.expand("2/1", "aa"));
+        // denominators ending in 1 are compounded, "fyrstu" is not in the denominator tables
+        assertEquals("einn tuttugasti og fyrsti", FractionTuples.expand("1/21", "nkfn"));
+        assertEquals("einum þrítugasta og fyrsta", FractionTuples.expand("1/31", "nkeþ"));
+        assertEquals("fimm nítugustu og fyrstu", FractionTuples.expand("5/91", "nkfn"));
+    }
+
+    @Test
+    public void postNormalizeTest() {
+        TTSNormalizer normalizer = new TTSNormalizer();
+        String[] tokens = {"Settu", "2/3", "bolla", "af", "hveiti", "og", "½", "bolla", "af", "sykri", "."};
+        String[] tags = {"sbg2en", "ta", "nkeo", "af", "nheþ", "c", "ta", "nkeo", "af", "nkeþ", "pl"};
+        assertEquals("Settu tvo þriðju bolla af hveiti og hálfan bolla af sykri .", normalizer.postNormalize(tokens, tags));
+        tokens = new String[]{"Settu", "1/21", "bolla", "."};
+        tags = new String[]{"sbg2en", "ta", "nkeo", "pl"};
+        assertEquals("Settu einn tuttugasta og fyrsta bolla .", normalizer.postNormalize(tokens, tags));
+        // a result
+        tokens = new String[]{"Staðan", "var", "2/3", "."};
+        tags = new String[]{"nven-g", "sfg3eþ", "ta", "pl"};
+        assertEquals("Staðan var tvö <sil> þrjú .", normalizer.postNormalize(tokens, tags));
+    }
+}
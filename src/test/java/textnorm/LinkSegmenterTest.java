@@ -0,0 +1,62 @@
+package textnorm;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the word break of LinkSegmenter on a small vocabulary and on the pronunciation dictionary, and links in
+ * postNormalize().
+ */
+public class LinkSegmenterTest {
+
+    private static final LinkSegmenter SEGMENTER = new LinkSegmenter(
+            Arrays.asList("vísir", "rúv", "fréttir", "frétta", "blaðið", "and", "jón"), Arrays.asList("ehf.", "kl."));
+
+    @Test
+    public void segmentTest() {
+        assertEquals("vísir", SEGMENTER.segment("visir"));
+        assertEquals("rúv", SEGMENTER.segment("RUV"));
+        assertEquals("m b l fréttir", SEGMENTER.segment("mblfrettir"));
+        assertEquals("frétta blaðið", SEGMENTER.segment("frettabladid"));
+        // abbreviations are units, but spelled
+        assertEquals("e h f 2", SEGMENTER.segment("ehf2"));
+        // short words only between non-letters
+        assertEquals("h a n d l e", SEGMENTER.segment("handle"));
+        assertEquals("jón @ m b l", SEGMENTER.segment("jon@mbl"));
+        assertEquals("# rúv", SEGMENTER.segment("#ruv"));
+        assertEquals("", SEGMENTER.segment(""));
+    }
+
+    @Test
+    public void memoizedTest() {
+        String segmented = SEGMENTER.segment("visirfrettir");
+        assertSame(segmented, SEGMENTER.segment("visirfrettir"));
+    }
+
+    @Test
+    public void linearTimeTest() {
+        LinkSegmenter segmenter = new LinkSegmenter(Collections.singletonList("aaaa"), Collections.emptyList());
+        char[] chars = new char[200000];
+        Arrays.fill(chars, 'a');
+        long start = System.nanoTime();
+        String segmented = segmenter.segment(new String(chars));
+        long millis = (System.nanoTime() - start) / 1000000;
+        assertEquals(50000 * 5 - 1, segmented.length());
+        assertTrue(millis + " ms", millis < 2000);
+    }
+
+    @Test
+    public void postNormalizeTest() {
+        LinkSegmenter segmenter = ResourceRegistry.get().getLinkSegmenter();
+        assertEquals("keflavík", segmenter.segment("keflavik"));
+        String[] tokens = "Sjá visir.is og ruv.is/frettir .".split(" ");
+        String[] tags = new String[tokens.length];
+        Arrays.fill(tags, "c");
+        assertEquals("Sjá vísir punktur is og rúv punktur is skástrik fréttir .",
+                new TTSNormalizer().postNormalize(tokens, tags));
+    }
+}
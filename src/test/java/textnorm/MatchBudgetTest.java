@@ -0,0 +1,62 @@
+package textnorm;
+
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the regex time budget on adversarial input
+ */
+public class MatchBudgetTest {
+
+    // backtracks quadratically in the external link pattern, since the dot is part of the character classes
+    private static String adversarialLink(int length) {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length)
+            sb.append("a.");
+        return sb.append("!").toString();
+    }
+
+    @Test
+    public void linkTimeoutTest() {
+        TTSNormalizer normalizer = new TTSNormalizer();
+        normalizer.setMatchBudget(new MatchBudget(Duration.ofMillis(20), Duration.ofMillis(200)));
+        String link = adversarialLink(100000);
+        String[] tokens = {"sjá", link, "."};
+        String[] tags = {"sfg3en", "x", "pl"};
+        long start = System.nanoTime();
+        String normalized = normalizer.postNormalize(tokens, tags);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 2000);
+        assertEquals("sjá " + link + " .", normalized);
+        assertEquals(1, normalizer.getMetrics().getRuleTimeouts());
+    }
+
+    @Test
+    public void sentenceTimeoutTest() {
+        TTSNormalizer normalizer = new TTSNormalizer();
+        normalizer.setMatchBudget(new MatchBudget(Duration.ofMillis(20), Duration.ofMillis(30)));
+        String link = adversarialLink(100000);
+        // the budget is exhausted on the links, the number is read digit by digit
+        String[] tokens = {link, link, link, "12", "ár", "."};
+        String[] tags = {"x", "x", "x", "ta", "nhfo", "pl"};
+        String normalized = normalizer.postNormalize(tokens, tags);
+        assertTrue(normalized.endsWith(" einn tveir ár ."));
+        assertEquals(1, normalizer.getMetrics().getSentenceTimeouts());
+    }
+
+    @Test
+    public void defaultBudgetTest() {
+        TTSNormalizer normalizer = new TTSNormalizer();
+        String[] tokens = {"Klukkan", "er", "12:30", "og", "hann", "á", "12", "ár", "eftir", "."};
+        String[] tags = {"nveng", "sfg3en", "ta", "c", "fpken", "sfg3en", "ta", "nhfo", "aa", "pl"};
+        assertEquals("Klukkan er tólf þrjátíu og hann á tólf ár eftir .", normalizer.postNormalize(tokens, tags));
+        // a normal sentence stays well within the opt-in limits
+        normalizer.setMatchBudget(MatchBudget.GENEROUS);
+        assertEquals("Klukkan er tólf þrjátíu og hann á tólf ár eftir .", normalizer.postNormalize(tokens, tags));
+        assertEquals(0, normalizer.getMetrics().getRuleTimeouts());
+        assertEquals(0, normalizer.getMetrics().getSentenceTimeouts());
+    }
+}
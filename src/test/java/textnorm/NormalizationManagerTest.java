@@ -1,6 +1,9 @@
 package textnorm;
 
+import org.junit.Assume;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.*;
 import java.time.Duration;
@@ -14,6 +17,9 @@ import static org.junit.Assert.*;
 
 public class NormalizationManagerTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void processTest() {
         String input = "Vindmyllurnar eru hvor um sig 900 kW og samanlögð raforkuframleiðsla þeirra er áæetluð um 5,4 GWst á ári.";
@@ -32,6 +38,115 @@ public class NormalizationManagerTest {
         }
     }
 
+    @Test
+    public void untaggedTest() {
+        TTSNormalizer normalizer = new TTSNormalizer();
+        assertFalse(normalizer.needsTags("Þetta er góður dagur .".split(" ")));
+        assertFalse(normalizer.needsTags("Klukkan er 5".split(" ")));
+        assertTrue(normalizer.needsTags("Það kostar 5 krónur .".split(" ")));
+
+        // no numbers: normalized without the tagger (and without the POS model), or not at all if plain prose
+        NormalizationManager manager = new NormalizationManager();
+        assertEquals("Þetta er góður dagur . Hann vann hjá RÚV .", manager.process("Þetta er góður dagur. Hann vann hjá RÚV."));
+        assertEquals(1, manager.getMetrics().getPlainSentences());
+        assertEquals(1, manager.getMetrics().getUntaggedSentences());
+    }
+
+    @Test
+    public void streamingTest() {
+        Assume.assumeNotNull(getClass().getClassLoader().getResource("is-pos-maxent.bin"));
+        StringBuilder sb = new StringBuilder();
+        for (String sent : getTestSentences().keySet())
+            sb.append(sent).append(" ");
+        String input = sb.toString();
+        NormalizationManager manager = new NormalizationManager();
+
+        long start = System.nanoTime();
+        long[] firstSentence = {-1};
+        List<String> streamed = new ArrayList<>();
+        manager.process(input, sentence -> {
+            if (firstSentence[0] < 0)
+                firstSentence[0] = System.nanoTime() - start;
+            streamed.add(sentence);
+        });
+        long total = System.nanoTime() - start;
+        System.out.println("Time to first sentence: " + firstSentence[0] / 1000000 + " ms, total: "
+                + total / 1000000 + " ms for " + streamed.size() + " sentences");
+        assertEquals(manager.process(input), String.join(" ", streamed));
+
+        List<String> chunks = new ArrayList<>();
+        manager.process(input, 60, chunks::add);
+        assertEquals(String.join(" ", streamed), String.join(" ", chunks));
+    }
+
+    @Test
+    public void streamingLatencyTest() {
+        // no numbers: every sentence is either plain or untagged, so the metrics count the normalized sentences
+        String[] sentences = {"Þetta er fyrsta setningin.", "Hún kom heim í gær.", "Sjá nánar á visir.is.",
+                "Hann vann hjá RÚV.", "Veðrið var gott."};
+        NormalizationManager manager = new NormalizationManager();
+        NormalizationMetrics metrics = manager.getMetrics();
+        long[] normalizedAtFirst = {-1};
+        List<String> streamed = new ArrayList<>();
+        manager.process(String.join(" ", sentences), NormalizationProfile.FAST, 0, sentence -> {
+            if (streamed.isEmpty())
+                normalizedAtFirst[0] = metrics.getPlainSentences() + metrics.getUntaggedSentences();
+            streamed.add(sentence);
+        });
+        assertEquals(sentences.length, streamed.size());
+        assertEquals(sentences.length, metrics.getPlainSentences() + metrics.getUntaggedSentences());
+        // the first sentence reached the consumer before the others were normalized
+        assertEquals(1, normalizedAtFirst[0]);
+        assertEquals(manager.process(String.join(" ", sentences), NormalizationProfile.FAST),
+                String.join(" ", streamed));
+    }
+
+    @Test
+    public void budgetTest() {
+        NormalizationManager manager = new NormalizationManager();
+        String input = "Þetta er góður dagur. Hann vann hjá RÚV. Sjá nánar á visir.is";
+        NormalizationResult result = manager.process(input, Duration.ofSeconds(30));
+        assertEquals(manager.process(input), result.getText());
+        assertEquals(3, result.getSentences().size());
+        assertEquals(0, result.getDegradedCount());
+
+        // no time left: only unicode cleaning, tokenizing and digits read one by one
+        long start = System.nanoTime();
+        result = manager.process("Verðið er 1.234 kr. Klukkan er 14:30.", Duration.ZERO);
+        assertTrue(System.nanoTime() - start < 1_000_000_000L);
+        assertEquals(2, result.getDegradedCount());
+        assertTrue(result.isDegraded(0) && result.isDegraded(1));
+        assertEquals("Verðið er einn. tveir þrír fjórir kr . Klukkan er einn fjórir tvípunktur þrír núll .", result.getText());
+        assertEquals(2, manager.getMetrics().getDegradedSentences());
+    }
+
+    @Test
+    public void sentenceDeadlineTest() {
+        // one long sentence: the request deadline passes while it is normalized
+        StringBuilder sb = new StringBuilder("Tölurnar eru");
+        for (int i = 0; i < 3000; i++)
+            sb.append(" ").append(1000 + i).append(" km og ").append(i % 60).append(" kr.");
+        sb.append(" og meira.");
+        String input = sb.toString();
+        NormalizationManager manager = new NormalizationManager();
+        long start = System.nanoTime();
+        String full = manager.process(input, NormalizationProfile.FAST, Domain.GENERAL);
+        long fullNanos = System.nanoTime() - start;
+
+        // a new manager starts with a guess of 5 ms per sentence, so a budget of 6 ms starts the sentence in full
+        manager = new NormalizationManager();
+        start = System.nanoTime();
+        NormalizationResult result = manager.process(input, NormalizationProfile.FAST, Domain.GENERAL,
+                Duration.ofMillis(6));
+        long nanos = System.nanoTime() - start;
+        assertEquals(1, result.getSentences().size());
+        assertTrue(result.isDegraded(0));
+        assertEquals(1, manager.getMetrics().getDegradedSentences());
+        assertNotEquals(full, result.getText());
+        assertTrue("budget run took " + nanos / 1000000 + " ms, full run " + fullNanos / 1000000 + " ms",
+                nanos < fullNanos / 2);
+    }
+
     @Test
     public void processFileTest() {
         Instant start = Instant.now();
@@ -52,7 +167,7 @@ public class NormalizationManagerTest {
         }
 
         try {
-            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("normalized_df_original.txt")));
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(folder.newFile("normalized_df_original.txt"))));
             for (String s : normalizedSentences) {
                 writer.write(s);
                 writer.write("\n");
@@ -0,0 +1,138 @@
+package textnorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the staged execution of NormalizationPipeline normalizes like NormalizationManager.process(), with
+ * several workers per stage and with full queues.
+ */
+public class NormalizationPipelineTest {
+
+    private static final String[] TEXTS = {
+            "Hann er 5 ára. Þetta er góður dagur.",
+            "Vegalengdin er 12 km. og tekur um 2 klst. Hann vann hjá RÚV.",
+            "Verðið er 1.234 kr. Hann býr í Rvk.",
+            "Fundurinn er 3. maí kl. 14:30. Sjá nánar á visir.is",
+            "",
+            "Þetta er góður dagur."
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // tags the words after the numbers of TEXTS without the POS model
+    private NormalizationManager manager() throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList("ára\tnhfe\t100", "kílómetrar\tnkfn\t100",
+                "klukkustundir\tnvfo\t100", "krónur\tnvfo\t100", "maí\tnkeo\t100", ".\t.\t100"));
+        NormalizationManager manager = new NormalizationManager();
+        manager.setTagLexicon(TagLexicon.load(file.getPath()));
+        return manager;
+    }
+
+    @Test
+    public void processTest() throws Exception {
+        NormalizationManager manager = manager();
+        Map<NormalizationPipeline.Stage, Integer> workers = new EnumMap<>(NormalizationPipeline.Stage.class);
+        workers.put(NormalizationPipeline.Stage.PRE_NORMALIZE, 2);
+        workers.put(NormalizationPipeline.Stage.TAG, 3);
+        workers.put(NormalizationPipeline.Stage.POST_NORMALIZE, 2);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        int rounds = 20;
+        try (NormalizationPipeline pipeline = new NormalizationPipeline(manager, 4, 8, workers)) {
+            for (int n = 0; n < rounds; n++) {
+                for (String text : TEXTS)
+                    results.add(pipeline.submit(text));
+            }
+            for (int i = 0; i < results.size(); i++)
+                assertEquals(manager.process(TEXTS[i % TEXTS.length]), results.get(i).get(30, TimeUnit.SECONDS));
+            System.out.println(pipeline);
+            assertEquals(rounds * TEXTS.length, pipeline.getProcessed(NormalizationPipeline.Stage.UNICODE));
+            assertTrue(pipeline.getProcessed(NormalizationPipeline.Stage.PRE_NORMALIZE)
+                    > pipeline.getProcessed(NormalizationPipeline.Stage.TOKENIZE));
+            for (NormalizationPipeline.Stage stage : NormalizationPipeline.Stage.values())
+                assertTrue(pipeline.getMaxQueueDepth(stage) <= 4);
+        }
+    }
+
+    @Test
+    public void backpressureTest() throws Exception {
+        NormalizationManager manager = manager();
+        NormalizationPipeline pipeline = new NormalizationPipeline(manager, 1, 2, Collections.emptyMap());
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int n = 0; n < 50; n++)
+            results.add(pipeline.submit(TEXTS[n % TEXTS.length]));
+        // close() waits for the submitted texts
+        pipeline.close();
+        for (CompletableFuture<String> result : results)
+            assertTrue(result.isDone() && !result.isCompletedExceptionally());
+        for (NormalizationPipeline.Stage stage : NormalizationPipeline.Stage.values())
+            assertTrue(pipeline.getMaxQueueDepth(stage) <= 1);
+        try {
+            pipeline.submit("Þetta er góður dagur.");
+            fail("closed pipeline accepted a text");
+        } catch (IllegalStateException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void closeWhileFullTest() throws Exception {
+        CountDownLatch tagging = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        NormalizationManager manager = new NormalizationManager() {
+            @Override
+            String[] tag(String[] tokens, NormalizationProfile profile) {
+                tagging.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                return super.tag(tokens, profile);
+            }
+        };
+        NormalizationPipeline pipeline = new NormalizationPipeline(manager, 1, 1, Collections.emptyMap());
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CompletableFuture<String> first = pipeline.submit("Hann er 5 ára.", NormalizationProfile.FAST);
+            assertTrue(tagging.await(10, TimeUnit.SECONDS));
+            // the pipeline is full: a second submitter waits for a slot, close() must not wait behind it
+            Future<CompletableFuture<String>> second = executor.submit(() -> pipeline.submit("Þetta er góður dagur."));
+            Thread.sleep(100);
+            Future<?> closing = executor.submit(pipeline::close);
+            long end = System.currentTimeMillis() + 10000;
+            while (!pipeline.isClosed() && System.currentTimeMillis() < end)
+                Thread.sleep(5);
+            assertTrue(pipeline.isClosed());
+            try {
+                pipeline.submit("Þriðji texti.");
+                fail("closed pipeline accepted a text");
+            } catch (IllegalStateException expected) {
+                // expected
+            }
+            assertFalse(first.isDone());
+            release.countDown();
+            closing.get(10, TimeUnit.SECONDS);
+            assertEquals(manager.process("Hann er 5 ára.", NormalizationProfile.FAST), first.get(10, TimeUnit.SECONDS));
+            try {
+                second.get(10, TimeUnit.SECONDS);
+                fail("a text submitted to a closing pipeline was accepted");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package textnorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the parts of the pipeline the NormalizationProfiles turn off, and measures their throughput and accuracy
+ * (share of the texts normalized as by NormalizationProfile.ACCURATE, see REFERENCE and the NormalizationProfile doc).
+ */
+public class NormalizationProfileTest {
+
+    private static final String[] TEXTS = {
+            "Hann er 5 ára. Þetta er góður dagur.",
+            "Vegalengdin er 12 km. og tekur um 2 klst.",
+            "Verðið er 1.234 kr. Hann býr í Rvk.",
+            "Fundurinn er 3. maí kl. 14:30.",
+            "Hann vann hjá RÚV. Sjá nánar á visir.is",
+            "Pakkinn er 5 kg og kostar 300 kr.",
+            "Hann keypti 21 bók.",
+            "Þetta er góður dagur."
+    };
+    // the output of NormalizationProfile.ACCURATE for TEXTS: all words after numbers are in the lexicon of manager(),
+    // except "bók", which only the tagger tags (nveo)
+    private static final String[] REFERENCE = {
+            "Hann er fimm ára . Þetta er góður dagur .",
+            "Vegalengdin er tólf kílómetrar og tekur um tvær klukkustundir x.",
+            "Verðið er eitt þúsund tvö hundruð þrjátíu og fjórar krónur . Hann býr í Reykjavík .",
+            "Fundurinn er þriðja maí klukkan fjórtán þrjátíu .",
+            "Hann vann hjá RÚV . Sjá nánar á vísir punktur is .",
+            "Pakkinn er fimm kg og kostar þrjú hundruð krónur .",
+            "Hann keypti tuttugu og eina bók .",
+            "Þetta er góður dagur ."
+    };
+    // the texts of TEXTS normalized differently without the tagger
+    private static final int TAGGER_TEXTS = 1;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // tags most words after the numbers of TEXTS without the POS model
+    private NormalizationManager manager() throws Exception {
+        File file = folder.newFile();
+        Files.write(file.toPath(), Arrays.asList("ára\tnhfe\t100", "kílómetrar\tnkfn\t100",
+                "klukkustundir\tnvfo\t100", "krónur\tnvfo\t100", "maí\tnkeo\t100", "kílógrömm\tnhfn\t100",
+                "kg\tnhfn\t100", "og\tc\t100", ".\t.\t100"));
+        NormalizationManager manager = new NormalizationManager();
+        manager.setTagLexicon(TagLexicon.load(file.getPath()));
+        return manager;
+    }
+
+    @Test
+    public void profilesTest() throws Exception {
+        NormalizationManager manager = new NormalizationManager();
+        // without tagging numbers get the forms used without a following noun
+        assertEquals("Hann keypti tuttugu og eitt bók .", manager.process("Hann keypti 21 bók.", NormalizationProfile.FAST));
+        assertEquals("Vegalengdin er tólf kílómetrar . Sjá vísir punktur is .",
+                manager.process("Vegalengdin er 12 km. Sjá visir.is", NormalizationProfile.FAST));
+        assertEquals("Vegalengdin er tólf km . Sjá visir.is .",
+                manager.process("Vegalengdin er 12 km. Sjá visir.is", NormalizationProfile.PREVIEW));
+        assertEquals(0, manager.getMetrics().getTaggedSentences());
+
+        // words in the lexicon are still tagged from the lexicon
+        manager = manager();
+        assertEquals(manager.process("Hann er 5 ára."), manager.process("Hann er 5 ára.", NormalizationProfile.FAST));
+    }
+
+    @Test
+    public void benchmarkTest() throws Exception {
+        NormalizationManager manager = manager();
+        List<String> corpus = new ArrayList<>();
+        for (int i = 0; i < 30; i++)
+            corpus.addAll(Arrays.asList(TEXTS));
+        boolean tagger = getClass().getClassLoader().getResource("is-pos-maxent.bin") != null;
+
+        Map<NormalizationProfile, Long> nanos = new EnumMap<>(NormalizationProfile.class);
+        for (NormalizationProfile profile : NormalizationProfile.values()) {
+            if (profile.isTagging() && !tagger)
+                continue;
+            for (String text : TEXTS)
+                manager.process(text, profile);
+            // the fastest of a few rounds
+            long best = Long.MAX_VALUE;
+            int correct = 0;
+            for (int round = 0; round < 5; round++) {
+                correct = 0;
+                long start = System.nanoTime();
+                for (int i = 0; i < corpus.size(); i++) {
+                    if (manager.process(corpus.get(i), profile).equals(REFERENCE[i % TEXTS.length]))
+                        correct++;
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            nanos.put(profile, best);
+            System.out.printf("%-8s %8d texts/s, accuracy %.2f%n", profile, corpus.size() * 1000000000L / best,
+                    (double) correct / corpus.size());
+            if (profile == NormalizationProfile.ACCURATE)
+                assertEquals(corpus.size(), correct);
+            else if (profile == NormalizationProfile.FAST)
+                assertEquals(corpus.size() - TAGGER_TEXTS * corpus.size() / TEXTS.length, correct);
+        }
+        // without the POS model, FAST is the slowest profile measured
+        long slowest = nanos.getOrDefault(NormalizationProfile.ACCURATE, nanos.get(NormalizationProfile.FAST));
+        assertTrue("PREVIEW slower: " + nanos, nanos.get(NormalizationProfile.PREVIEW) <= slowest);
+    }
+}
@@ -0,0 +1,106 @@
+package textnorm;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that NumberClassifier classifies tokens exactly like the chain of NumberHelper patterns it replaces.
+ * The random tokens of randomTypeTest take several seconds, they are only checked with -Dtextnorm.longTests=true.
+ */
+public class NumberClassifierTest {
+
+    private static final String ALPHABET = "0123456789012345.,:/ ½¼a";
+
+    // the pattern chain of normalizeNumber(), in order
+    private static NumberToken.Type reference(String token) {
+        if (token.matches(NumberHelper.ORDINAL_THOUSAND_PTRN))
+            return NumberToken.Type.ORDINAL_THOUSAND;
+        if (token.matches(NumberHelper.CARDINAL_THOUSAND_PTRN))
+            return NumberToken.Type.CARDINAL_THOUSAND;
+        if (token.matches(NumberHelper.CARDINAL_MILLION_PTRN))
+            return NumberToken.Type.CARDINAL_MILLION;
+        if (token.matches(NumberHelper.ORDINAL_MILLION_PTRN))
+            return NumberToken.Type.ORDINAL_MILLION;
+        if (token.matches(NumberHelper.CARDINAL_BIG_PTRN))
+            return NumberToken.Type.CARDINAL_BIG;
+        if (token.matches(NumberHelper.ORDINAL_BIG_PTRN))
+            return NumberToken.Type.ORDINAL_BIG;
+        if (token.matches(NumberHelper.DECIMAL_THOUSAND_PTRN))
+            return NumberToken.Type.DECIMAL_THOUSAND;
+        if (token.matches(NumberHelper.DECIMAL_BIG_PTRN))
+            return NumberToken.Type.DECIMAL_BIG;
+        if (token.matches(NumberHelper.TIME_PTRN))
+            return NumberToken.Type.TIME;
+        if (token.matches(NumberHelper.FRACTION_PTRN))
+            return NumberToken.Type.FRACTION;
+        if (token.matches("^0\\d\\.$"))
+            return NumberToken.Type.DIGIT_ORDINAL;
+        return NumberToken.Type.OTHER;
+    }
+
+    private static void assertSameType(String token) {
+        assertEquals("'" + token + "'", reference(token), NumberClassifier.classify(token).getType());
+    }
+
+    @Test
+    public void typeTest() {
+        String[] tokens = {"1", "12", "123", "1234", "12345", "1.234", "12.345", "123.456", "1.234.567",
+                "123.456.789.012", "1.234.567.890.123", "1.", "1234.", "1.234.", "12.345.", "1.234.567.",
+                "1,5", "1.234,5", "1234,56", "12345,6", "12.345,6", "123456789012,1", "1234567890123,1",
+                "1.234.567.890,12", "01:55", "1.55", "24:00", "25:00", "9:5", "05", "0", "01.", "0.",
+                "4/8", "1/1", "2/1", "1/10", "3 1/2", "3 ½", "3½", "½", "1234½", "0½", "12/3", "1/2/3",
+                "1..2", ".1", "1.", "1,", "1,2,3", "1.23.", "1.2345", "", "a1", "1a"};
+        for (String token : tokens)
+            assertSameType(token);
+    }
+
+    @Test
+    public void randomTypeTest() {
+        Assume.assumeTrue(Boolean.getBoolean("textnorm.longTests"));
+        Random random = new Random(32);
+        for (int n = 0; n < 200000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(16);
+            for (int i = 0; i < length; i++)
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            assertSameType(sb.toString());
+        }
+        // digits separated by dots and a comma, to cover the big number types more often
+        for (int n = 0; n < 50000; n++) {
+            StringBuilder sb = new StringBuilder().append(1 + random.nextInt(9));
+            int groups = random.nextInt(5);
+            for (int g = 0; g < groups; g++) {
+                sb.append(random.nextInt(8) == 0 ? "" : ".");
+                sb.append(String.valueOf(random.nextInt(10000)).substring(random.nextInt(2)));
+            }
+            if (random.nextBoolean())
+                sb.append(random.nextBoolean() ? "." : "," + random.nextInt(100));
+            assertSameType(sb.toString());
+        }
+    }
+
+    @Test
+    public void groupsTest() {
+        NumberToken number = NumberClassifier.classify("123.456.789.012");
+        assertArrayEquals(new int[]{12, 789, 456, 123}, number.getGroups());
+        number = NumberClassifier.classify("12345678,09");
+        assertEquals(NumberToken.Type.DECIMAL_BIG, number.getType());
+        assertArrayEquals(new int[]{678, 345, 12, 0}, number.getGroups());
+        assertEquals("09", number.getDecimals());
+        number = NumberClassifier.classify("2.000.005.");
+        assertEquals(Arrays.toString(new int[]{5, 0, 2, 0}), Arrays.toString(number.getGroups()));
+        number = NumberClassifier.classify("3 7/16");
+        assertEquals(3, number.getWhole());
+        assertEquals(7, number.getNumerator());
+        assertEquals(16, number.getDenominator());
+        number = NumberClassifier.classify("¾");
+        assertEquals(0, number.getWhole());
+        assertEquals(3, number.getNumerator());
+        assertEquals(4, number.getDenominator());
+    }
+}
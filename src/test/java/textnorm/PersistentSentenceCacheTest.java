@@ -0,0 +1,154 @@
+package textnorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the PersistentSentenceCache: reopening the file, recovery after an incomplete write, compaction, and
+ * invalidation by a changed rule set.
+ */
+public class PersistentSentenceCacheTest {
+
+    private static final int CAPACITY = 1 << 16;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final RuleSet mRules = ResourceRegistry.get().getRuleSet();
+
+    private Path cacheFile() {
+        return folder.getRoot().toPath().resolve("sentences.cache");
+    }
+
+    @Test
+    public void restartTest() throws Exception {
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            cache.put("Hann er 5 ára .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "Hann er fimm ára .");
+            cache.put("Leikurinn fór 2 - 1 .", mRules, NormalizationProfile.FAST, Domain.SPORT, "Leikurinn fór tvö eitt .");
+        }
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            assertEquals(2, cache.getRecovered());
+            assertEquals(0, cache.getDiscardedBytes());
+            assertEquals("Hann er fimm ára .", cache.get("Hann er 5 ára .", mRules, NormalizationProfile.ACCURATE,
+                    Domain.GENERAL));
+            assertNull(cache.get("Hann er 5 ára .", mRules, NormalizationProfile.FAST, Domain.GENERAL));
+            assertEquals("Leikurinn fór tvö eitt .", cache.get("Leikurinn fór 2 - 1 .", mRules,
+                    NormalizationProfile.FAST, Domain.SPORT));
+            // an equal rule set of another process has the same fingerprint, a changed rule set another one
+            RuleSet equal = RuleSet.defaults(ResourceRegistry.get());
+            assertNotEquals(mRules.getVersion(), equal.getVersion());
+            assertEquals("Hann er fimm ára .", cache.get("Hann er 5 ára .", equal, NormalizationProfile.ACCURATE,
+                    Domain.GENERAL));
+            Path ruleFile = folder.newFile().toPath();
+            Files.write(ruleFile, Collections.singletonList("\\\\bxyzw\\\\b\tsérorð"), StandardCharsets.UTF_8);
+            RuleSet changed = RuleSet.load(Collections.singletonList(ruleFile));
+            assertNotEquals(mRules.getFingerprint(), changed.getFingerprint());
+            assertNull(cache.get("Hann er 5 ára .", changed, NormalizationProfile.ACCURATE, Domain.GENERAL));
+        }
+    }
+
+    @Test
+    public void emptyValueTest() throws Exception {
+        // e.g. the normalization of "!"
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            cache.put("a", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "x");
+            cache.put("b", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "");
+            cache.put("c", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "y");
+            assertEquals("", cache.get("b", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+        }
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            assertEquals(3, cache.getRecovered());
+            assertEquals(0, cache.getDiscardedBytes());
+            assertEquals("x", cache.get("a", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+            assertEquals("", cache.get("b", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+            assertEquals("y", cache.get("c", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+        }
+    }
+
+    @Test
+    public void recoveryTest() throws Exception {
+        int size;
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            for (int i = 0; i < 10; i++)
+                cache.put("Setning " + i + " .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "setning " + i);
+            size = cache.size();
+        }
+        // a record of a process that crashed while writing it: length and key, no value and CRC
+        try (FileChannel channel = FileChannel.open(cacheFile(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer log = channel.map(FileChannel.MapMode.READ_WRITE, 0, CAPACITY);
+            int position = 8;
+            while (log.getInt(position) != 0)
+                position += 4 + 8 + 16 + log.getInt(position) - 1 + 4;
+            log.putInt(position, 20);
+            log.putLong(position + 4, mRules.getFingerprint());
+        }
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            assertEquals(size, cache.getRecovered());
+            assertTrue(cache.getDiscardedBytes() > 0);
+            assertEquals("setning 9", cache.get("Setning 9 .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+            cache.put("Setning 10 .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "setning 10");
+        }
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            assertEquals(size + 1, cache.getRecovered());
+            assertEquals(0, cache.getDiscardedBytes());
+        }
+    }
+
+    @Test
+    public void compactionTest() throws Exception {
+        RuleSet other = RuleSet.load(Collections.emptyList());
+        Path ruleFile = folder.newFile().toPath();
+        Files.write(ruleFile, Collections.singletonList("\\\\bxyzw\\\\b\tsérorð"), StandardCharsets.UTF_8);
+        RuleSet changed = RuleSet.load(Collections.singletonList(ruleFile));
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            cache.put("Gömul setning .", changed, NormalizationProfile.ACCURATE, Domain.GENERAL, "gömul");
+        }
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            for (int i = 0; i < 5000; i++) {
+                String sentence = "Setning " + i % 1000 + " .";
+                cache.put(sentence, other, NormalizationProfile.ACCURATE, Domain.GENERAL, "setning " + i);
+                assertEquals("setning " + i, cache.get(sentence, other, NormalizationProfile.ACCURATE, Domain.GENERAL));
+            }
+            assertTrue(cache.getCompactions() > 0);
+            // the rule set not used since opening the file was dropped on compaction
+            assertNull(cache.get("Gömul setning .", changed, NormalizationProfile.ACCURATE, Domain.GENERAL));
+            assertEquals("setning 4999", cache.get("Setning 999 .", other, NormalizationProfile.ACCURATE, Domain.GENERAL));
+            assertFalse(Files.exists(cacheFile().resolveSibling("sentences.cache.compact")));
+            System.out.println(cache);
+        }
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            assertEquals("setning 4999", cache.get("Setning 999 .", other, NormalizationProfile.ACCURATE, Domain.GENERAL));
+        }
+    }
+
+    @Test
+    public void managerTest() throws Exception {
+        String text = "Vegalengdin er 12 km. Sjá visir.is";
+        String expected;
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            NormalizationManager manager = new NormalizationManager();
+            manager.setPersistentCache(cache);
+            expected = manager.process(text, NormalizationProfile.FAST);
+            assertEquals(2, cache.size());
+        }
+        try (PersistentSentenceCache cache = new PersistentSentenceCache(cacheFile(), CAPACITY)) {
+            NormalizationManager manager = new NormalizationManager();
+            manager.setPersistentCache(cache);
+            manager.setSentenceCache(new SentenceCache(1 << 16));
+            assertEquals(expected, manager.process(text, NormalizationProfile.FAST));
+            assertEquals(2, cache.getHits());
+            assertEquals(0, cache.getMisses());
+        }
+    }
+}
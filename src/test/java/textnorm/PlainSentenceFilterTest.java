@@ -0,0 +1,181 @@
+package textnorm;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PlainSentenceFilterTest {
+
+    private static final List<String> PROSE = Arrays.asList(
+            "Þetta er góður dagur .",
+            "Veðrið var gott og við fórum út að ganga með hundinn .",
+            "Hvað ætlar þú að gera í sumar ?",
+            "Hún las bókina sem hann gaf henni í gær .",
+            "Þau búa í litlu húsi við sjóinn og eiga tvo ketti .",
+            "Börnin léku sér úti allan daginn !",
+            "Ég veit ekki hvort hann kemur á morgun",
+            "Fjallið var hulið þoku þegar við komum upp á heiðina .",
+            "Sagan gerist á Íslandi um miðja síðustu öld .",
+            "Í fyrra fóru þau til útlanda .",
+            "Klukkan var orðin margt þegar fundinum lauk .",
+            "Hann vann hjá RÚV í mörg ár .",
+            "Við hittumst kl fimm .",
+            "Það kostaði 500 kr .",
+            "Sjá nánar á www.ruv.is .",
+            "Jón Jónsson jr var þar líka .",
+            "Þetta er t.d. gott dæmi .",
+            "Hann kom heim um þúsund sinnum .",
+            "Vegalengdin er mörg km .",
+            "Hann býr í Rvk .",
+            "aaa er ekki orð .");
+
+    @Test
+    public void plainTest() {
+        PlainSentenceFilter filter = new PlainSentenceFilter();
+        assertTrue(filter.isPlain("Þetta er góður dagur ."));
+        assertTrue(filter.isPlain("Hvað ætlar þú að gera í sumar ?"));
+        assertFalse(filter.isPlain("Hann vann hjá RÚV í mörg ár ."));
+        assertFalse(filter.isPlain("Við hittumst kl fimm ."));
+        assertFalse(filter.isPlain("Það kostaði 500 kr ."));
+        assertFalse(filter.isPlain("Jón Jónsson jr var þar líka ."));
+        assertFalse(filter.isPlain("Hann býr í Rvk ."));
+        assertFalse(filter.isPlain("aaa er ekki orð ."));
+        assertFalse(filter.isPlain("tvö  bil"));
+        assertFalse(filter.isPlain(""));
+    }
+
+    @Test
+    public void multiWordRuleTest() {
+        PlainSentenceFilter filter = new PlainSentenceFilter();
+        // ([Mm]örg )þús\.? of abbreviationDict
+        assertFalse(filter.isPlain("kellogg mörg þús ."));
+        assertFalse(filter.isPlain("Hann á mörg þús ."));
+        assertTrue(filter.isPlain("Þau eru mörg saman ."));
+    }
+
+    @Test
+    public void fullCacheTest() {
+        int cached = 20;
+        PlainSentenceFilter filter = new PlainSentenceFilter(cached);
+        // a vocabulary larger than the cache: lower case letter words without two equal first letters
+        List<String> words = new ArrayList<>();
+        for (char first = 'b'; first <= 'z' && words.size() < 3 * cached; first++) {
+            for (char second = 'a'; second <= 'e'; second++)
+                words.add("" + first + second + "lur");
+        }
+        int plain = 0;
+        for (int round = 0; round < 10; round++) {
+            for (String word : words) {
+                if (filter.isPlain("Hér er " + word + " ."))
+                    plain++;
+            }
+        }
+        // only the words that fit into the cache were ever checked, the others take the normal path
+        assertEquals(cached, filter.getCheckedWords());
+        assertTrue(plain <= 10 * cached);
+        assertTrue(filter.isPlain("Hér er " + words.get(2) + " ."));
+        assertFalse(filter.isPlain("Hér er " + words.get(words.size() - 1) + " ."));
+        assertEquals(cached, filter.getCheckedWords());
+    }
+
+    // sentences of the literal words of every dictionary rule: if the filter finds one plain, it must be unchanged
+    @Test
+    public void ruleWordsTest() {
+        List<Map<String, String>> dicts = Arrays.asList(NormalizationDictionaries.preHelpDict,
+                NormalizationDictionaries.directionDict, NormalizationDictionaries.hyphenDict,
+                NormalizationDictionaries.abbreviationDict, NormalizationDictionaries.denominatorDict,
+                NormalizationDictionaries.weightDict, NormalizationDictionaries.getDistanceDict(),
+                NormalizationDictionaries.getAreaDict(), NormalizationDictionaries.getVolumeDict(),
+                NormalizationDictionaries.getTimeDict(), NormalizationDictionaries.getCurrencyDict(),
+                NormalizationDictionaries.getElectronicDict(), NormalizationDictionaries.restDict);
+        PlainSentenceFilter filter = new PlainSentenceFilter();
+        TTSNormalizer normalizer = new TTSNormalizer();
+        Set<String> sentences = new LinkedHashSet<>();
+        for (Map<String, String> dict : dicts) {
+            for (String regex : dict.keySet()) {
+                for (String words : literalWords(regex)) {
+                    sentences.add("Orð " + words + " .");
+                    sentences.add("Orð " + words + " orð .");
+                }
+            }
+        }
+        int plain = 0;
+        for (String sentence : sentences) {
+            if (!filter.isPlain(sentence))
+                continue;
+            plain++;
+            assertEquals(sentence, normalizeWithoutTags(normalizer, sentence));
+        }
+        System.out.println(sentences.size() + " sentences of rule words, " + plain + " plain");
+    }
+
+    // the runs of lower case words in 'regex', e.g. "mörg þús" for " ([Mm]örg )þús\\.?"
+    private static List<String> literalWords(String regex) {
+        String literal = regex.replaceAll("\\[(.)(.)]", "$2")
+                .replaceAll("\\[[^\\]]*]", "|")
+                .replaceAll("\\\\.", "|")
+                .replaceAll("[()?*+]", "")
+                .replaceAll("\\{[^}]*}", "|");
+        List<String> words = new ArrayList<>();
+        for (String fragment : literal.split("[^a-záðéíóúýþæö ]")) {
+            fragment = fragment.trim().replaceAll(" +", " ");
+            if (!fragment.isEmpty())
+                words.add(fragment);
+        }
+        return words;
+    }
+
+    // plain sentences come out of the full pipeline unchanged
+    @Test
+    public void unchangedTest() {
+        PlainSentenceFilter filter = new PlainSentenceFilter();
+        TTSNormalizer normalizer = new TTSNormalizer();
+        int plain = 0;
+        for (String sentence : PROSE) {
+            if (!filter.isPlain(sentence))
+                continue;
+            plain++;
+            assertEquals(sentence, normalizeWithoutTags(normalizer, sentence));
+        }
+        assertTrue(plain > PROSE.size() / 2);
+    }
+
+    @Test
+    public void throughputTest() {
+        List<String> corpus = new ArrayList<>();
+        for (int i = 0; i < 50; i++)
+            corpus.addAll(PROSE);
+        TTSNormalizer normalizer = new TTSNormalizer();
+        PlainSentenceFilter filter = new PlainSentenceFilter();
+        // warm up, fills the word cache of the filter
+        for (String sentence : PROSE) {
+            normalizeWithoutTags(normalizer, sentence);
+            filter.isPlain(sentence);
+        }
+
+        long start = System.nanoTime();
+        List<String> full = new ArrayList<>();
+        for (String sentence : corpus)
+            full.add(normalizeWithoutTags(normalizer, sentence));
+        long fullTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<String> fast = new ArrayList<>();
+        for (String sentence : corpus)
+            fast.add(filter.isPlain(sentence) ? sentence : normalizeWithoutTags(normalizer, sentence));
+        long fastTime = System.nanoTime() - start;
+
+        System.out.println("Prose throughput: " + corpus.size() * 1000000000L / fullTime + " sentences/s, with plain "
+                + "sentence filter: " + corpus.size() * 1000000000L / fastTime + " sentences/s (without tagging)");
+        assertEquals(full, fast);
+    }
+
+    private static String normalizeWithoutTags(TTSNormalizer normalizer, String sentence) {
+        String[] tokens = normalizer.preNormalize(sentence).split(" ");
+        String[] tags = new String[tokens.length];
+        Arrays.fill(tags, "");
+        return normalizer.postNormalize(tokens, tags);
+    }
+}
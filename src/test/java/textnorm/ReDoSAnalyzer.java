@@ -0,0 +1,631 @@
+package textnorm;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Test-time tool to find regular expressions with super-linear matching behaviour (ReDoS).
+ *
+ * 1. inventory(): collects every regex built in NormalizationDictionaries, NumberHelper, NumberPatterns, TupleRules
+ *    and all *Tuples classes, in the form they are used at runtime (dictionary rules are searched with find(),
+ *    tuple patterns are wrapped in ".*" and matched with matches(), etc.)
+ * 2. analyze(): a static check that parses a regex and flags nested quantifiers, quantified alternations with
+ *    overlapping branches and adjacent quantifiers that can consume the same characters
+ * 3. fuzz(): generates worst-case inputs from the quantified parts of the regex (prefix + pump^n + non-matching
+ *    suffix) and counts the characters the regex engine reads for two input lengths. The counts are deterministic,
+ *    unlike timings: if four times the input length costs more than eight times the reads (twice, for two length
+ *    steps), the regex is super-linear.
+ */
+public class ReDoSAnalyzer {
+
+    public enum Mode {FIND, MATCHES}
+
+    public static class Entry {
+        public final String source;
+        public final String regex;
+        public final Mode mode;
+
+        public Entry(String source, String regex, Mode mode) {
+            this.source = source;
+            this.regex = regex;
+            this.mode = mode;
+        }
+    }
+
+    public static class FuzzResult {
+        public final String input;
+        public final long shortReads;
+        public final long longReads;
+        public final long nanos;
+
+        FuzzResult(String input, long shortReads, long longReads, long nanos) {
+            this.input = input;
+            this.shortReads = shortReads;
+            this.longReads = longReads;
+            this.nanos = nanos;
+        }
+
+        public double growth() {
+            return (double) longReads / Math.max(1, shortReads);
+        }
+    }
+
+    // length steps for the fuzz inputs, each step is four times the length of the previous
+    private static final int[] LENGTHS = {128, 512, 2048};
+    private static final double SUPER_LINEAR_GROWTH = 8.0;
+    private static final long MAX_READS = 5_000_000L;
+    private static final String[] SUFFIXES = {"", "!"};
+    private static final String[] GENERIC_PUMPS = {"1", "a", "á", " ", "1.", "a.", "1 ", "a ", "1,"};
+
+    // the characters we consider when computing character sets of regex atoms
+    private static final String ALPHABET;
+    static {
+        StringBuilder sb = new StringBuilder();
+        for (char c = 32; c < 127; c++)
+            sb.append(c);
+        sb.append("áéíóúýðþæöÁÉÍÓÚÝÐÞÆÖ½⅓⅔¼¾°²³µ£¥€\u0001\t");
+        ALPHABET = sb.toString();
+    }
+
+    private ReDoSAnalyzer() {}
+
+    // INVENTORY
+
+    /**
+     * Collects all regexes of the normalization classes, deduplicated by regex and mode.
+     */
+    public static List<Entry> inventory() throws Exception {
+        Map<String, Entry> entries = new LinkedHashMap<>();
+        for (Class<?> c : new Class<?>[]{NormalizationDictionaries.class, NumberHelper.class, NumberPatterns.class, TupleRules.class})
+            collectFields(c, entries);
+        for (Class<?> c : tupleClasses()) {
+            Method getTuples;
+            try {
+                getTuples = c.getMethod("getTuples");
+            } catch (NoSuchMethodException e) {
+                continue;
+            }
+            for (Object o : (List<?>) getTuples.invoke(null)) {
+                OrdinalTuple tuple = (OrdinalTuple) o;
+                // as in TTSNormalizer.fillDict()
+                add(entries, c.getSimpleName(), ".*" + tuple.getNumberPattern() + ".*", Mode.MATCHES);
+                add(entries, c.getSimpleName(), ".*" + tuple.getRule(), Mode.MATCHES);
+            }
+        }
+        return new ArrayList<>(entries.values());
+    }
+
+    private static void collectFields(Class<?> c, Map<String, Entry> entries) throws Exception {
+        // the lazily initialized dictionaries
+        for (Method m : c.getDeclaredMethods()) {
+            if (Modifier.isStatic(m.getModifiers()) && m.getParameterCount() == 0 && Map.class.isAssignableFrom(m.getReturnType())) {
+                m.setAccessible(true);
+                m.invoke(null);
+            }
+        }
+        for (Field f : c.getDeclaredFields()) {
+            if (!Modifier.isStatic(f.getModifiers()))
+                continue;
+            f.setAccessible(true);
+            Object value = f.get(null);
+            String source = c.getSimpleName() + "." + f.getName();
+            if (value instanceof String) {
+                add(entries, source, (String) value, Mode.MATCHES);
+            }
+            else if (value instanceof Map) {
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) value).entrySet()) {
+                    // keys are rules applied with find(), values are replacements or (for the pattern maps) regexes
+                    add(entries, source, e.getKey().toString(), Mode.FIND);
+                    add(entries, source, e.getValue().toString(), Mode.FIND);
+                }
+            }
+            else if (value instanceof List) {
+                for (Object o : (List<?>) value) {
+                    if (o instanceof Tuple && !((Tuple) o).getNumberPattern().isEmpty())
+                        add(entries, source, ((Tuple) o).getNumberPattern(), Mode.MATCHES);
+                }
+            }
+        }
+    }
+
+    private static void add(Map<String, Entry> entries, String source, String regex, Mode mode) {
+        try {
+            Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            // regex fragments, only used as parts of other regexes
+            return;
+        }
+        entries.putIfAbsent(mode + "\t" + regex, new Entry(source, regex, mode));
+    }
+
+    // all *Tuples classes next to NormalizationDictionaries on the classpath
+    private static List<Class<?>> tupleClasses() throws Exception {
+        List<Class<?>> classes = new ArrayList<>();
+        File dir = new File(NormalizationDictionaries.class.getResource("NormalizationDictionaries.class").toURI()).getParentFile();
+        String[] names = dir.list((d, name) -> name.endsWith("Tuples.class"));
+        Arrays.sort(names);
+        for (String name : names)
+            classes.add(Class.forName("textnorm." + name.substring(0, name.length() - ".class".length())));
+        return classes;
+    }
+
+    // STATIC ANALYSIS
+
+    private static final int INFINITE = Integer.MAX_VALUE;
+
+    // a minimal regex syntax tree, enough to reason about quantifiers
+    static abstract class Node {
+        abstract boolean nullable();
+        // the characters this node can consume
+        abstract BitSet chars();
+        // the characters this node can start with
+        abstract BitSet first();
+        // a short string matched by this node
+        abstract String witness();
+    }
+
+    static class CharNode extends Node {
+        final BitSet set;
+        CharNode(BitSet set) { this.set = set; }
+        boolean nullable() { return false; }
+        BitSet chars() { return set; }
+        BitSet first() { return set; }
+        String witness() { return representative(set); }
+    }
+
+    static class EmptyNode extends Node {
+        boolean nullable() { return true; }
+        BitSet chars() { return new BitSet(); }
+        BitSet first() { return new BitSet(); }
+        String witness() { return ""; }
+    }
+
+    static class SeqNode extends Node {
+        final List<Node> children = new ArrayList<>();
+        boolean nullable() { return children.stream().allMatch(Node::nullable); }
+        BitSet chars() { BitSet b = new BitSet(); children.forEach(c -> b.or(c.chars())); return b; }
+        BitSet first() {
+            BitSet b = new BitSet();
+            for (Node c : children) {
+                b.or(c.first());
+                if (!c.nullable()) break;
+            }
+            return b;
+        }
+        String witness() { StringBuilder sb = new StringBuilder(); children.forEach(c -> sb.append(c.witness())); return sb.toString(); }
+    }
+
+    static class AltNode extends Node {
+        final List<Node> branches = new ArrayList<>();
+        boolean nullable() { return branches.stream().anyMatch(Node::nullable); }
+        BitSet chars() { BitSet b = new BitSet(); branches.forEach(c -> b.or(c.chars())); return b; }
+        BitSet first() { BitSet b = new BitSet(); branches.forEach(c -> b.or(c.first())); return b; }
+        String witness() { return branches.get(0).witness(); }
+    }
+
+    static class RepeatNode extends Node {
+        final Node body;
+        final int min;
+        final int max;
+        RepeatNode(Node body, int min, int max) { this.body = body; this.min = min; this.max = max; }
+        boolean nullable() { return min == 0 || body.nullable(); }
+        BitSet chars() { return body.chars(); }
+        BitSet first() { return body.first(); }
+        String witness() {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < min; i++) sb.append(body.witness());
+            return sb.toString();
+        }
+        boolean isVariable() { return max > 1 && max > min; }
+    }
+
+    // zero-width: anchors, boundaries, lookarounds
+    static class ZeroWidthNode extends EmptyNode {}
+
+    // character sets of atoms, by flags and atom
+    private static final Map<String, BitSet> CHAR_SETS = new HashMap<>();
+
+    static class Parser {
+        private final String regex;
+        private int pos = 0;
+        private int flags = 0;
+
+        Parser(String regex) { this.regex = regex; }
+
+        Node parse() {
+            Node node = alternation();
+            if (pos < regex.length())
+                throw new IllegalArgumentException("unexpected ')' at " + pos);
+            return node;
+        }
+
+        private Node alternation() {
+            AltNode alt = new AltNode();
+            alt.branches.add(sequence());
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                alt.branches.add(sequence());
+            }
+            return alt.branches.size() == 1 ? alt.branches.get(0) : alt;
+        }
+
+        private Node sequence() {
+            SeqNode seq = new SeqNode();
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                Node atom = atom();
+                seq.children.add(quantified(atom));
+            }
+            return seq;
+        }
+
+        private Node quantified(Node atom) {
+            while (pos < regex.length()) {
+                char c = regex.charAt(pos);
+                int min, max;
+                if (c == '*') { min = 0; max = INFINITE; pos++; }
+                else if (c == '+') { min = 1; max = INFINITE; pos++; }
+                else if (c == '?') { min = 0; max = 1; pos++; }
+                else if (c == '{' && regex.indexOf('}', pos) > 0 && regex.substring(pos + 1, regex.indexOf('}', pos)).matches("\\d+(,\\d*)?")) {
+                    String[] bounds = regex.substring(pos + 1, regex.indexOf('}', pos)).split(",", -1);
+                    min = Integer.parseInt(bounds[0]);
+                    max = bounds.length == 1 ? min : (bounds[1].isEmpty() ? INFINITE : Integer.parseInt(bounds[1]));
+                    pos = regex.indexOf('}', pos) + 1;
+                }
+                else
+                    break;
+                // lazy or possessive modifier
+                if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+'))
+                    pos++;
+                atom = new RepeatNode(atom, min, max);
+            }
+            return atom;
+        }
+
+        private Node atom() {
+            int start = pos;
+            char c = regex.charAt(pos);
+            switch (c) {
+                case '(':
+                    return group();
+                case '[':
+                    pos = classEnd(pos);
+                    return charNode(regex.substring(start, pos));
+                case '\\':
+                    char e = regex.charAt(pos + 1);
+                    pos += 2;
+                    if ("bBAGzZ".indexOf(e) >= 0)
+                        return new ZeroWidthNode();
+                    if (e == 'p' || e == 'P') {
+                        pos = regex.indexOf('}', pos) + 1;
+                    }
+                    else if (e == 'u') {
+                        pos += 4;
+                    }
+                    else if (e == 'x') {
+                        pos += 2;
+                    }
+                    else if (Character.isDigit(e)) {
+                        // back reference, can be anything
+                        BitSet all = new BitSet();
+                        all.set(0, ALPHABET.length());
+                        return new CharNode(all);
+                    }
+                    else if (e == 'Q') {
+                        int end = regex.indexOf("\\E", pos);
+                        end = end < 0 ? regex.length() : end;
+                        SeqNode seq = new SeqNode();
+                        for (int i = pos; i < end; i++)
+                            seq.children.add(charNode(Pattern.quote(String.valueOf(regex.charAt(i)))));
+                        pos = Math.min(regex.length(), end + 2);
+                        return seq;
+                    }
+                    return charNode(regex.substring(start, pos));
+                case '^':
+                case '$':
+                    pos++;
+                    return new ZeroWidthNode();
+                default:
+                    pos++;
+                    return charNode(regex.substring(start, pos));
+            }
+        }
+
+        private Node group() {
+            pos++;
+            boolean zeroWidth = false;
+            int savedFlags = flags;
+            if (regex.startsWith("?", pos)) {
+                if (regex.startsWith("?:", pos)) {
+                    pos += 2;
+                } else if (regex.startsWith("?=", pos) || regex.startsWith("?!", pos)) {
+                    pos += 2;
+                    zeroWidth = true;
+                } else if (regex.startsWith("?<=", pos) || regex.startsWith("?<!", pos)) {
+                    pos += 3;
+                    zeroWidth = true;
+                } else if (regex.startsWith("?<", pos)) {
+                    pos = regex.indexOf('>', pos) + 1;
+                } else {
+                    // inline flags like (?i) or (?i:...)
+                    int end = pos + 1;
+                    while (end < regex.length() && (Character.isLetter(regex.charAt(end)) || regex.charAt(end) == '-'))
+                        end++;
+                    if (regex.substring(pos + 1, end).contains("i") && !regex.substring(pos + 1, end).startsWith("-"))
+                        flags |= Pattern.CASE_INSENSITIVE;
+                    pos = end;
+                    if (regex.charAt(pos) == ')') {
+                        // flags for the rest of the enclosing group
+                        pos++;
+                        return new ZeroWidthNode();
+                    }
+                    pos++;
+                }
+            }
+            Node body = alternation();
+            pos++; // ')'
+            flags = savedFlags;
+            return zeroWidth ? new ZeroWidthNode() : body;
+        }
+
+        private int classEnd(int start) {
+            int i = start + 1;
+            if (i < regex.length() && regex.charAt(i) == '^')
+                i++;
+            if (i < regex.length() && regex.charAt(i) == ']')
+                i++;
+            int depth = 1;
+            while (i < regex.length()) {
+                char c = regex.charAt(i);
+                if (c == '\\')
+                    i++;
+                else if (c == '[')
+                    depth++;
+                else if (c == ']' && --depth == 0)
+                    return i + 1;
+                i++;
+            }
+            return regex.length();
+        }
+
+        private CharNode charNode(String atom) {
+            BitSet set = CHAR_SETS.computeIfAbsent(flags + atom, k -> {
+                Pattern p = Pattern.compile(atom, flags);
+                BitSet chars = new BitSet();
+                for (int i = 0; i < ALPHABET.length(); i++) {
+                    if (p.matcher(String.valueOf(ALPHABET.charAt(i))).matches())
+                        chars.set(i);
+                }
+                return chars;
+            });
+            return new CharNode(set);
+        }
+    }
+
+    /**
+     * Returns a list of findings for 'regex', empty if nothing suspicious was found.
+     */
+    public static List<String> analyze(String regex) {
+        List<String> findings = new ArrayList<>();
+        Node root;
+        try {
+            root = new Parser(regex).parse();
+        } catch (RuntimeException e) {
+            findings.add("could not parse: " + e.getMessage());
+            return findings;
+        }
+        analyze(root, false, findings);
+        return findings;
+    }
+
+    private static void analyze(Node node, boolean insideRepeat, List<String> findings) {
+        if (node instanceof RepeatNode) {
+            RepeatNode repeat = (RepeatNode) node;
+            if (repeat.isVariable() && containsVariableRepeat(repeat.body))
+                findings.add("nested quantifier");
+            if (repeat.isVariable() && repeat.body instanceof AltNode && overlappingBranches((AltNode) repeat.body))
+                findings.add("quantified alternation with overlapping branches");
+            analyze(repeat.body, insideRepeat || repeat.isVariable(), findings);
+        }
+        else if (node instanceof SeqNode) {
+            List<Node> children = ((SeqNode) node).children;
+            for (int i = 0; i < children.size(); i++) {
+                Node a = children.get(i);
+                if (a instanceof RepeatNode && ((RepeatNode) a).max == INFINITE) {
+                    // the next unbounded quantifier, only separated by optional nodes
+                    for (int j = i + 1; j < children.size(); j++) {
+                        Node b = children.get(j);
+                        if (b instanceof RepeatNode && ((RepeatNode) b).max == INFINITE && a.chars().intersects(b.chars())) {
+                            findings.add("adjacent overlapping quantifiers");
+                            break;
+                        }
+                        if (!b.nullable())
+                            break;
+                    }
+                }
+                analyze(a, insideRepeat, findings);
+            }
+        }
+        else if (node instanceof AltNode) {
+            for (Node branch : ((AltNode) node).branches)
+                analyze(branch, insideRepeat, findings);
+        }
+    }
+
+    private static boolean containsVariableRepeat(Node node) {
+        if (node instanceof RepeatNode)
+            return ((RepeatNode) node).isVariable() && !((RepeatNode) node).body.chars().isEmpty()
+                    || containsVariableRepeat(((RepeatNode) node).body);
+        if (node instanceof SeqNode)
+            return ((SeqNode) node).children.stream().anyMatch(ReDoSAnalyzer::containsVariableRepeat);
+        if (node instanceof AltNode)
+            return ((AltNode) node).branches.stream().anyMatch(ReDoSAnalyzer::containsVariableRepeat);
+        return false;
+    }
+
+    private static boolean overlappingBranches(AltNode alt) {
+        for (int i = 0; i < alt.branches.size(); i++)
+            for (int j = i + 1; j < alt.branches.size(); j++)
+                if (alt.branches.get(i).first().intersects(alt.branches.get(j).first()))
+                    return true;
+        return false;
+    }
+
+    private static String representative(BitSet set) {
+        // prefer digits and lower case letters, they are the most common pump characters in our patterns
+        for (char c : "1a.A á-".toCharArray()) {
+            int i = ALPHABET.indexOf(c);
+            if (set.get(i))
+                return String.valueOf(c);
+        }
+        int i = set.nextSetBit(0);
+        return i < 0 ? "" : String.valueOf(ALPHABET.charAt(i));
+    }
+
+    // FUZZING
+
+    /*
+     * Collects pump candidates: for every variable quantifier a prefix (witness of everything before it) and
+     * a pump (witness of its body), in two variants: minimal body and body with optional parts.
+     */
+    private static void collectPumps(Node node, String prefix, Set<List<String>> pumps) {
+        if (node instanceof RepeatNode) {
+            RepeatNode repeat = (RepeatNode) node;
+            if (repeat.isVariable()) {
+                String pump = repeat.body.witness();
+                if (!pump.isEmpty())
+                    pumps.add(Arrays.asList(prefix, pump));
+                String full = fullWitness(repeat.body);
+                if (!full.isEmpty())
+                    pumps.add(Arrays.asList(prefix, full));
+            }
+            collectPumps(repeat.body, prefix, pumps);
+        }
+        else if (node instanceof SeqNode) {
+            StringBuilder sb = new StringBuilder(prefix);
+            for (Node child : ((SeqNode) node).children) {
+                collectPumps(child, sb.toString(), pumps);
+                sb.append(child.witness());
+            }
+        }
+        else if (node instanceof AltNode) {
+            for (Node branch : ((AltNode) node).branches)
+                collectPumps(branch, prefix, pumps);
+        }
+    }
+
+    // a witness including optional parts once
+    private static String fullWitness(Node node) {
+        if (node instanceof RepeatNode) {
+            RepeatNode repeat = (RepeatNode) node;
+            int n = Math.max(1, repeat.min);
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < n && i < 4; i++) sb.append(fullWitness(repeat.body));
+            return sb.toString();
+        }
+        if (node instanceof SeqNode) {
+            StringBuilder sb = new StringBuilder();
+            ((SeqNode) node).children.forEach(c -> sb.append(fullWitness(c)));
+            return sb.toString();
+        }
+        if (node instanceof AltNode)
+            return fullWitness(((AltNode) node).branches.get(0));
+        return node.witness();
+    }
+
+    /**
+     * Fuzzes 'entry' with generated inputs. Returns the first result showing super-linear growth of character reads,
+     * or the result with the largest growth if there is none.
+     */
+    public static FuzzResult fuzz(Entry entry) {
+        Pattern pattern = Pattern.compile(entry.regex);
+        Set<List<String>> pumps = new LinkedHashSet<>();
+        try {
+            collectPumps(new Parser(entry.regex).parse(), "", pumps);
+        } catch (RuntimeException e) {
+            // we still have the generic pumps
+        }
+        for (String pump : GENERIC_PUMPS)
+            pumps.add(Arrays.asList("", pump));
+
+        FuzzResult worst = null;
+        for (List<String> pump : pumps) {
+            for (String suffix : SUFFIXES) {
+                FuzzResult result = measure(pattern, entry.mode, pump.get(0), pump.get(1), suffix, 0);
+                // confirm suspicious growth with longer inputs, to rule out constant overhead
+                if (result.growth() > SUPER_LINEAR_GROWTH) {
+                    result = measure(pattern, entry.mode, pump.get(0), pump.get(1), suffix, 1);
+                    // one input showing super-linear behaviour is enough
+                    if (result.growth() > SUPER_LINEAR_GROWTH)
+                        return result;
+                }
+                if (worst == null || result.growth() > worst.growth())
+                    worst = result;
+            }
+        }
+        return worst;
+    }
+
+    public static boolean isSuperLinear(FuzzResult result) {
+        return result.growth() > SUPER_LINEAR_GROWTH;
+    }
+
+    private static FuzzResult measure(Pattern pattern, Mode mode, String prefix, String pump, String suffix, int step) {
+        String shortInput = input(prefix, pump, suffix, LENGTHS[step]);
+        String longInput = input(prefix, pump, suffix, LENGTHS[step + 1]);
+        long start = System.nanoTime();
+        long shortReads = reads(pattern, mode, shortInput);
+        long longReads = reads(pattern, mode, longInput);
+        return new FuzzResult(longInput, shortReads, longReads, System.nanoTime() - start);
+    }
+
+    private static String input(String prefix, String pump, String suffix, int length) {
+        StringBuilder sb = new StringBuilder(prefix);
+        while (sb.length() < length)
+            sb.append(pump);
+        return sb.append(suffix).toString();
+    }
+
+    // the number of characters the regex engine reads to process 'input', MAX_READS if it reads more
+    private static long reads(Pattern pattern, Mode mode, String input) {
+        CountingCharSequence counting = new CountingCharSequence(input);
+        try {
+            Matcher matcher = pattern.matcher(counting);
+            if (mode == Mode.MATCHES)
+                matcher.matches();
+            else
+                while (matcher.find()) ;
+        } catch (ReadLimitException e) {
+            return MAX_READS;
+        } catch (StackOverflowError e) {
+            // deep recursion in the engine on long inputs is a problem of its own
+            return MAX_READS;
+        }
+        return counting.reads;
+    }
+
+    private static class ReadLimitException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private static class CountingCharSequence implements CharSequence {
+        private final String inner;
+        long reads = 0;
+
+        CountingCharSequence(String inner) { this.inner = inner; }
+
+        public char charAt(int index) {
+            if (++reads > MAX_READS)
+                throw new ReadLimitException();
+            return inner.charAt(index);
+        }
+        public int length() { return inner.length(); }
+        public CharSequence subSequence(int start, int end) { return inner.subSequence(start, end); }
+        public String toString() { return inner; }
+    }
+}
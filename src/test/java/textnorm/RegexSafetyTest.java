@@ -0,0 +1,88 @@
+package textnorm;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the ReDoSAnalyzer on all shipped regexes. Regexes with known super-linear behaviour are listed in
+ * the resource 'regex_superlinear_baseline.txt' (mode TAB regex, one per line). A new or changed regex that is
+ * super-linear fails the test - fix the regex, or, if the behaviour is acceptable (e.g. it is only applied to
+ * short tokens), add it to the baseline file.
+ * Fuzzing all regexes takes several seconds, superLinearRegexTest only runs with -Dtextnorm.longTests=true.
+ */
+public class RegexSafetyTest {
+
+    private static final String BASELINE = "regex_superlinear_baseline.txt";
+
+    @Test
+    public void superLinearRegexTest() throws Exception {
+        Assume.assumeTrue(Boolean.getBoolean("textnorm.longTests"));
+        Set<String> baseline = readBaseline();
+        List<ReDoSAnalyzer.Entry> inventory = ReDoSAnalyzer.inventory();
+        assertTrue(inventory.size() > 1000);
+
+        int flagged = 0;
+        List<String> superLinear = new ArrayList<>();
+        List<String> unexpected = new ArrayList<>();
+        long start = System.nanoTime();
+        for (ReDoSAnalyzer.Entry entry : inventory) {
+            if (!ReDoSAnalyzer.analyze(entry.regex).isEmpty())
+                flagged++;
+            ReDoSAnalyzer.FuzzResult result = ReDoSAnalyzer.fuzz(entry);
+            if (!ReDoSAnalyzer.isSuperLinear(result))
+                continue;
+            String key = entry.mode + "\t" + entry.regex;
+            superLinear.add(key);
+            if (!baseline.contains(key)) {
+                unexpected.add(entry.source + ": " + key + "\n\tfindings: " + ReDoSAnalyzer.analyze(entry.regex)
+                        + ", reads " + result.shortReads + " -> " + result.longReads + " for input length "
+                        + result.input.length() + ", " + result.nanos / 1000000 + " ms");
+            }
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        System.out.println("Checked " + inventory.size() + " regexes in " + elapsed + " ms: " + flagged
+                + " flagged by static analysis, " + superLinear.size() + " super-linear");
+        Set<String> stale = new TreeSet<>(baseline);
+        stale.removeAll(superLinear);
+        if (!stale.isEmpty())
+            System.out.println("Baseline entries no longer super-linear (or no longer used): " + stale.size());
+
+        assertTrue("New super-linear regexes:\n" + String.join("\n", unexpected), unexpected.isEmpty());
+    }
+
+    @Test
+    public void analyzerTest() {
+        assertTrue(ReDoSAnalyzer.analyze("(a+)+b").contains("nested quantifier"));
+        assertTrue(ReDoSAnalyzer.analyze("(a|ab)*c").contains("quantified alternation with overlapping branches"));
+        assertTrue(ReDoSAnalyzer.analyze("\\d+\\.?\\d+x").contains("adjacent overlapping quantifiers"));
+        assertTrue(ReDoSAnalyzer.analyze("^(\\d{3}\\.)*\\d$").isEmpty());
+
+        ReDoSAnalyzer.Entry exponential = new ReDoSAnalyzer.Entry("test", "^(a+)+b$", ReDoSAnalyzer.Mode.MATCHES);
+        assertTrue(ReDoSAnalyzer.isSuperLinear(ReDoSAnalyzer.fuzz(exponential)));
+        ReDoSAnalyzer.Entry linear = new ReDoSAnalyzer.Entry("test", "^[a-z]+\\d{1,3}$", ReDoSAnalyzer.Mode.MATCHES);
+        assertFalse(ReDoSAnalyzer.isSuperLinear(ReDoSAnalyzer.fuzz(linear)));
+    }
+
+    private Set<String> readBaseline() throws Exception {
+        Set<String> baseline = new HashSet<>();
+        InputStream is = getClass().getClassLoader().getResourceAsStream(BASELINE);
+        if (is == null)
+            return baseline;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty() && !line.startsWith("#"))
+                    baseline.add(line);
+            }
+        }
+        return baseline;
+    }
+}
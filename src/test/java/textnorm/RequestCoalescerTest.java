@@ -0,0 +1,135 @@
+package textnorm;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that identical concurrent requests share one normalization in RequestCoalescer.
+ */
+public class RequestCoalescerTest {
+
+    private final RuleSet mRules = ResourceRegistry.get().getRuleSet();
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end)
+            Thread.sleep(5);
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void coalesceTest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer(4);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        int requests = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(requests + 1);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(() -> coalescer.process("Fyrirsögn dagsins .", mRules,
+                        NormalizationProfile.ACCURATE, Domain.GENERAL, () -> {
+                            runs.incrementAndGet();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                throw new IllegalStateException(e);
+                            }
+                            return "fyrirsögn";
+                        })));
+            }
+            await(() -> coalescer.getCoalesced() == requests - 1);
+            // another text is not coalesced with the text in flight
+            assertEquals("annað", executor.submit(() -> coalescer.process("Annað .", mRules,
+                    NormalizationProfile.ACCURATE, Domain.GENERAL, () -> "annað")).get(10, TimeUnit.SECONDS));
+            assertEquals(1, coalescer.getInFlight());
+            release.countDown();
+            for (Future<String> result : results)
+                assertEquals("fyrirsögn", result.get(10, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+            assertEquals(2, coalescer.getExecuted());
+            assertEquals(0, coalescer.getInFlight());
+            // a request after the flight is done normalizes again
+            coalescer.process("Fyrirsögn dagsins .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL,
+                    () -> "fyrirsögn " + runs.incrementAndGet());
+            assertEquals(2, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void exceptionTest() throws Exception {
+        RequestCoalescer coalescer = new RequestCoalescer();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<String> request = () -> coalescer.process("Texti .", mRules, NormalizationProfile.FAST,
+                    Domain.GENERAL, () -> {
+                        try {
+                            release.await();
+                        } catch (InterruptedException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        throw new IllegalArgumentException("failed");
+                    });
+            Future<String> first = executor.submit(request);
+            await(() -> coalescer.getInFlight() == 1);
+            Future<String> second = executor.submit(request);
+            await(() -> coalescer.getCoalesced() == 1);
+            release.countDown();
+            List<Future<String>> results = Arrays.asList(first, second);
+            for (Future<String> result : results) {
+                try {
+                    result.get(10, TimeUnit.SECONDS);
+                    fail("failed normalization returned a result");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalArgumentException);
+                }
+            }
+            assertEquals(0, coalescer.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void managerTest() throws Exception {
+        String text = "Vegalengdin er 12 km. og tekur um 2 klst. Sjá visir.is";
+        String expected = new NormalizationManager().process(text, NormalizationProfile.FAST);
+        RequestCoalescer coalescer = new RequestCoalescer();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // a manager per thread, sharing the coalescer
+        List<NormalizationManager> managers = new CopyOnWriteArrayList<>();
+        ThreadLocal<NormalizationManager> manager = ThreadLocal.withInitial(() -> {
+            NormalizationManager threadManager = new NormalizationManager();
+            threadManager.setRequestCoalescer(coalescer);
+            managers.add(threadManager);
+            return threadManager;
+        });
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int n = 0; n < threads * 20; n++)
+                results.add(executor.submit(() -> manager.get().process(text, NormalizationProfile.FAST)));
+            for (Future<String> result : results)
+                assertEquals(expected, result.get(30, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        long coalesced = 0;
+        for (NormalizationManager threadManager : managers)
+            coalesced += threadManager.getMetrics().getCoalescedRequests();
+        assertEquals(coalescer.getCoalesced(), coalesced);
+        assertEquals(threads * 20, coalescer.getExecuted() + coalescer.getCoalesced());
+        System.out.println(coalescer);
+    }
+}
@@ -0,0 +1,118 @@
+package textnorm;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the resources of ResourceRegistry are shared and immutable, and that managers created and used in many
+ * threads at once normalize like a single manager.
+ */
+public class ResourceRegistryTest {
+
+    private static final String[] SENTENCES = {
+            "Hann er 5 ára.",
+            "Vegalengdin er 12 km. og tekur um 2 klst.",
+            "Verðið er 1.234 kr. Hann býr í Rvk.",
+            "Fundurinn er 3. maí kl. 14:30.",
+            "Þetta er góður dagur."
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private TagLexicon lexicon() throws Exception {
+        File file = folder.newFile("lexicon.txt");
+        Files.write(file.toPath(), Arrays.asList("ára\tnhfe\t100", "kílómetrar\tnkfn\t100",
+                "klukkustundir\tnvfo\t100", "krónur\tnvfo\t100", "maí\tnkeo\t100", ".\t.\t100"));
+        return TagLexicon.load(file.getPath());
+    }
+
+    @Test
+    public void sharedTest() {
+        ResourceRegistry resources = ResourceRegistry.get();
+        assertSame(resources, ResourceRegistry.get());
+        assertFalse(resources.getAbbreviations().isEmpty());
+        assertFalse(resources.getDictionary("distanceDict").isEmpty());
+        assertFalse(resources.getTuples(NumberToken.Type.CARDINAL_THOUSAND).isEmpty());
+        assertSame(new NormalizationManager().mPlainSentenceFilter, new NormalizationManager().mPlainSentenceFilter);
+        try {
+            resources.getDictionary("timeDict").clear();
+            fail("registry dictionaries must be unmodifiable");
+        } catch (UnsupportedOperationException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void concurrentManagersTest() throws Exception {
+        TagLexicon lexicon = lexicon();
+        NormalizationManager reference = new NormalizationManager();
+        reference.setTagLexicon(lexicon);
+        String[] expected = new String[SENTENCES.length];
+        for (int i = 0; i < SENTENCES.length; i++)
+            expected[i] = reference.process(SENTENCES[i]);
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                int differing = 0;
+                for (int n = 0; n < 25; n++) {
+                    // a new manager per round, as in a per-tenant setup
+                    NormalizationManager manager = new NormalizationManager();
+                    manager.setTagLexicon(lexicon);
+                    for (int i = 0; i < SENTENCES.length; i++) {
+                        if (!expected[i].equals(manager.process(SENTENCES[i])))
+                            differing++;
+                    }
+                }
+                return differing;
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> result : results)
+            assertEquals(0, result.get(60, TimeUnit.SECONDS).intValue());
+        executor.shutdown();
+    }
+
+    @Test
+    public void managerCreationTest() {
+        new NormalizationManager();
+        long start = System.nanoTime();
+        List<NormalizationManager> managers = new ArrayList<>();
+        for (int i = 0; i < 500; i++)
+            managers.add(new NormalizationManager());
+        long micros = (System.nanoTime() - start) / 1000 / managers.size();
+        System.out.println("Manager creation: " + micros + " µs per manager");
+        // no resources are loaded per manager
+        assertTrue(micros < 10000);
+    }
+
+    @Test
+    public void releaseTest() throws Exception {
+        Assume.assumeNotNull(getClass().getClassLoader().getResource("is-pos-maxent.bin"));
+        ResourceRegistry resources = ResourceRegistry.get();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        String[] tokens = {"Hann", "er", "fimm", "ára", "."};
+        String[] tags = executor.submit(() -> resources.tag(tokens)).get(60, TimeUnit.SECONDS);
+        assertTrue(executor.submit(resources::hasTagger).get());
+        // the pooled thread frees its tagger, and gets a new one on the next call
+        executor.submit(resources::release).get();
+        assertFalse(executor.submit(resources::hasTagger).get());
+        assertArrayEquals(tags, executor.submit(() -> resources.tag(tokens)).get(60, TimeUnit.SECONDS));
+        assertFalse(resources.hasTagger());
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,86 @@
+package textnorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests calibrating, saving and loading a RuleProfile: pre-normalization output has to stay the same.
+ */
+public class RuleProfileTest {
+
+    private static final String[] SENTENCES = {
+            "Þetta var í 4ða sinn .",
+            "Hitinn var 5 - 10 ° og 2 km/klst .",
+            "Það kostar 500 kr. á dag eða 2 þús. kr. á viku .",
+            "Hann hljóp 1.500 m á 4 mín. og 10 sek .",
+            "Veðrið er gott í Rvk. en rigning NV-til .",
+            "Þetta eru 3 l af mjólk , 200 g af smjöri og 10% afsláttur .",
+            "Hann er fæddur 02.11.1987 og býr á Laugavegi 17 ."
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void calibrateAndLoadTest() throws Exception {
+        TTSNormalizer plain = new TTSNormalizer();
+        String[] expected = new String[SENTENCES.length];
+        for (int i = 0; i < SENTENCES.length; i++)
+            expected[i] = plain.preNormalize(SENTENCES[i]);
+
+        TTSNormalizer calibrating = new TTSNormalizer();
+        RuleProfile calibration = RuleProfile.calibration();
+        calibrating.setRuleProfile(calibration);
+        for (int i = 0; i < SENTENCES.length; i++)
+            assertEquals(expected[i], calibrating.preNormalize(SENTENCES[i]));
+        String fourth = NormalizationDictionaries.BOS + "(?i)4ð(a|i|u)" + NormalizationDictionaries.EOS;
+        assertEquals(1, calibration.getHits("preHelpDict", fourth));
+
+        File profileFile = folder.newFile("rules.profile");
+        calibration.save(profileFile.getPath());
+
+        for (RuleProfile.ZeroHitPolicy policy : RuleProfile.ZeroHitPolicy.values()) {
+            TTSNormalizer profiled = new TTSNormalizer();
+            profiled.setRuleProfile(RuleProfile.load(profileFile.getPath(), policy));
+            for (int i = 0; i < SENTENCES.length; i++)
+                assertEquals(expected[i], profiled.preNormalize(SENTENCES[i]));
+        }
+    }
+
+    @Test
+    public void orderedDictionaryTest() throws Exception {
+        // calibrated on a text where only the "2svar" rules of preHelpDict match, the "4ða" and "2ja" rules
+        // declared before them have no hits, but must still be evaluated first
+        TTSNormalizer calibrating = new TTSNormalizer();
+        RuleProfile calibration = RuleProfile.calibration();
+        calibrating.setRuleProfile(calibration);
+        calibrating.preNormalize("Hann kom 2svar og 3svar .");
+        File profileFile = folder.newFile("ordered.profile");
+        calibration.save(profileFile.getPath());
+        assertTrue(Files.readAllLines(profileFile.toPath(), StandardCharsets.UTF_8).contains("preHelpDict\tORDERED"));
+
+        String sentence = "Þetta er í 4ða sinn og 2ja manna .";
+        String expected = new TTSNormalizer().preNormalize(sentence);
+        assertTrue(expected, expected.contains("fjórða sinn og tveggja manna"));
+        TTSNormalizer profiled = new TTSNormalizer();
+        profiled.setRuleProfile(RuleProfile.load(profileFile.getPath(), RuleProfile.ZeroHitPolicy.DEFER));
+        assertEquals(expected, profiled.preNormalize(sentence));
+    }
+
+    @Test
+    public void unknownRulesAreEvaluatedTest() throws Exception {
+        // an empty profile knows no rules, so nothing may be skipped
+        File profileFile = folder.newFile("empty.profile");
+        RuleProfile.calibration().save(profileFile.getPath());
+        TTSNormalizer profiled = new TTSNormalizer();
+        profiled.setRuleProfile(RuleProfile.load(profileFile.getPath(), RuleProfile.ZeroHitPolicy.SKIP));
+        assertEquals(new TTSNormalizer().preNormalize(SENTENCES[0]), profiled.preNormalize(SENTENCES[0]));
+    }
+}
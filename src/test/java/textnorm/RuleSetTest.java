@@ -0,0 +1,131 @@
+package textnorm;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests loading rule sets from rule files, and publishing them while normalizing.
+ */
+public class RuleSetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void resetRuleSet() {
+        ResourceRegistry.get().setRuleSet(null);
+    }
+
+    private Path ruleFile(String... lines) throws IOException {
+        Path file = folder.newFile().toPath();
+        Files.write(file, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 10000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    public void loadResourceTest() throws IOException {
+        RuleSet rules = RuleSet.loadResource("abbr_regex_1.csv");
+        assertEquals(10, rules.getRegexRules().size());
+        assertEquals("$1 grein$2", rules.getRegexRules().get("(\\d+\\.) gr\\.(\\W|$)"));
+        TTSNormalizer normalizer = new TTSNormalizer();
+        assertEquals("sjá 3. málsgrein laganna", normalizer.preNormalize("sjá 3. mgr. laganna", rules));
+        assertTrue(ResourceRegistry.get().getRuleSet().getRegexRules().isEmpty());
+    }
+
+    @Test
+    public void sectionsTest() throws IOException {
+        Path file = ruleFile("# test rules",
+                "\\\\bxyzw\\\\b\tsérorð",
+                "[nonending]",
+                "Xyz.",
+                "[tuples]",
+                "CARDINAL_THOUSAND\t^0*4$\t.*\tones\t fjórum");
+        RuleSet rules = RuleSet.load(Collections.singletonList(file));
+        assertEquals("sérorð", rules.getRegexRules().get("\\bxyzw\\b"));
+        assertTrue(rules.getNonEndingAbbreviations().contains("xyz."));
+        assertEquals(ResourceRegistry.get().getAbbreviations(), rules.getAbbreviations());
+        assertEquals(ResourceRegistry.get().getTuples(NumberToken.Type.CARDINAL_THOUSAND).size() + 1,
+                rules.getTuples(NumberToken.Type.CARDINAL_THOUSAND).size());
+        assertSame(ResourceRegistry.get().getTuples(NumberToken.Type.TIME), rules.getTuples(NumberToken.Type.TIME));
+
+        assertEquals(Collections.singletonList("Hann kom xyz. Jón ."),
+                new Tokenizer(rules).detectSentences("Hann kom xyz. Jón."));
+        assertEquals(2, new Tokenizer().detectSentences("Hann kom xyz. Jón.").size());
+        TTSNormalizer normalizer = new TTSNormalizer();
+        assertEquals("með fjórum .", normalizer.postNormalize(new String[]{"með", "4", "."},
+                new String[]{"aþ", "ta", "."}, rules));
+        assertNotEquals("með fjórum .", normalizer.postNormalize(new String[]{"með", "4", "."},
+                new String[]{"aþ", "ta", "."}));
+    }
+
+    @Test
+    public void invalidRulesTest() throws IOException {
+        for (String line : new String[]{"(\\\\d+\tx", "[unknown]", "[tuples]\nNO_TYPE\ta\tb\tones\tc",
+                "[tuples]\nCARDINAL_BIG\ta\tb\tones\tc"}) {
+            try {
+                RuleSet.load(Collections.singletonList(ruleFile(line.split("\n"))));
+                fail("loaded invalid rules: " + line);
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void watcherTest() throws Exception {
+        Path file = ruleFile("\\\\bxyzw\\\\b\tsérorð");
+        ResourceRegistry resources = ResourceRegistry.get();
+        RuleSet before = resources.getRuleSet();
+        NormalizationManager manager = new NormalizationManager();
+        try (RuleSetWatcher watcher = new RuleSetWatcher(Collections.singletonList(file), 20, TimeUnit.MILLISECONDS)) {
+            await(() -> resources.getRuleSet() != before);
+            RuleSet first = resources.getRuleSet();
+            assertTrue(manager.process("Sjá xyzw hér.").contains("sérorð"));
+
+            Files.write(file, Collections.singletonList("\\\\bxyzw\\\\b\tannað"), StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(file, java.nio.file.attribute.FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            await(() -> resources.getRuleSet() != first);
+            RuleSet second = resources.getRuleSet();
+            assertTrue(second.getVersion() > first.getVersion());
+            assertEquals("annað", second.getRegexRules().get("\\bxyzw\\b"));
+
+            // a broken file is not published
+            Files.write(file, Collections.singletonList("(\tx"), StandardCharsets.UTF_8);
+            assertFalse(watcher.reload());
+            assertSame(second, resources.getRuleSet());
+        }
+    }
+
+    @Test
+    public void snapshotTest() throws IOException {
+        RuleSet rules = RuleSet.load(Collections.singletonList(ruleFile("\\\\bxyzw\\\\b\tsérorð")));
+        TTSNormalizer normalizer = new TTSNormalizer();
+        String text = "sjá xyzw";
+        RuleSet previous = ResourceRegistry.get().setRuleSet(rules);
+        assertEquals("sjá sérorð", normalizer.preNormalize(text));
+        // a snapshot taken before stays valid after a new rule set has been published
+        ResourceRegistry.get().setRuleSet(previous);
+        assertEquals("sjá sérorð", normalizer.preNormalize(text, rules));
+        assertNotEquals("sjá sérorð", normalizer.preNormalize(text));
+    }
+}
@@ -0,0 +1,81 @@
+package textnorm;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the off-heap SentenceCache: lookups, eviction of the oldest segments, and the cache in NormalizationManager.
+ */
+public class SentenceCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final RuleSet mRules = ResourceRegistry.get().getRuleSet();
+
+    @Test
+    public void putGetTest() {
+        SentenceCache cache = new SentenceCache(1 << 16);
+        assertNull(cache.get("Hann er 5 ára .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+        cache.put("Hann er 5 ára .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "Hann er fimm ára .");
+        assertEquals("Hann er fimm ára .", cache.get("Hann er 5 ára .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+        // other profile, domain or rule set: another entry
+        assertNull(cache.get("Hann er 5 ára .", mRules, NormalizationProfile.FAST, Domain.GENERAL));
+        assertNull(cache.get("Hann er 5 ára .", mRules, NormalizationProfile.ACCURATE, Domain.SPORT));
+        assertNull(cache.get("Hann er 5 ára .", RuleSet.defaults(ResourceRegistry.get()), NormalizationProfile.ACCURATE,
+                Domain.GENERAL));
+        cache.put("Verðið er 1.234 € .", mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "Verðið er þúsund € .");
+        assertEquals("Verðið er þúsund € .", cache.get("Verðið er 1.234 € .", mRules, NormalizationProfile.ACCURATE,
+                Domain.GENERAL));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHits());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        for (SentenceCache cache : new SentenceCache[]{new SentenceCache(1 << 15),
+                new SentenceCache(1 << 15, folder.newFile().toPath())}) {
+            Map<String, String> model = new HashMap<>();
+            Random random = new Random(47);
+            String hot = "Þetta er setning sem kemur oft .";
+            cache.put(hot, mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, "oft");
+            for (int i = 0; i < 20000; i++) {
+                String sentence = "Setning númer " + random.nextInt(5000) + " með " + "x".repeat(random.nextInt(100)) + " .";
+                String normalized = cache.get(sentence, mRules, NormalizationProfile.ACCURATE, Domain.GENERAL);
+                if (normalized == null) {
+                    normalized = sentence.toUpperCase();
+                    cache.put(sentence, mRules, NormalizationProfile.ACCURATE, Domain.GENERAL, normalized);
+                }
+                model.put(sentence, normalized);
+                // a cached value is always the one that was put
+                assertEquals(sentence.toUpperCase(), normalized);
+                assertEquals("oft", cache.get(hot, mRules, NormalizationProfile.ACCURATE, Domain.GENERAL));
+            }
+            assertTrue(cache.getEvictions() > 0);
+            assertTrue(cache.size() < model.size());
+            assertTrue(cache.getCapacity() <= 1 << 15);
+            System.out.println(cache);
+        }
+    }
+
+    @Test
+    public void managerTest() {
+        NormalizationManager manager = new NormalizationManager();
+        SentenceCache cache = new SentenceCache(1 << 20);
+        String text = "Vegalengdin er 12 km. Sjá visir.is";
+        String expected = manager.process(text, NormalizationProfile.FAST);
+        manager.setSentenceCache(cache);
+        assertEquals(expected, manager.process(text, NormalizationProfile.FAST));
+        assertEquals(2, cache.size());
+        assertEquals(expected, manager.process(text, NormalizationProfile.FAST));
+        assertEquals(2, cache.getHits());
+    }
+}
@@ -0,0 +1,88 @@
+package textnorm;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests building, saving and loading a TagLexicon, and normalization with lexicon tags compared to full tagging.
+ */
+public class TagLexiconTest {
+
+    private static final String[] SENTENCES = {
+            "Það kostar 500 krónur á dag .",
+            "Hann er 25 ára gamall .",
+            "Þar voru 3 menn og 2 konur .",
+            "Hún hljóp 10 kílómetra á 45 mínútum .",
+            "Við keyptum 4 bíla fyrir 2 árum ."
+    };
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void saveAndLoadTest() throws Exception {
+        TagLexicon observing = TagLexicon.observing();
+        for (int i = 0; i < 10; i++)
+            observing.observe(new String[]{"5", "krónur", "á"}, new String[]{"ta", "nvfo", "af"});
+        // ambiguous: not saved
+        observing.observe(new String[]{"á"}, new String[]{"sfg3en"});
+        // too rare: not saved
+        observing.observe(new String[]{"manns"}, new String[]{"nkee"});
+        assertNull(observing.lookup("krónur"));
+
+        File file = folder.newFile("lexicon.txt");
+        observing.save(file.getPath(), 5, 0.99);
+        TagLexicon lexicon = TagLexicon.load(file.getPath());
+        assertEquals(2, lexicon.size());
+        assertEquals("nvfo", lexicon.lookup("krónur"));
+        assertEquals("ta", lexicon.lookup("5"));
+        assertNull(lexicon.lookup("á"));
+        assertNull(lexicon.lookup("manns"));
+    }
+
+    @Test
+    public void lexiconTaggingTest() throws Exception {
+        File file = folder.newFile("lexicon.txt");
+        Files.write(file.toPath(), Arrays.asList("# test", "ára\tnhfe\t100"));
+        NormalizationManager manager = new NormalizationManager();
+        manager.setTagLexicon(TagLexicon.load(file.getPath()));
+        // the word after the number is in the lexicon: no POS-tagger (and no POS model) needed
+        assertEquals("Hann er fimm ára .", manager.process("Hann er 5 ára."));
+        assertEquals(1, manager.getMetrics().getLexiconTaggedSentences());
+        assertEquals(0, manager.getMetrics().getTaggedSentences());
+        assertEquals(0.0, manager.getMetrics().getTaggerFallbackRate(), 0.0);
+    }
+
+    // normalization with a lexicon built from the tagger output has to agree with full tagging
+    @Test
+    public void accuracyTest() throws Exception {
+        Assume.assumeNotNull(getClass().getClassLoader().getResource("is-pos-maxent.bin"));
+        NormalizationManager tagging = new NormalizationManager();
+        TagLexicon observing = TagLexicon.observing();
+        tagging.setTagLexicon(observing);
+        String[] expected = new String[SENTENCES.length];
+        for (int i = 0; i < SENTENCES.length; i++)
+            expected[i] = tagging.process(SENTENCES[i]);
+        File file = folder.newFile("lexicon.txt");
+        observing.save(file.getPath(), 1, 1.0);
+
+        NormalizationManager manager = new NormalizationManager();
+        manager.setTagLexicon(TagLexicon.load(file.getPath()));
+        int agreeing = 0;
+        for (int i = 0; i < SENTENCES.length; i++) {
+            if (expected[i].equals(manager.process(SENTENCES[i])))
+                agreeing++;
+        }
+        System.out.println("Lexicon tagging: " + agreeing + "/" + SENTENCES.length + " sentences as with full tagging, "
+                + "fallback rate " + manager.getMetrics().getTaggerFallbackRate());
+        assertEquals(SENTENCES.length, agreeing);
+    }
+}
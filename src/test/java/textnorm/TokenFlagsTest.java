@@ -0,0 +1,50 @@
+package textnorm;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that the token flags agree with the regexes they replace in TTSNormalizer.
+ */
+public class TokenFlagsTest {
+
+    private static final String ALPHABET = "aAzZðÐöÖRÚVSPON01½-./:@#_ %";
+
+    private static void assertFlags(String token) {
+        int flags = TokenFlags.of(token);
+        String message = "'" + token + "'";
+        assertEquals(message, token.matches(".*\\d.*"), TokenFlags.has(flags, TokenFlags.DIGIT));
+        assertEquals(message, token.matches(".*[\\d½⅓⅔¼¾].*"), TokenFlags.has(flags, TokenFlags.NUMBER));
+        assertEquals(message, token.matches(NumberHelper.LETTERS_PTRN), TokenFlags.has(flags, TokenFlags.ACRONYM));
+        assertEquals(message, token.matches(NormalizationDictionaries.NOT_LETTERS), TokenFlags.has(flags, TokenFlags.SYMBOL));
+        assertEquals(message, token.contains("-"), TokenFlags.has(flags, TokenFlags.HYPHEN));
+        assertEquals(message, token.contains("."), TokenFlags.has(flags, TokenFlags.DOT));
+        assertEquals(message, token.contains("/"), TokenFlags.has(flags, TokenFlags.SLASH));
+        // links are only matched for candidates
+        if (token.matches(NormalizationDictionaries.links.get(NormalizationDictionaries.LINK_PTRN_ALL)))
+            assertTrue(message, TokenFlags.has(flags, TokenFlags.LINK_CANDIDATE));
+    }
+
+    @Test
+    public void flagsTest() {
+        String[] tokens = {"", "RÚV", "RÚVS", "SPRON", "BSRB", "ABCDEF", "Á-Ö", "-", ".", "--", "%", "½", "a",
+                "3", "12,5", "www.ruv.is", "jon@ruv.is", "#metoo", "localhost:8080", "😀"};
+        for (String token : tokens)
+            assertFlags(token);
+    }
+
+    @Test
+    public void randomFlagsTest() {
+        Random random = new Random(33);
+        for (int n = 0; n < 100000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int i = 0; i < length; i++)
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            assertFlags(sb.toString());
+        }
+    }
+}
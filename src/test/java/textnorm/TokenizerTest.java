@@ -2,10 +2,15 @@ package textnorm;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class TokenizerTest {
 
@@ -19,4 +24,50 @@ public class TokenizerTest {
         assertEquals("Leikurinn var annar leikur Njarðvíkur í 2. deild karla í knattspyrnu í sumar .", tokenized.get(0));
         assertEquals("Verkin hefur hún steypt úr lituðum pappírsmassa , sem hefur gert henni kleyft að nýta sýningarrými - og rými almennt - með nýjum hætti .", tokenized.get(1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamingTest() {
+        Tokenizer tok = new Tokenizer();
+        String input = "Leikurinn var annar leikur Njarðvíkur í 2. deild karla í knattspyrnu í sumar. Hann fór " +
+                "á fundinn kl. 14 í gær . Þetta er 3. sinn sem hann kemur! Hvað þá? Og svo ...";
+        List<String> streamed = new ArrayList<>();
+        tok.detectSentences(input, streamed::add);
+        assertEquals(tok.detectSentences(input), streamed);
+        assertTrue(streamed.size() > 1);
+    }
+
+    @Test
+    public void parallelTest() {
+        String[] words = {"Jón", "dagur", "dagur.", "hr.", "kl.", "t.d.", "3.", "14:30", "?", "Hvað?", "já!", "sjá:",
+                "\"Hæ.\"", "-", "...", "RÚV.", "A.", "og", "(svo)", "1.234", "Hann", "vann."};
+        String[] spaces = {" ", " ", " ", "\n", "\n\n", " \n"};
+        Tokenizer tok = new Tokenizer();
+        Random random = new Random(44);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            for (int n = 0; n < 300; n++) {
+                StringBuilder sb = new StringBuilder();
+                int length = random.nextInt(200);
+                for (int i = 0; i < length; i++)
+                    sb.append(words[random.nextInt(words.length)]).append(spaces[random.nextInt(spaces.length)]);
+                String text = sb.toString();
+                assertEquals(text, tok.detectSentences(text), tok.detectSentences(text, 1 + random.nextInt(50), executor));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void chunkerTest() {
+        SentenceChunker chunker = new SentenceChunker(40);
+        String sentence = "Verkin hefur hún steypt úr lituðum pappírsmassa , sem hefur gert henni kleyft að nýta sýningarrými .";
+        List<String> chunks = chunker.split(sentence);
+        assertEquals("Verkin hefur hún steypt úr lituðum", chunks.get(0));
+        assertEquals("pappírsmassa ,", chunks.get(1));
+        assertEquals(sentence, String.join(" ", chunks));
+        for (String chunk : chunks)
+            assertTrue(chunk.length() <= 40);
+        assertEquals(1, chunker.split("stutt setning .").size());
+    }
+}
@@ -0,0 +1,83 @@
+package textnorm;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests postNormalize() on the per-thread WorkBuffers: the output in several threads at once, and the bytes
+ * allocated per token in steady state (measured with the allocation counter of the thread, as a GC profiler does).
+ * The allocation measurement takes several seconds, it only runs with -Dtextnorm.longTests=true.
+ */
+public class WorkBuffersTest {
+
+    private static final String[][] TOKENS = {
+            "Hann er 25 ára og á 1.234 krónur .".split(" "),
+            "Leikurinn fór 2:1 og hófst kl. 14:30 .".split(" "),
+            "Sjá www.mbl.is og RÚV og FBI og 3,5 lítra .".split(" ")};
+    private static final String[][] TAGS = {
+            "fp3ken sfg3en ta nhfe c sfg3en ta nvfo .".split(" "),
+            "nkeng sfg3eþ ta c sfg3eþ aa ta .".split(" "),
+            "sfg2en e c e c e c ta nkfe .".split(" ")};
+    private static final String[] EXPECTED = {
+            "Hann er tuttugu og fimm ára og á eitt þúsund tvö hundruð þrjátíu og fjórar krónur .",
+            "Leikurinn fór tveir tvípunktur einn og hófst kl. fjórtán þrjátíu .",
+            "Sjá w w w . m b l . i s og RÚV og F B I og þriggja komma fimm lítra ."};
+    // before the WorkBuffers, postNormalize allocated about 20 KB per token
+    private static final long MAX_BYTES_PER_TOKEN = 2048;
+
+    @Test
+    public void concurrentTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            results.add(executor.submit(() -> {
+                TTSNormalizer normalizer = new TTSNormalizer();
+                int differing = 0;
+                for (int n = 0; n < 200; n++) {
+                    for (int i = 0; i < TOKENS.length; i++) {
+                        if (!EXPECTED[i].equals(normalizer.postNormalize(TOKENS[i], TAGS[i])))
+                            differing++;
+                    }
+                }
+                return differing;
+            }));
+        }
+        for (Future<Integer> result : results)
+            assertEquals(0, result.get(60, TimeUnit.SECONDS).intValue());
+        executor.shutdown();
+    }
+
+    @Test
+    public void allocationTest() {
+        Assume.assumeTrue(Boolean.getBoolean("textnorm.longTests"));
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        TTSNormalizer normalizer = new TTSNormalizer();
+        // warm up: buffers, matchers and JIT
+        for (int n = 0; n < 5000; n++) {
+            for (int i = 0; i < TOKENS.length; i++)
+                assertEquals(EXPECTED[i], normalizer.postNormalize(TOKENS[i], TAGS[i]));
+        }
+        long id = Thread.currentThread().getId();
+        long tokens = 0;
+        long before = threads.getThreadAllocatedBytes(id);
+        for (int n = 0; n < 5000; n++) {
+            for (int i = 0; i < TOKENS.length; i++) {
+                normalizer.postNormalize(TOKENS[i], TAGS[i]);
+                tokens += TOKENS[i].length;
+            }
+        }
+        long bytesPerToken = (threads.getThreadAllocatedBytes(id) - before) / tokens;
+        System.out.println("postNormalize: " + bytesPerToken + " bytes allocated per token");
+        assertTrue(bytesPerToken + " bytes per token", bytesPerToken < MAX_BYTES_PER_TOKEN);
+    }
+}